@@ -0,0 +1,87 @@
+package com.sat.revolut.benchmark;
+
+import com.sat.revolut.dao.AccountDAO;
+import com.sat.revolut.dao.AccountJDBCDAOImpl;
+import com.sat.revolut.dao.ConnectionPoolConfig;
+import com.sat.revolut.dao.GroupCommitAccountDAO;
+import com.sat.revolut.dao.OffHeapAccountDAO;
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// DAO operations in isolation, no handler locks and no cache.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountDAOBenchmark {
+
+    @Param({"1000", "100000"})
+    int accountCount;
+
+    @Param({"jdbc", "groupCommit", "offHeap"})
+    String dao;
+
+    AccountJDBCDAOImpl jdbcDAO;
+    AccountDAO accountDAO;
+    AccountKeys keys;
+    final AtomicLong nextNewAccountId = new AtomicLong(100000000L);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        keys = new AccountKeys(AccountHandlerBenchmark.FIRST_ACCOUNT_ID, accountCount, AccountKeys.UNIFORM);
+        if ("offHeap".equals(dao)) {
+            accountDAO = new OffHeapAccountDAO(accountCount);
+            for (long accountId = AccountHandlerBenchmark.FIRST_ACCOUNT_ID; accountId < AccountHandlerBenchmark.FIRST_ACCOUNT_ID + accountCount; accountId++) {
+                accountDAO.create(accountId, AccountHandlerBenchmark.INITIAL_BALANCE);
+            }
+            return;
+        }
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:dao_bench_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        config.setMaxPoolSize(Math.max(10, Runtime.getRuntime().availableProcessors() * 2));
+        jdbcDAO = new AccountJDBCDAOImpl(config);
+        for (long accountId = AccountHandlerBenchmark.FIRST_ACCOUNT_ID; accountId < AccountHandlerBenchmark.FIRST_ACCOUNT_ID + accountCount; accountId++) {
+            jdbcDAO.create(accountId, AccountHandlerBenchmark.INITIAL_BALANCE);
+        }
+        accountDAO = "groupCommit".equals(dao)
+                ? new GroupCommitAccountDAO(jdbcDAO, GroupCommitAccountDAO.DEFAULT_WINDOW_MICROS, GroupCommitAccountDAO.DEFAULT_MAX_GROUP_SIZE)
+                : jdbcDAO;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (accountDAO instanceof GroupCommitAccountDAO) {
+            ((GroupCommitAccountDAO) accountDAO).shutdown();
+        }
+        if (jdbcDAO != null) {
+            jdbcDAO.getConnectionPool().close();
+        }
+    }
+
+    @Benchmark
+    public Account get() throws Exception {
+        return accountDAO.get(keys.next());
+    }
+
+    @Benchmark
+    public void update() throws Exception {
+        accountDAO.update(keys.next(), AccountHandlerBenchmark.INITIAL_BALANCE);
+    }
+
+    @Benchmark
+    public boolean transfer() throws Exception {
+        long fromAccountId = keys.next();
+        return accountDAO.transfer(fromAccountId, keys.nextOtherThan(fromAccountId), AccountHandlerBenchmark.AMOUNT);
+    }
+
+    @Benchmark
+    public void create() throws Exception {
+        accountDAO.create(nextNewAccountId.getAndIncrement(), AccountHandlerBenchmark.INITIAL_BALANCE);
+    }
+}
@@ -0,0 +1,94 @@
+package com.sat.revolut.benchmark;
+
+import com.sat.revolut.dao.AccountJDBCDAOImpl;
+import com.sat.revolut.dao.AccountService;
+import com.sat.revolut.dao.AccountServiceImpl;
+import com.sat.revolut.dao.CachingAccountService;
+import com.sat.revolut.dao.ConnectionPoolConfig;
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.handlers.AccountHandler;
+import com.sat.revolut.handlers.OptimisticAccountHandler;
+import com.sat.revolut.handlers.ShardedAccountHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// End to end handler operations against an in-memory H2 database, with the same wiring as Application.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountHandlerBenchmark {
+
+    static final long FIRST_ACCOUNT_ID = 1000;
+    static final Money INITIAL_BALANCE = Money.of(1000000000L);
+    static final Money AMOUNT = Money.of(2);
+
+    @Param({"1000", "100000"})
+    int accountCount;
+
+    @Param({AccountKeys.UNIFORM, AccountKeys.ZIPFIAN})
+    String distribution;
+
+    @Param({"locking", "sharded", "optimistic"})
+    String engine;
+
+    AccountHandler accountHandler;
+    AccountJDBCDAOImpl accountDAO;
+    AccountKeys keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:handler_bench_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1");
+        config.setMaxPoolSize(Math.max(10, Runtime.getRuntime().availableProcessors() * 2));
+        accountDAO = new AccountJDBCDAOImpl(config);
+        for (long accountId = FIRST_ACCOUNT_ID; accountId < FIRST_ACCOUNT_ID + accountCount; accountId++) {
+            accountDAO.create(accountId, INITIAL_BALANCE);
+        }
+
+        AccountService accountService = new AccountServiceImpl();
+        accountService.setAccountDAO(accountDAO);
+        if ("optimistic".equals(engine)) {
+            // Compare and set needs the row versions, which the cache does not keep.
+            accountHandler = new OptimisticAccountHandler();
+            accountHandler.setAccountService(accountService);
+        } else {
+            accountHandler = "sharded".equals(engine) ? new ShardedAccountHandler() : new AccountHandler();
+            accountHandler.setAccountService(new CachingAccountService(accountService, CachingAccountService.DEFAULT_CAPACITY));
+        }
+        keys = new AccountKeys(FIRST_ACCOUNT_ID, accountCount, distribution);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (accountHandler instanceof ShardedAccountHandler) {
+            ((ShardedAccountHandler) accountHandler).shutdown();
+        }
+        accountDAO.getConnectionPool().close();
+    }
+
+    @Benchmark
+    public String transferAmount() throws Exception {
+        long fromAccountId = keys.next();
+        return accountHandler.transferAmount(AMOUNT, fromAccountId, keys.nextOtherThan(fromAccountId));
+    }
+
+    @Benchmark
+    public void deposit() throws Exception {
+        accountHandler.deposit(AMOUNT, keys.next());
+    }
+
+    @Benchmark
+    public void withDraw() throws Exception {
+        accountHandler.withDraw(AMOUNT, keys.next());
+    }
+
+    @Benchmark
+    public Account getAccount() throws Exception {
+        return accountHandler.getAccount(keys.next());
+    }
+}
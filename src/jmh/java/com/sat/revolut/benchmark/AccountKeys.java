@@ -0,0 +1,57 @@
+package com.sat.revolut.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Picks benchmark account ids either uniformly or with a Zipfian skew, where a few hot accounts get most of the traffic.
+final class AccountKeys {
+
+    static final String UNIFORM = "uniform";
+    static final String ZIPFIAN = "zipfian";
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    private final long firstAccountId;
+    private final int accountCount;
+    // Cumulative probability of every rank, only for the Zipfian distribution.
+    private final double[] cumulative;
+
+    AccountKeys(long firstAccountId, int accountCount, String distribution) {
+        this.firstAccountId = firstAccountId;
+        this.accountCount = accountCount;
+        if (UNIFORM.equals(distribution)) {
+            cumulative = null;
+        } else if (ZIPFIAN.equals(distribution)) {
+            cumulative = new double[accountCount];
+            double sum = 0;
+            for (int rank = 0; rank < accountCount; rank++) {
+                sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+                cumulative[rank] = sum;
+            }
+            for (int rank = 0; rank < accountCount; rank++) {
+                cumulative[rank] /= sum;
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown distribution : " + distribution);
+        }
+    }
+
+    long next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (cumulative == null) {
+            return firstAccountId + random.nextInt(accountCount);
+        }
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (rank < 0) {
+            rank = -rank - 1;
+        }
+        return firstAccountId + Math.min(rank, accountCount - 1);
+    }
+
+    long nextOtherThan(long accountId) {
+        long next;
+        do {
+            next = next();
+        } while (next == accountId);
+        return next;
+    }
+}
@@ -0,0 +1,35 @@
+package com.sat.revolut.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Runs the selected benchmarks once per thread count, -Dbench.threads=1,4,16 by default.
+// First argument is a JMH include pattern, every benchmark by default. -Dbench.gc=true adds the GC profiler,
+// which reports allocated bytes per operation.
+public class BenchmarkMain {
+
+    public static final String PROPERTY_THREADS = "bench.threads";
+    public static final String PROPERTY_GC_PROFILER = "bench.gc";
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : ".*";
+        for (String threads : System.getProperty(PROPERTY_THREADS, "1,4,16").split(",")) {
+            ChainedOptionsBuilder builder = new OptionsBuilder();
+            if (Boolean.getBoolean(PROPERTY_GC_PROFILER)) {
+                builder.addProfiler(GCProfiler.class);
+            }
+            Options options = builder
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + threads.trim() + "-threads.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
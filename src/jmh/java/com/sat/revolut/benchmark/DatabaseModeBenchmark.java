@@ -0,0 +1,94 @@
+package com.sat.revolut.benchmark;
+
+import com.sat.revolut.dao.AccountJDBCDAOImpl;
+import com.sat.revolut.dao.ConnectionPoolConfig;
+import com.sat.revolut.domain.Account;
+import org.h2.tools.Server;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+// DAO throughput per H2 persistence mode. Server mode starts an H2 TCP server in the benchmark JVM, so it
+// measures the protocol and not the network. writeDelayMillis 0 writes every commit to disk, a larger delay
+// trades the last commits on a crash for throughput. Neither setting matters for MEM.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseModeBenchmark {
+
+    static final int ACCOUNT_COUNT = 10000;
+    static final String SERVER_PORT = "9123";
+
+    @Param({"mem", "file", "server"})
+    String mode;
+
+    @Param({"0", "500"})
+    int writeDelayMillis;
+
+    Path directory;
+    Server server;
+    AccountJDBCDAOImpl accountDAO;
+    AccountKeys keys;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("db_mode_bench");
+        ConnectionPoolConfig.Mode databaseMode = ConnectionPoolConfig.Mode.valueOf(mode.toUpperCase());
+        String path = directory.resolve("bank").toString();
+        if (databaseMode == ConnectionPoolConfig.Mode.SERVER) {
+            server = Server.createTcpServer("-tcpPort", SERVER_PORT, "-baseDir", directory.toString()).start();
+            path = "bank";
+        }
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl(databaseMode == ConnectionPoolConfig.Mode.MEM
+                ? "jdbc:h2:mem:mode_bench_" + System.nanoTime() + ";DB_CLOSE_DELAY=-1"
+                : ConnectionPoolConfig.jdbcUrl(databaseMode, path, "localhost:" + SERVER_PORT, null, writeDelayMillis, null));
+        config.setMaxPoolSize(Math.max(10, Runtime.getRuntime().availableProcessors() * 2));
+        accountDAO = new AccountJDBCDAOImpl(config);
+        for (long accountId = AccountHandlerBenchmark.FIRST_ACCOUNT_ID; accountId < AccountHandlerBenchmark.FIRST_ACCOUNT_ID + ACCOUNT_COUNT; accountId++) {
+            accountDAO.create(accountId, AccountHandlerBenchmark.INITIAL_BALANCE);
+        }
+        keys = new AccountKeys(AccountHandlerBenchmark.FIRST_ACCOUNT_ID, ACCOUNT_COUNT, AccountKeys.UNIFORM);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        accountDAO.getConnectionPool().close();
+        if (server != null) {
+            server.stop();
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    @Benchmark
+    public Account get() throws Exception {
+        return accountDAO.get(keys.next());
+    }
+
+    @Benchmark
+    public boolean transfer() throws Exception {
+        long fromAccountId = keys.next();
+        return accountDAO.transfer(fromAccountId, keys.nextOtherThan(fromAccountId), AccountHandlerBenchmark.AMOUNT);
+    }
+}
@@ -0,0 +1,88 @@
+package com.sat.revolut.benchmark;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.handlers.TransactionIdGenerator;
+import com.sat.revolut.web.QueryParams;
+import com.sat.revolut.web.ResponseEncoder;
+import io.javalin.http.util.ContextUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Route level work around the handler call : reading query parameters, the transaction id and the response body.
+// The legacy methods replay the previous code path, ctx.queryParam map splitting, BigDecimal, formatted string ids,
+// MessageFormat and concatenation. Compare gc.alloc.rate.norm with -prof gc, or -Dbench.gc=true through BenchmarkMain.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestCodecBenchmark {
+
+    static final String TRANSFER_QUERY = "amount=5000.25&fromAccountId=1&toAccountId=2";
+    static final String ACCOUNT_QUERY = "accountId=100003";
+
+    final TransactionIdGenerator transactionIds = new TransactionIdGenerator();
+    Account account;
+
+    @Setup
+    public void setUp() {
+        account = new Account();
+        account.setAccountId(100003l);
+        account.setTotalBalance(Money.parse("25000.50"));
+    }
+
+    @Benchmark
+    public String transferLegacy() {
+        String amount = legacyQueryParam(TRANSFER_QUERY, "amount");
+        Long fromAccountId = Long.valueOf(legacyQueryParam(TRANSFER_QUERY, "fromAccountId"));
+        Long toAccountId = Long.valueOf(legacyQueryParam(TRANSFER_QUERY, "toAccountId"));
+        Money money = Money.of(new BigDecimal(amount));
+        String transactionId = Thread.currentThread().hashCode() + "_" + System.currentTimeMillis() + "_" + fromAccountId + "_" + toAccountId;
+        String log = MessageFormat.format("Initiating transaction : {0}", transactionId);
+        return log.length() + money.hashCode() + "Transaction : " + transactionId + " is completed";
+    }
+
+    @Benchmark
+    public String transferCurrent() {
+        Money money = QueryParams.getMoney(TRANSFER_QUERY, "amount");
+        long fromAccountId = QueryParams.getLong(TRANSFER_QUERY, "fromAccountId");
+        long toAccountId = QueryParams.getLong(TRANSFER_QUERY, "toAccountId");
+        long transactionId = transactionIds.next() + fromAccountId + toAccountId;
+        return ResponseEncoder.message("Transaction : " + transactionId + " is completed", false) + money.hashCode();
+    }
+
+    @Benchmark
+    public String accountLegacy() {
+        Long accountId = Long.valueOf(legacyQueryParam(ACCOUNT_QUERY, "accountId"));
+        StringBuilder accountDetails = new StringBuilder();
+        accountDetails.append("Account Id : " + accountId); accountDetails.append("\n");
+        accountDetails.append("Total balance : " + account.getTotalBalance().toBigDecimal());
+        return accountDetails.toString();
+    }
+
+    @Benchmark
+    public String accountCurrent() {
+        long accountId = QueryParams.getLong(ACCOUNT_QUERY, "accountId");
+        return accountId == account.getAccountId() ? ResponseEncoder.account(account, false) : null;
+    }
+
+    @Benchmark
+    public String accountCurrentJson() {
+        long accountId = QueryParams.getLong(ACCOUNT_QUERY, "accountId");
+        return accountId == account.getAccountId() ? ResponseEncoder.account(account, true) : null;
+    }
+
+    // What ctx.queryParam does for every call.
+    private static String legacyQueryParam(String query, String name) {
+        Map<String, List<String>> params = ContextUtil.INSTANCE.splitKeyValueStringAndGroupByKey(query);
+        List<String> values = params.get(name);
+        return values == null ? null : values.get(0);
+    }
+}
@@ -4,111 +4,532 @@ import com.sat.revolut.dao.AccountDAO;
 import com.sat.revolut.dao.AccountJDBCDAOImpl;
 import com.sat.revolut.dao.AccountService;
 import com.sat.revolut.dao.AccountServiceImpl;
+import com.sat.revolut.dao.BalanceStore;
+import com.sat.revolut.dao.BroadcastingAccountService;
+import com.sat.revolut.dao.CachingAccountService;
+import com.sat.revolut.dao.ConnectionPool;
+import com.sat.revolut.dao.ConnectionPoolConfig;
+import com.sat.revolut.dao.GroupCommitAccountDAO;
+import com.sat.revolut.dao.JournalingAccountService;
+import com.sat.revolut.dao.MeteredAccountDAO;
+import com.sat.revolut.dao.OffHeapAccountDAO;
+import com.sat.revolut.dao.SubBalanceAccountDAO;
+import com.sat.revolut.dao.TransactionHistory;
 import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionEntry;
+import com.sat.revolut.domain.Transfer;
 import com.sat.revolut.handlers.AccountHandler;
+import com.sat.revolut.handlers.AccountLockStripes;
+import com.sat.revolut.handlers.OptimisticAccountHandler;
+import com.sat.revolut.handlers.ShardedAccountHandler;
+import com.sat.revolut.journal.Journal;
+import com.sat.revolut.journal.SnapshotStore;
+import com.sat.revolut.journal.Snapshotter;
+import com.sat.revolut.metrics.MetricsRegistry;
+import com.sat.revolut.stream.BalanceBroadcaster;
+import com.sat.revolut.txlog.TransactionLog;
+import com.sat.revolut.web.AccountListCodec;
+import com.sat.revolut.web.AdmissionController;
+import com.sat.revolut.web.BalanceStream;
+import com.sat.revolut.web.EndpointMetrics;
+import com.sat.revolut.web.IdempotencyStore;
+import com.sat.revolut.web.QueryParams;
+import com.sat.revolut.web.RequestExecutor;
+import com.sat.revolut.web.ResponseEncoder;
+import com.sat.revolut.web.TransactionHistoryCodec;
+import com.sat.revolut.web.TransferBatchCodec;
 import io.javalin.Javalin;
+import io.javalin.http.Context;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 public class Application {
+    private static final Logger logger = LoggerFactory.getLogger(Application.class);
     public static final String FROM_ACCOUNT_ID = "fromAccountId";
     public static final String TO_ACCOUNT_ID = "toAccountId";
     static final String PARAM_AMOUNT = "amount";
+    static final String PARAM_ACCOUNT_ID = "accountId";
+    static final String PARAM_INITIAL_AMOUNT = "initialAmount";
     public static final int PORT = 7142;
+    public static final String PROPERTY_ENGINE = "accounts.engine";
+    static final String ENGINE_LOCKING = "locking";
+    static final String ENGINE_SHARDED = "sharded";
+    static final String ENGINE_OPTIMISTIC = "optimistic";
+    public static final String PROPERTY_STORE = "accounts.store";
+    static final String STORE_JDBC = "jdbc";
+    static final String STORE_OFF_HEAP = "offheap";
+    public static final String PROPERTY_BATCH_MAX_SIZE = "accounts.batch.maxSize";
+    static final int DEFAULT_BATCH_MAX_SIZE = 10000;
 
-    public static void main(String[] args) throws SQLException {
-        Javalin app = Javalin.create().start(PORT);
+    public static void main(String[] args) throws SQLException, IOException {
+        MetricsRegistry metricsRegistry = new MetricsRegistry();
+        AdmissionController admission = AdmissionController.fromSystemProperties(metricsRegistry);
+        EndpointMetrics endpointMetrics = new EndpointMetrics(metricsRegistry);
+        Javalin app = Javalin.create(config -> config.requestLogger((ctx, executionTimeMs) -> {
+            admission.handle(ctx, executionTimeMs);
+            endpointMetrics.handle(ctx, executionTimeMs);
+        })).start(PORT);
         System.out.println("\n\n  Example of exposed endpoints : \n" +
                 "  1. GET http://localhost:7142/account?accountId=3\n" +
                 "  2. PUT http://localhost:7142/create?accountId=10&initialAmount=5000\n" +
                 "  3. PUT http://localhost:7142/withdraw?accountId=1&amount=4598\n" +
                 "  4. PUT http://localhost:7142/deposit?accountId=1&amount=5000\n" +
                 "  5. PUT http://localhost:7142/transfer?amount=5000&fromAccountId=1&toAccountId=2\n" +
-                "  6. GET http://localhost:7142/transfer?amount=5000&fromAccountId=1&toAccountId=2\n");
-        AccountHandler accountHandler = new AccountHandler();
-        AccountDAO accountJDBCDAO = new AccountJDBCDAOImpl();
+                "  6. GET http://localhost:7142/transfer?amount=5000&fromAccountId=1&toAccountId=2\n" +
+                "  7. POST http://localhost:7142/transfers/batch with a JSON array or text/csv body of fromAccountId,toAccountId,amount\n" +
+                "  8. GET http://localhost:7142/metrics\n" +
+                "  9. GET http://localhost:7142/accounts?accountIds=1,2,3 or POST the ids as the body\n" +
+                "  10. GET http://localhost:7142/accounts/stream?accountIds=1,2,3 server-sent balance events\n" +
+                "  11. GET http://localhost:7142/account/1/transactions?limit=100 then &before=<next> for older ones, with -Daccounts.history.enabled=true\n" +
+                "  12. GET http://localhost:7142/health\n");
+        AccountHandler accountHandler = createAccountHandler(System.getProperty(PROPERTY_ENGINE, ENGINE_LOCKING));
+        String store = System.getProperty(PROPERTY_STORE, STORE_JDBC);
+        boolean optimistic = accountHandler instanceof OptimisticAccountHandler;
+        String journalDir = System.getProperty(Journal.PROPERTY_DIR);
+        boolean journaled = journalDir != null && !journalDir.isEmpty();
+        if(optimistic && (journaled || STORE_OFF_HEAP.equalsIgnoreCase(store))){
+            // The journal and the off heap store rely on one JVM serializing the writes to an account.
+            throw new IllegalArgumentException("The optimistic engine needs the jdbc store and no journal");
+        }
+        String hotAccounts = System.getProperty(SubBalanceAccountDAO.PROPERTY_HOT_ACCOUNTS);
+        Set<Long> hotAccountIds = hotAccounts == null || hotAccounts.trim().isEmpty()
+                ? Collections.<Long>emptySet() : AccountListCodec.parseIds(hotAccounts, Integer.MAX_VALUE);
+        if(!hotAccountIds.isEmpty() && (accountHandler.getClass() != AccountHandler.class || journaled
+                || !STORE_JDBC.equalsIgnoreCase(store) || Boolean.getBoolean(GroupCommitAccountDAO.PROPERTY_ENABLED))){
+            // Credits to hot accounts skip the account lock the other engines, the journal and group commit rely on.
+            throw new IllegalArgumentException("Hot accounts need the locking engine and the jdbc store, without journal or group commit");
+        }
+        AccountDAO accountDAO;
+        BalanceStore balanceStore;
+        ConnectionPool connectionPool = null;
+        AccountJDBCDAOImpl accountJDBCDAO = null;
+        if(STORE_OFF_HEAP.equalsIgnoreCase(store)){
+            // Balances only live in memory, -Djournal.dir makes them survive a restart.
+            OffHeapAccountDAO offHeapDAO = new OffHeapAccountDAO(Long.getLong(OffHeapAccountDAO.PROPERTY_INITIAL_CAPACITY, OffHeapAccountDAO.DEFAULT_INITIAL_CAPACITY));
+            createSampleAccounts(offHeapDAO);
+            accountDAO = offHeapDAO;
+            balanceStore = offHeapDAO;
+        }else if(STORE_JDBC.equalsIgnoreCase(store)){
+            accountJDBCDAO = new AccountJDBCDAOImpl(ConnectionPoolConfig.fromSystemProperties());
+            accountDAO = accountJDBCDAO;
+            balanceStore = accountJDBCDAO;
+            connectionPool = accountJDBCDAO.getConnectionPool();
+            if(!hotAccountIds.isEmpty()){
+                accountDAO = new SubBalanceAccountDAO(accountJDBCDAO, hotAccountIds,
+                        Integer.getInteger(SubBalanceAccountDAO.PROPERTY_SLOTS, SubBalanceAccountDAO.DEFAULT_SLOTS));
+            }
+            if(Boolean.getBoolean(GroupCommitAccountDAO.PROPERTY_ENABLED)){
+                accountDAO = new GroupCommitAccountDAO(accountJDBCDAO,
+                        Long.getLong(GroupCommitAccountDAO.PROPERTY_WINDOW_MICROS, GroupCommitAccountDAO.DEFAULT_WINDOW_MICROS),
+                        Integer.getInteger(GroupCommitAccountDAO.PROPERTY_MAX_GROUP_SIZE, GroupCommitAccountDAO.DEFAULT_MAX_GROUP_SIZE));
+            }
+        }else{
+            throw new IllegalArgumentException("Unknown account store : " + store);
+        }
         AccountService accountService = new AccountServiceImpl();
-        accountService.setAccountDAO(accountJDBCDAO);
+        accountService.setAccountDAO(new MeteredAccountDAO(accountDAO, metricsRegistry));
 
-        accountHandler.setAccountService(accountService);
+        // The off heap store answers reads faster than the cache would. The optimistic engine needs row versions
+        // the cache does not keep, and other instances write behind its back.
+        int cacheCapacity = Integer.getInteger(CachingAccountService.PROPERTY_CAPACITY, CachingAccountService.DEFAULT_CAPACITY);
+        if(cacheCapacity > 0 && !(accountDAO instanceof OffHeapAccountDAO) && !optimistic){
+            accountService = new CachingAccountService(accountService, cacheCapacity);
+        }
 
-        app.put("/transfer",ctx -> {
-            String amount = ctx.queryParam(PARAM_AMOUNT);
-            String fromAccountId = ctx.queryParam(FROM_ACCOUNT_ID);
-            String toAccountId = ctx.queryParam(TO_ACCOUNT_ID);
-            try {
-                String result = accountHandler.transferAmount(new BigDecimal(amount), Long.valueOf(fromAccountId), Long.valueOf(toAccountId));
-                ctx.result(result);
+        // With -Djournal.dir every write is journaled and balances are rebuilt from the latest snapshot and the
+        // journal after it before serving.
+        JournalingAccountService journalingService = null;
+        if(journaled){
+            Journal journal = Journal.open(Paths.get(journalDir));
+            journalingService = new JournalingAccountService(accountService, journal);
+            SnapshotStore snapshotStore = new SnapshotStore(Paths.get(System.getProperty(SnapshotStore.PROPERTY_DIR, journalDir)),
+                    Integer.getInteger(SnapshotStore.PROPERTY_RETAIN, SnapshotStore.DEFAULT_RETAIN));
+            long recoveryNanos = recover(snapshotStore, balanceStore, journalingService);
+            accountService = journalingService;
 
-            }catch(Exception exp){
-                ctx.result(exp.getMessage());
+            Snapshotter snapshotter = new Snapshotter(journal, snapshotStore, balanceStore::forEachBalance);
+            long snapshotInterval = Long.getLong(SnapshotStore.PROPERTY_INTERVAL_SECONDS, SnapshotStore.DEFAULT_INTERVAL_SECONDS);
+            if(snapshotInterval > 0){
+                snapshotter.start(snapshotInterval);
             }
+            metricsRegistry.gauge("bank_recovery_seconds", "Time spent restoring balances at start up", () -> recoveryNanos / 1e9);
+            metricsRegistry.counter("bank_snapshots_total", "Balance snapshots written", snapshotter::getSnapshotCount);
+            metricsRegistry.gauge("bank_snapshot_last_sequence", "Journal sequence covered by the last snapshot", snapshotter::getLastSnapshotSequence);
+            metricsRegistry.gauge("bank_snapshot_last_accounts", "Accounts in the last snapshot", snapshotter::getLastSnapshotAccounts);
+            metricsRegistry.gauge("bank_snapshot_last_duration_seconds", "Time taken by the last snapshot", () -> snapshotter.getLastSnapshotNanos() / 1e9);
+            metricsRegistry.gauge("bank_journal_last_sequence", "Sequence of the last journaled record", journal::getLastSequence);
+            metricsRegistry.gauge("bank_journal_durable_sequence", "Sequence of the last record forced to disk", journal::getDurableSequence);
+            metricsRegistry.counter("bank_journal_syncs_total", "Journal segment forces", journal::getSyncCount);
+            metricsRegistry.gauge("bank_journal_segments", "Journal segment files", journal::getSegmentCount);
+            JournalingAccountService journalHealth = journalingService;
+            metricsRegistry.gauge("bank_journal_failed", "1 once a journal write failed and writes are refused", () -> journalHealth.isHealthy() ? 0 : 1);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    snapshotter.close();
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Unable to close journal : " + e.getMessage());
+                }
+            }));
+        }
 
-        });
+        // With -Daccounts.history.enabled=true every write also adds its rows to the AccountTransaction table, in the
+        // same database transaction. Off by default : single statement writes then become transactions of several.
+        // Started after recovery, balances replayed from the journal are not new transactions.
+        TransactionHistory transactionHistory = accountJDBCDAO != null && Boolean.getBoolean(TransactionHistory.PROPERTY_ENABLED)
+                ? new TransactionHistory(connectionPool) : TransactionHistory.DISABLED;
+        if(transactionHistory.isEnabled()){
+            accountJDBCDAO.setTransactionHistory(transactionHistory);
+        }
 
-        app.put("/deposit",ctx -> {
-            String accountId = ctx.queryParam("accountId");
-            String amount = ctx.queryParam("amount");
-            try{
-                accountHandler.deposit(new BigDecimal(amount),Long.valueOf(accountId));
-                ctx.result("Amount deposited in account " + accountId + " " + "successfully!");
-            } catch(Exception e){
-                ctx.result(e.getMessage());
-            }
+        // Balance changes are pushed to /accounts/stream subscribers, -Dstream.maxSubscribers=0 turns the stream off.
+        // The handler writes through the broadcasting service, gauges below still see the service it wraps.
+        BalanceBroadcaster broadcaster = null;
+        AccountService handlerService = accountService;
+        if(Integer.getInteger(BalanceBroadcaster.PROPERTY_MAX_SUBSCRIBERS, BalanceBroadcaster.DEFAULT_MAX_SUBSCRIBERS) > 0){
+            broadcaster = BalanceBroadcaster.fromSystemProperties(accountService::getAll, account -> ResponseEncoder.account(account, true));
+            handlerService = new BroadcastingAccountService(accountService, broadcaster);
+        }
+
+        accountHandler.setAccountService(handlerService);
+        accountHandler.setMetricsRegistry(metricsRegistry);
+        accountHandler.setHotAccountIds(hotAccountIds);
+
+        TransactionLog transactionLog = TransactionLog.fromSystemProperties();
+        if(transactionLog.isEnabled()){
+            accountHandler.setTransactionLog(transactionLog);
+            metricsRegistry.counter("bank_txlog_written_total", "Transaction log lines written", transactionLog::getWrittenCount);
+            metricsRegistry.counter("bank_txlog_dropped_total", "Transaction log events dropped on a full buffer", transactionLog::getDroppedCount);
+            metricsRegistry.counter("bank_txlog_sampled_out_total", "Successful operations left out by sampling", transactionLog::getSampledOutCount);
+            metricsRegistry.gauge("bank_txlog_queued_events", "Transaction log events waiting for the writer", transactionLog::getQueuedEvents);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    transactionLog.close();
+                } catch (IOException e) {
+                    System.err.println("Unable to close transaction log : " + e.getMessage());
+                }
+            }));
+        }
 
+        RequestExecutor requestExecutor = RequestExecutor.fromSystemProperties();
+        IdempotencyStore idempotencyStore = IdempotencyStore.fromSystemProperties();
+        if(idempotencyStore.isEnabled()){
+            registerIdempotencyGauges(metricsRegistry, idempotencyStore);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    idempotencyStore.close();
+                } catch (IOException e) {
+                    System.err.println("Unable to close idempotency store : " + e.getMessage());
+                }
+            }));
+        }
+        registerGauges(metricsRegistry, connectionPool, accountDAO, accountService, accountHandler, requestExecutor);
+        if(broadcaster != null){
+            registerStreamGauges(metricsRegistry, broadcaster);
+            // Long lived, so kept out of admission control. Subscribers are bounded by the broadcaster instead.
+            BalanceBroadcaster balanceBroadcaster = broadcaster;
+            app.sse("/accounts/stream", client -> BalanceStream.subscribe(client, balanceBroadcaster));
+        }
+        app.get("/metrics", ctx -> {
+            ctx.contentType(MetricsRegistry.CONTENT_TYPE);
+            ctx.result(metricsRegistry.scrape());
+        });
+        // 503 once a journal write failed, the instance then refuses writes and should be restarted.
+        JournalingAccountService healthCheck = journalingService;
+        app.get("/health", ctx -> {
+            if(healthCheck != null && !healthCheck.isHealthy()){
+                ctx.status(503);
+                ctx.result("Journal write failed, writes are refused");
+                return;
+            }
+            ctx.result("OK");
         });
 
+        // Parameters are read from the raw query string, responses are plain text or JSON per the Accept header.
+        // Transfers, deposits and withdrawals sent again with the same Idempotency-Key header get the first response.
+        // Every route but /metrics and /health goes through admission control, answering 503 once its endpoint is over its limit.
+        app.put("/transfer", admission.admit("PUT /transfer", AdmissionController.Priority.WRITE, ctx -> {
+            String query = ctx.queryString();
+            requestExecutor.execute(ctx, idempotent(ctx, idempotencyStore, json -> ResponseEncoder.message(accountHandler.transferAmount(QueryParams.getMoney(query, PARAM_AMOUNT),
+                    QueryParams.getLong(query, FROM_ACCOUNT_ID), QueryParams.getLong(query, TO_ACCOUNT_ID)), json)));
+        }));
+
+        app.put("/deposit", admission.admit("PUT /deposit", AdmissionController.Priority.WRITE, ctx -> {
+            String query = ctx.queryString();
+            requestExecutor.execute(ctx, idempotent(ctx, idempotencyStore, json -> {
+                long accountId = QueryParams.getLong(query, PARAM_ACCOUNT_ID);
+                accountHandler.deposit(QueryParams.getMoney(query, PARAM_AMOUNT), accountId);
+                return ResponseEncoder.deposited(accountId, json);
+            }));
+        }));
+
         // GET Left to be easily called from browser.
-        app.get("/transfer", ctx -> {
-            String amount = ctx.queryParam(PARAM_AMOUNT);
-            String fromAccountId = ctx.queryParam(FROM_ACCOUNT_ID);
-            String toAccountId = ctx.queryParam(TO_ACCOUNT_ID);
+        app.get("/transfer", admission.admit("GET /transfer", AdmissionController.Priority.WRITE, ctx -> {
+            String query = ctx.queryString();
+            requestExecutor.execute(ctx, idempotent(ctx, idempotencyStore, json -> ResponseEncoder.message(accountHandler.transferAmount(QueryParams.getMoney(query, PARAM_AMOUNT),
+                    QueryParams.getLong(query, FROM_ACCOUNT_ID), QueryParams.getLong(query, TO_ACCOUNT_ID)), json)));
+        }));
+
+        int maxBatchSize = Integer.getInteger(PROPERTY_BATCH_MAX_SIZE, DEFAULT_BATCH_MAX_SIZE);
+        app.post("/transfers/batch", admission.admit("POST /transfers/batch", AdmissionController.Priority.WRITE, ctx -> {
+            List<Transfer> transfers;
             try {
-                String result = accountHandler.transferAmount(new BigDecimal(amount), Long.valueOf(fromAccountId), Long.valueOf(toAccountId));
-                ctx.result(result);
-            }catch(Exception exp){
+                transfers = TransferBatchCodec.parse(ctx.body(), ctx.contentType(), maxBatchSize);
+            }catch(IllegalArgumentException | ArithmeticException exp){
+                ctx.status(400);
                 ctx.result(exp.getMessage());
+                return;
             }
-        });
+            ctx.contentType(ResponseEncoder.CONTENT_TYPE_JSON);
+            requestExecutor.execute(ctx, json -> TransferBatchCodec.encode(accountHandler.transferBatch(transfers)));
+        }));
 
-        app.get("/account",ctx ->{
-            String accountId = ctx.queryParam("accountId");
+        // Reads stay on the server thread, they only wait on a read lock and should not queue behind writes.
+        app.get("/account", admission.admit("GET /account", AdmissionController.Priority.READ, ctx ->{
+            boolean json = ResponseEncoder.acceptsJson(ctx);
+            if(json){
+                ctx.contentType(ResponseEncoder.CONTENT_TYPE_JSON);
+            }
             try{
-                Account account = accountHandler.getAccount(Long.valueOf(accountId));
+                Account account = accountHandler.getAccount(QueryParams.getLong(ctx.queryString(), PARAM_ACCOUNT_ID));
                 if(account.getAccountId() != null){
-                    ctx.result(account.toString());
+                    ctx.result(ResponseEncoder.account(account, json));
                 }
             }catch(Exception e){
-                ctx.result(e.getMessage());
+                ctx.result(ResponseEncoder.error(e.getMessage(), json));
             }
-        });
+        }));
 
-        app.put("/withdraw",ctx -> {
-            String accountId = ctx.queryParam("accountId");
-            String amount = ctx.queryParam("amount");
-            try{
-                accountHandler.withDraw(new BigDecimal(amount),Long.valueOf(accountId));
-                ctx.result("Withdraw from account " + accountId + " " + " completed successfully!");
-            } catch(Exception e){
-                ctx.result(e.getMessage());
-            }
+        // Bulk reads, one lookup for all ids. Stay on the server thread like /account.
+        int maxBulkIds = Integer.getInteger(AccountListCodec.PROPERTY_MAX_IDS, AccountListCodec.DEFAULT_MAX_IDS);
+        app.get("/accounts", admission.admit("GET /accounts", AdmissionController.Priority.READ,
+                ctx -> streamAccounts(ctx, accountHandler, ctx.queryParam(AccountListCodec.PARAM_ACCOUNT_IDS), maxBulkIds)));
+        app.post("/accounts", admission.admit("POST /accounts", AdmissionController.Priority.READ,
+                ctx -> streamAccounts(ctx, accountHandler, ctx.body(), maxBulkIds)));
 
-        });
+        // Newest first, one page per request. Read straight from the history table, no account lock involved.
+        if(transactionHistory.isEnabled()){
+            int maxPageSize = Integer.getInteger(TransactionHistory.PROPERTY_MAX_PAGE_SIZE, TransactionHistory.DEFAULT_MAX_PAGE_SIZE);
+            app.get("/account/:accountId/transactions", admission.admit("GET /account/:accountId/transactions", AdmissionController.Priority.READ,
+                    ctx -> streamTransactions(ctx, transactionHistory, maxPageSize)));
+        }
 
-        app.put("/create",ctx -> {
-            String accountId = ctx.queryParam("accountId");
-            String initialAmount = ctx.queryParam("initialAmount");
-            try{
-                accountHandler.createAccount(Long.valueOf(accountId),new BigDecimal(initialAmount));
-                ctx.result("Account " + accountId + " " + " created successfully!");
-            } catch(Exception e){
-                ctx.result(e.getMessage());
-            }
+        app.put("/withdraw", admission.admit("PUT /withdraw", AdmissionController.Priority.WRITE, ctx -> {
+            String query = ctx.queryString();
+            requestExecutor.execute(ctx, idempotent(ctx, idempotencyStore, json -> {
+                long accountId = QueryParams.getLong(query, PARAM_ACCOUNT_ID);
+                accountHandler.withDraw(QueryParams.getMoney(query, PARAM_AMOUNT), accountId);
+                return ResponseEncoder.withdrawn(accountId, json);
+            }));
+        }));
 
-        });
+        app.put("/create", admission.admit("PUT /create", AdmissionController.Priority.WRITE, ctx -> {
+            String query = ctx.queryString();
+            requestExecutor.execute(ctx, json -> {
+                long accountId = QueryParams.getLong(query, PARAM_ACCOUNT_ID);
+                accountHandler.createAccount(accountId, QueryParams.getMoney(query, PARAM_INITIAL_AMOUNT));
+                return ResponseEncoder.created(accountId, json);
+            });
+        }));
 
     }
 
+    // Keys are scoped by path, so GET and PUT /transfer share them. Read on the server thread, the work may run on a worker.
+    static RequestExecutor.Work idempotent(Context ctx, IdempotencyStore idempotencyStore, RequestExecutor.Work work) {
+        return idempotencyStore.wrap(ctx.matchedPath(), ctx.header(IdempotencyStore.HEADER), ctx.queryString(), work);
+    }
+
+    // Writes the JSON array of the accounts found straight to the response, missing ids are left out.
+    static void streamAccounts(Context ctx, AccountHandler accountHandler, String ids, int maxIds) throws IOException {
+        boolean json = ResponseEncoder.acceptsJson(ctx);
+        Set<Long> accountIds;
+        try {
+            accountIds = AccountListCodec.parseIds(ids, maxIds);
+        }catch(IllegalArgumentException exp){
+            ctx.status(400);
+            ctx.result(ResponseEncoder.error(exp.getMessage(), json));
+            return;
+        }
+        List<Account> accounts;
+        try {
+            accounts = accountHandler.getAccounts(accountIds);
+        }catch(Exception e){
+            ctx.status(500);
+            ctx.result(ResponseEncoder.error(e.getMessage(), json));
+            return;
+        }
+        ctx.contentType(ResponseEncoder.CONTENT_TYPE_JSON);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(ctx.res.getOutputStream(), StandardCharsets.UTF_8));
+        AccountListCodec.write(accounts, writer);
+        writer.flush();
+    }
+
+    // One page of the account's history written straight to the response, ?before=<next of the previous page> for the next.
+    static void streamTransactions(Context ctx, TransactionHistory history, int maxPageSize) throws IOException {
+        boolean json = ResponseEncoder.acceptsJson(ctx);
+        long accountId;
+        long[] before;
+        int limit;
+        try {
+            accountId = Long.parseLong(ctx.pathParam(PARAM_ACCOUNT_ID));
+            before = TransactionHistoryCodec.parseCursor(ctx.queryParam(TransactionHistoryCodec.PARAM_BEFORE));
+            limit = TransactionHistoryCodec.parseLimit(ctx.queryParam(TransactionHistoryCodec.PARAM_LIMIT), maxPageSize);
+        }catch(IllegalArgumentException exp){
+            ctx.status(400);
+            ctx.result(ResponseEncoder.error(exp.getMessage(), json));
+            return;
+        }
+        List<TransactionEntry> entries;
+        try {
+            entries = history.page(accountId, before[0], before[1], limit);
+        }catch(SQLException e){
+            ctx.status(500);
+            ctx.result(ResponseEncoder.error(e.getMessage(), json));
+            return;
+        }
+        ctx.contentType(ResponseEncoder.CONTENT_TYPE_JSON);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(ctx.res.getOutputStream(), StandardCharsets.UTF_8));
+        TransactionHistoryCodec.write(accountId, entries, limit, writer);
+        writer.flush();
+    }
+
+    // Same sample accounts as a new Account table gets.
+    static void createSampleAccounts(AccountDAO accountDAO) throws SQLException {
+        accountDAO.create(1l, Money.of(10000));
+        accountDAO.create(2l, Money.of(15000));
+        accountDAO.create(3l, Money.of(25000));
+    }
+
+    // Bulk loads the latest snapshot straight into the store, then replays the journal records after it.
+    // Returns the time taken in nanoseconds.
+    static long recover(SnapshotStore snapshotStore, BalanceStore balanceStore, JournalingAccountService journalingService)
+            throws IOException, SQLException {
+        long start = System.nanoTime();
+        long afterSequence = 0;
+        SnapshotStore.Snapshot snapshot = snapshotStore.loadLatest();
+        if(snapshot != null){
+            balanceStore.loadBalances(snapshot.getEntries());
+            afterSequence = snapshot.getJournalSequence();
+            logger.info("Loaded {} accounts from snapshot at journal sequence {} in {} ms", snapshot.getCount(), afterSequence,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        long replayed = journalingService.recover(afterSequence);
+        long recoveryNanos = System.nanoTime() - start;
+        logger.info("Restored balances in {} ms, {} journal records replayed", TimeUnit.NANOSECONDS.toMillis(recoveryNanos), replayed);
+        return recoveryNanos;
+    }
+
+    // Counters and sizes the components already keep, read when /metrics is scraped. pool is null without a database.
+    static void registerGauges(MetricsRegistry registry, ConnectionPool pool, AccountDAO accountDAO, AccountService accountService,
+                               AccountHandler accountHandler, RequestExecutor requestExecutor) {
+        if(pool != null){
+            registerPoolGauges(registry, pool);
+        }
+
+        if(accountDAO instanceof OffHeapAccountDAO){
+            OffHeapAccountDAO offHeap = (OffHeapAccountDAO) accountDAO;
+            registry.gauge("bank_offheap_accounts", "Accounts held in the off heap store", offHeap::getSize);
+            registry.gauge("bank_offheap_allocated_bytes", "Direct memory held by the off heap store", offHeap::getAllocatedBytes);
+        }
+
+        if(accountDAO instanceof SubBalanceAccountDAO){
+            SubBalanceAccountDAO subBalances = (SubBalanceAccountDAO) accountDAO;
+            registry.gauge("bank_hot_accounts", "Accounts split into sub-balances", () -> subBalances.getHotAccountIds().size());
+            registry.gauge("bank_hot_account_slots", "Sub-balances per hot account", subBalances::getSlots);
+            registry.counter("bank_hot_account_sweeps_total", "Sub-balances swept into their account to cover a debit", subBalances::getSweepCount);
+        }
+
+        if(accountDAO instanceof GroupCommitAccountDAO){
+            GroupCommitAccountDAO groupCommit = (GroupCommitAccountDAO) accountDAO;
+            registry.counter("bank_group_commits_total", "Committed write groups", groupCommit::getGroupCount);
+            registry.counter("bank_group_commit_writes_total", "Writes committed in groups", groupCommit::getWriteCount);
+            registry.counter("bank_group_commit_failures_total", "Write groups that failed to commit", groupCommit::getFailedGroupCount);
+            registry.gauge("bank_group_commit_queued_writes", "Writes waiting for the committer", groupCommit::getQueuedWrites);
+        }
 
+        if(accountService instanceof CachingAccountService){
+            CachingAccountService cache = (CachingAccountService) accountService;
+            registry.counter("bank_cache_requests_total", "Account cache lookups", cache::getHitCount, "result", "hit");
+            registry.counter("bank_cache_requests_total", "Account cache lookups", cache::getMissCount, "result", "miss");
+            registry.counter("bank_cache_evictions_total", "Accounts evicted from the cache", cache::getEvictionCount);
+            registry.gauge("bank_cache_size", "Accounts held in the cache", cache::getSize);
+        }
+
+        if(accountHandler instanceof OptimisticAccountHandler){
+            registry.counter("bank_optimistic_conflicts_total", "Compare and set attempts lost to a concurrent write", ((OptimisticAccountHandler) accountHandler)::getConflictCount);
+        }
+
+        if(accountHandler instanceof ShardedAccountHandler){
+            registry.gauge("bank_shard_queued_operations", "Operations waiting for their shard", ((ShardedAccountHandler) accountHandler)::getQueuedOperations);
+        }
+
+        registry.gauge("bank_request_queue_depth", "Requests waiting for a request worker", requestExecutor::getQueueDepth);
+        registry.gauge("bank_request_active_workers", "Request workers running a request", requestExecutor::getActiveCount);
+        registry.counter("bank_request_rejected_total", "Requests rejected with 503 because the queue was full", requestExecutor::getRejectedCount);
+    }
+
+    static void registerIdempotencyGauges(MetricsRegistry registry, IdempotencyStore store) {
+        registry.counter("bank_idempotency_requests_total", "Requests carrying an idempotency key", store::getHitCount, "result", "hit");
+        registry.counter("bank_idempotency_requests_total", "Requests carrying an idempotency key", store::getMissCount, "result", "miss");
+        registry.counter("bank_idempotency_in_flight_waits_total", "Repeated keys that waited for the first request to finish", store::getInFlightWaitCount);
+        registry.counter("bank_idempotency_conflicts_total", "Keys sent again with a different request", store::getConflictCount);
+        registry.counter("bank_idempotency_evictions_total", "Keys evicted before they expired", store::getEvictionCount);
+        registry.counter("bank_idempotency_persist_failures_total", "Results that could not be written to the idempotency file", store::getPersistFailureCount);
+        registry.gauge("bank_idempotency_keys", "Idempotency keys held", store::getSize);
+    }
+
+    static void registerStreamGauges(MetricsRegistry registry, BalanceBroadcaster broadcaster) {
+        registry.gauge("bank_stream_subscribers", "Open balance subscriptions", broadcaster::getSubscriberCount);
+        registry.gauge("bank_stream_changed_accounts", "Changed accounts waiting for the dispatcher", broadcaster::getChangedAccounts);
+        registry.counter("bank_stream_events_total", "Balance events sent to subscribers", broadcaster::getSentCount);
+        registry.counter("bank_stream_coalesced_total", "Balance events replaced by a newer balance before being sent", broadcaster::getCoalescedCount);
+        registry.counter("bank_stream_dropped_total", "Subscribers dropped for lagging behind", broadcaster::getDroppedCount);
+        registry.counter("bank_stream_rejected_total", "Subscriptions refused because the stream was full", broadcaster::getRejectedCount);
+    }
+
+    static void registerPoolGauges(MetricsRegistry registry, ConnectionPool pool) {
+        registry.gauge("bank_db_pool_connections", "Database connections by state", pool::getActiveCount, "state", "active");
+        registry.gauge("bank_db_pool_connections", "Database connections by state", pool::getIdleCount, "state", "idle");
+        registry.gauge("bank_db_pool_max_connections", "Database connection pool size limit", pool::getMaxPoolSize);
+        registry.counter("bank_db_pool_acquires_total", "Database connections handed out", pool::getAcquireCount);
+        registry.counter("bank_db_pool_waits_total", "Connection acquisitions that had to wait", pool::getWaitCount);
+        registry.counter("bank_db_pool_wait_seconds_total", "Time spent waiting for a database connection", () -> pool.getWaitTimeNanos() / 1e9);
+        registry.counter("bank_db_pool_timeouts_total", "Connection acquisitions that timed out", pool::getTimeoutCount);
+    }
+
+    // Lock based handler by default, -Daccounts.engine=sharded selects the single writer sharded engine,
+    // -Daccounts.engine=optimistic the lock free one for several instances sharing a database.
+    static AccountHandler createAccountHandler(String engine) {
+        if(ENGINE_OPTIMISTIC.equalsIgnoreCase(engine)){
+            OptimisticAccountHandler accountHandler = new OptimisticAccountHandler(
+                    Integer.getInteger(OptimisticAccountHandler.PROPERTY_MAX_ATTEMPTS, OptimisticAccountHandler.DEFAULT_MAX_ATTEMPTS),
+                    Long.getLong(OptimisticAccountHandler.PROPERTY_BACKOFF_MICROS, OptimisticAccountHandler.DEFAULT_BACKOFF_MICROS));
+            accountHandler.setBatchGroupSize(Integer.getInteger(AccountHandler.PROPERTY_BATCH_GROUP_SIZE, AccountHandler.DEFAULT_BATCH_GROUP_SIZE));
+            return accountHandler;
+        }
+        if(ENGINE_SHARDED.equalsIgnoreCase(engine)){
+            return new ShardedAccountHandler(Integer.getInteger(ShardedAccountHandler.PROPERTY_SHARDS, Runtime.getRuntime().availableProcessors()),
+                    Integer.getInteger(ShardedAccountHandler.PROPERTY_QUEUE_CAPACITY, ShardedAccountHandler.DEFAULT_QUEUE_CAPACITY));
+        }
+        if(!ENGINE_LOCKING.equalsIgnoreCase(engine)){
+            throw new IllegalArgumentException("Unknown account engine : " + engine);
+        }
+        AccountHandler accountHandler = new AccountHandler(Integer.getInteger(AccountLockStripes.PROPERTY_STRIPES, AccountLockStripes.DEFAULT_STRIPES));
+        accountHandler.setLockTimeoutMillis(Long.getLong(AccountHandler.PROPERTY_LOCK_TIMEOUT_MILLIS, AccountHandler.DEFAULT_LOCK_TIMEOUT_MILLIS));
+        accountHandler.setBatchGroupSize(Integer.getInteger(AccountHandler.PROPERTY_BATCH_GROUP_SIZE, AccountHandler.DEFAULT_BATCH_GROUP_SIZE));
+        return accountHandler;
+    }
 }
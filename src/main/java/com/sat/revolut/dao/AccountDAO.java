@@ -1,12 +1,24 @@
 package com.sat.revolut.dao;
 
 import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
 
-import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 
 public interface AccountDAO {
-    void create(Long accountId, BigDecimal initialBalance) throws SQLException;
-    void update(Long accountId, BigDecimal newBalance) throws SQLException;
+    void create(Long accountId, Money initialBalance) throws SQLException;
+    void update(Long accountId, Money newBalance) throws SQLException;
     Account get(Long accountId) throws SQLException;
+    // Accounts found among accountIds in one round trip, in no particular order. Missing ids are left out.
+    List<Account> getAll(Collection<Long> accountIds) throws SQLException;
+    // Relative writes, no balance read beforehand. A debit is only applied when the balance covers it.
+    void credit(Long accountId, Money amount) throws SQLException;
+    boolean debit(Long accountId, Money amount) throws SQLException;
+    boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException;
+    boolean[] transferBatch(List<Transfer> transfers) throws SQLException;
+    // Writes newBalance only if the account is still at expectedVersion, see Account.getVersion().
+    boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException;
 }
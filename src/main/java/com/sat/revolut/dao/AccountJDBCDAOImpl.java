@@ -1,115 +1,498 @@
 package com.sat.revolut.dao;
 
 import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionType;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.journal.BalanceConsumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
+import java.nio.LongBuffer;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
-public class AccountJDBCDAOImpl implements AccountDAO {
+public class AccountJDBCDAOImpl implements AccountDAO, BalanceStore {
 
-    private static final String DB_DRIVER = "org.h2.Driver";
-    private static final String DB_CONNECTION = "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1";
-    private static final String DB_USER = "";
-    private static final String DB_PASSWORD = "";
+    private static final String INSERT_ACCOUNT = "INSERT INTO Account(id, balance) VALUES(?, ?)";
+    // Every write bumps the row version, so a compare and set fails after any other write in between.
+    private static final String UPDATE_BALANCE = "UPDATE Account SET balance = ?, version = version + 1 WHERE id = ?";
+    private static final String COMPARE_AND_SET_BALANCE = "UPDATE Account SET balance = ?, version = version + 1 WHERE id = ? AND version = ?";
+    private static final String SELECT_ACCOUNT = "SELECT id, balance, version FROM Account WHERE id = ?";
+    private static final String SELECT_BALANCE_FOR_UPDATE = "SELECT balance FROM Account WHERE id = ? FOR UPDATE";
+    // One statement for any number of ids, the ids are bound as a single array parameter instead of an IN list
+    // whose text, and cached statement, would differ with every count.
+    private static final String SELECT_ACCOUNTS = "SELECT a.id, a.balance, a.version FROM TABLE(id BIGINT = ?) t INNER JOIN Account a ON a.id = t.id";
+    static final int MULTI_GET_CHUNK_SIZE = 1000;
+    private static final String DEBIT_BALANCE = "UPDATE Account SET balance = balance - ?, version = version + 1 WHERE id = ? AND balance >= ?";
+    private static final String CREDIT_BALANCE = "UPDATE Account SET balance = balance + ?, version = version + 1 WHERE id = ?";
+    private static final String ADD_VERSION_COLUMN = "ALTER TABLE Account ADD COLUMN IF NOT EXISTS version bigint DEFAULT 0 NOT NULL";
+    private static final String SELECT_BALANCE_PAGE = "SELECT id, balance FROM Account WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String MERGE_BALANCE = "MERGE INTO Account(id, balance) KEY(id) VALUES(?, ?)";
+    static final int BULK_PAGE_SIZE = 10000;
+    private static final String SELECT_ACCOUNT_TABLE = "SELECT 1 FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = 'ACCOUNT'";
+    private static final String SELECT_SUB_MINOR_BALANCES = "SELECT id FROM Account WHERE CAST(balance AS DECIMAL(38, 10)) <> CAST(balance AS DECIMAL(38, 2)) ORDER BY id";
+    private static final String SELECT_BALANCE_COLUMN_TYPE = "SELECT TYPE_NAME FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_NAME = 'ACCOUNT' AND COLUMN_NAME = 'BALANCE'";
 
+    private final ConnectionPool connectionPool;
+    private TransactionHistory history = TransactionHistory.DISABLED;
 
     public AccountJDBCDAOImpl() throws SQLException{
+        this(new ConnectionPoolConfig());
+    }
+
+    public AccountJDBCDAOImpl(ConnectionPoolConfig connectionPoolConfig) throws SQLException{
+        connectionPool = new ConnectionPool(connectionPoolConfig);
         insertWithStatement();
     }
 
 
     @Override
-    public void create(Long accountId, BigDecimal initialBalance) throws SQLException {
-        Connection connection = getDBConnection();
-        try {
-            Statement stmt = null;
-            connection.setAutoCommit(true);
-            stmt = connection.createStatement();
-
-            stmt.execute("INSERT INTO Account(id, balance) VALUES(" + accountId + "," + initialBalance.toPlainString()+")");
-        }finally {
-            connection.close();
-        }
+    public void create(Long accountId, Money initialBalance) throws SQLException {
+        write(connection -> {
+            applyCreate(connection, accountId, initialBalance);
+            return true;
+        });
     }
 
     @Override
-    public void update(Long accountId, BigDecimal newBalance)  throws SQLException  {
-        Connection connection = getDBConnection();
-        try {
-            Statement stmt = null;
-            connection.setAutoCommit(true);
-            stmt = connection.createStatement();
-            stmt.execute("update Account set balance= " + newBalance + " where id=" + accountId);
-        }finally {
-            connection.close();
-        }
+    public void update(Long accountId, Money newBalance)  throws SQLException  {
+        write(connection -> {
+            applyUpdate(connection, accountId, newBalance);
+            return true;
+        });
     }
 
     @Override
     public Account get(Long accountId) throws SQLException {
         Account account = null;
-        Connection connection = getDBConnection();
-        try{
-            Statement stmt = null;
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement stmt = connection.prepareStatement(SELECT_ACCOUNT);
+            stmt.setLong(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    account = readAccount(rs);
+                }
+            }
+        }
 
-            connection.setAutoCommit(true);
-            stmt = connection.createStatement();
-            ResultSet rs = stmt.executeQuery("select * from Account where id=" + accountId);
+        return account;
+    }
 
-            while (rs.next()) {
-                account = new Account();
-                account.setAccountId(rs.getLong("id"));
-                account.setTotalBalance(new BigDecimal(rs.getString("balance")));
+    // Ids are looked up MULTI_GET_CHUNK_SIZE at a time on one connection, a duplicate id is returned once.
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        return selectAccounts(SELECT_ACCOUNTS, accountIds);
+    }
+
+    // query takes the chunk of ids as its only parameter and returns id, balance and version columns.
+    List<Account> selectAccounts(String query, Collection<Long> accountIds) throws SQLException {
+        Long[] ids = new HashSet<>(accountIds).toArray(new Long[0]);
+        List<Account> accounts = new ArrayList<>(ids.length);
+        if (ids.length == 0) {
+            return accounts;
+        }
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement stmt = connection.prepareStatement(query);
+            for (int from = 0; from < ids.length; from += MULTI_GET_CHUNK_SIZE) {
+                int to = Math.min(ids.length, from + MULTI_GET_CHUNK_SIZE);
+                stmt.setObject(1, from == 0 && to == ids.length ? ids : Arrays.copyOfRange(ids, from, to));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        accounts.add(readAccount(rs));
+                    }
+                }
             }
-        }finally{
-            connection.close();
         }
+        return accounts;
+    }
 
+    private static Account readAccount(ResultSet rs) throws SQLException {
+        Account account = new Account();
+        account.setAccountId(rs.getLong("id"));
+        account.setTotalBalance(Money.ofMinor(rs.getLong("balance")));
+        account.setVersion(rs.getLong("version"));
         return account;
     }
 
-    private static void insertWithStatement() throws SQLException {
-        Connection connection = getDBConnection();
-        Statement stmt = null;
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        return write(connection -> {
+            Money before = history.isEnabled() ? selectBalanceForUpdate(connection, accountId) : null;
+            PreparedStatement stmt = connection.prepareStatement(COMPARE_AND_SET_BALANCE);
+            stmt.setLong(1, newBalance.getMinorUnits());
+            stmt.setLong(2, accountId);
+            stmt.setLong(3, expectedVersion);
+            if (stmt.executeUpdate() != 1) {
+                return false;
+            }
+            recordChange(connection, accountId, before, newBalance);
+            return true;
+        });
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        write(connection -> {
+            applyCredit(connection, accountId, amount);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        return write(connection -> applyDebit(connection, accountId, amount));
+    }
+
+    // Debit and credit are applied in a single transaction. Debit is conditional on the available balance,
+    // so no read is needed beforehand. Returns false when the from account does not have enough balance.
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            Connection jdbcConnection = connection.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try {
+                boolean transferred = applyTransfer(connection, fromAccountId, toAccountId, amount);
+                if (transferred) {
+                    jdbcConnection.commit();
+                } else {
+                    jdbcConnection.rollback();
+                }
+                return transferred;
+            } catch (SQLException | RuntimeException e) {
+                // Rolled back before setAutoCommit(true) below, which would otherwise commit the debit alone.
+                jdbcConnection.rollback();
+                throw e;
+            } finally {
+                jdbcConnection.setAutoCommit(true);
+            }
+        }
+    }
+
+    // All transfers are applied in one transaction, in list order. Debits are executed one by one since each
+    // needs its own update count, credits are queued in a JDBC batch. Pending credits are flushed before a debit
+    // of an account they credit, so every transfer sees the same balances as if the list was applied sequentially.
+    // Returns for every transfer whether it was applied, false when the from account had low balance.
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        boolean[] transferred = new boolean[transfers.size()];
+        try (PooledConnection connection = connectionPool.acquire()) {
+            Connection jdbcConnection = connection.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try {
+                PreparedStatement debit = connection.prepareStatement(DEBIT_BALANCE);
+                PreparedStatement credit = connection.prepareStatement(CREDIT_BALANCE);
+                Set<Long> pendingCredits = new HashSet<>();
+                for (int i = 0; i < transfers.size(); i++) {
+                    Transfer transfer = transfers.get(i);
+                    if (pendingCredits.contains(transfer.getFromAccountId())) {
+                        executeCredits(credit);
+                        pendingCredits.clear();
+                    }
+
+                    debit.setLong(1, transfer.getAmount().getMinorUnits());
+                    debit.setLong(2, transfer.getFromAccountId());
+                    debit.setLong(3, transfer.getAmount().getMinorUnits());
+                    if (debit.executeUpdate() != 1) {
+                        continue;
+                    }
+
+                    credit.setLong(1, transfer.getAmount().getMinorUnits());
+                    credit.setLong(2, transfer.getToAccountId());
+                    credit.addBatch();
+                    pendingCredits.add(transfer.getToAccountId());
+                    transferred[i] = true;
+                }
+                executeCredits(credit);
+                history.recordTransfers(connection, transfers, transferred);
+                jdbcConnection.commit();
+                return transferred;
+            } catch (SQLException | RuntimeException e) {
+                // Statement is cached with the connection, credits left in its batch must not leak into the next use.
+                // Rolled back before setAutoCommit(true) below, which would otherwise commit the debits already run.
+                try {
+                    connection.prepareStatement(CREDIT_BALANCE).clearBatch();
+                } finally {
+                    jdbcConnection.rollback();
+                }
+                throw e;
+            } finally {
+                jdbcConnection.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Runs work in one transaction when its history rows have to commit with it, on a plain connection otherwise.
+    private <T> T write(ConnectionWork<T> work) throws SQLException {
+        try (PooledConnection connection = connectionPool.acquire()) {
+            if (!history.isEnabled()) {
+                return work.apply(connection);
+            }
+            Connection jdbcConnection = connection.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try {
+                T result = work.apply(connection);
+                jdbcConnection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                jdbcConnection.rollback();
+                throw e;
+            } finally {
+                jdbcConnection.setAutoCommit(true);
+            }
+        }
+    }
+
+    interface ConnectionWork<T> {
+        T apply(PooledConnection connection) throws SQLException;
+    }
+
+    // Statement level operations below run on the caller's connection and leave committing to the caller.
+    // The apply* ones also record the change in the transaction history, the others only touch Account.
+
+    void applyCreate(PooledConnection connection, Long accountId, Money initialBalance) throws SQLException {
+        insertAccount(connection, accountId, initialBalance);
+        history.record(connection, accountId, TransactionType.CREATE, initialBalance.getMinorUnits(), null);
+    }
+
+    // The balance before is read under a row lock, the history then holds the amount the update added or took.
+    void applyUpdate(PooledConnection connection, Long accountId, Money newBalance) throws SQLException {
+        Money before = history.isEnabled() ? selectBalanceForUpdate(connection, accountId) : null;
+        updateBalance(connection, accountId, newBalance);
+        recordChange(connection, accountId, before, newBalance);
+    }
+
+    void applyCredit(PooledConnection connection, Long accountId, Money amount) throws SQLException {
+        creditBalance(connection, accountId, amount);
+        history.record(connection, accountId, TransactionType.DEPOSIT, amount.getMinorUnits(), null);
+    }
+
+    boolean applyDebit(PooledConnection connection, Long accountId, Money amount) throws SQLException {
+        if (!debitBalance(connection, accountId, amount)) {
+            return false;
+        }
+        history.record(connection, accountId, TransactionType.WITHDRAW, -amount.getMinorUnits(), null);
+        return true;
+    }
+
+    // Null when the account does not exist.
+    Money selectBalanceForUpdate(PooledConnection connection, Long accountId) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(SELECT_BALANCE_FOR_UPDATE);
+        stmt.setLong(1, accountId);
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? Money.ofMinor(rs.getLong(1)) : null;
+        }
+    }
+
+    // A deposit or a withdrawal of the difference, nothing when the account was missing or nothing changed.
+    void recordChange(PooledConnection connection, Long accountId, Money before, Money after) throws SQLException {
+        if (before == null || before.equals(after)) {
+            return;
+        }
+        long change = after.getMinorUnits() - before.getMinorUnits();
+        history.record(connection, accountId, change < 0 ? TransactionType.WITHDRAW : TransactionType.DEPOSIT, change, null);
+    }
+
+    void insertAccount(PooledConnection connection, Long accountId, Money initialBalance) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(INSERT_ACCOUNT);
+        stmt.setLong(1, accountId);
+        stmt.setLong(2, initialBalance.getMinorUnits());
+        stmt.executeUpdate();
+    }
+
+    void updateBalance(PooledConnection connection, Long accountId, Money newBalance) throws SQLException {
+        PreparedStatement stmt = connection.prepareStatement(UPDATE_BALANCE);
+        stmt.setLong(1, newBalance.getMinorUnits());
+        stmt.setLong(2, accountId);
+        stmt.executeUpdate();
+    }
+
+    // Nothing is changed when false is returned. An exception after the debit leaves it to be rolled back by the caller.
+    boolean applyTransfer(PooledConnection connection, Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        if (!debitBalance(connection, fromAccountId, amount)) {
+            return false;
+        }
         try {
-            connection.setAutoCommit(true);
-            stmt = connection.createStatement();
-            stmt.execute("CREATE TABLE Account(id long primary key, balance varchar(255))");
-            stmt.execute("INSERT INTO Account(id, balance) VALUES(1, 10000)");
-            stmt.execute("INSERT INTO Account(id, balance) VALUES(2, 15000)");
-            stmt.execute("INSERT INTO Account(id, balance) VALUES(3, 25000)");
+            creditBalance(connection, toAccountId, amount);
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage() + ", transfer rolled back", e);
+        }
+        history.recordTransfer(connection, fromAccountId, toAccountId, amount);
+        return true;
+    }
+
+    // False, and nothing changed, when the account is missing or its balance is below amount.
+    boolean debitBalance(PooledConnection connection, Long accountId, Money amount) throws SQLException {
+        PreparedStatement debit = connection.prepareStatement(DEBIT_BALANCE);
+        debit.setLong(1, amount.getMinorUnits());
+        debit.setLong(2, accountId);
+        debit.setLong(3, amount.getMinorUnits());
+        return debit.executeUpdate() == 1;
+    }
+
+    void creditBalance(PooledConnection connection, Long accountId, Money amount) throws SQLException {
+        PreparedStatement credit = connection.prepareStatement(CREDIT_BALANCE);
+        credit.setLong(1, amount.getMinorUnits());
+        credit.setLong(2, accountId);
+        if (credit.executeUpdate() != 1) {
+            throw new SQLException("Account " + accountId + " does not exist");
+        }
+    }
+
+    private void executeCredits(PreparedStatement credit) throws SQLException {
+        for (int updated : credit.executeBatch()) {
+            if (updated != 1) {
+                throw new SQLException("Credit account of a batched transfer does not exist, batch rolled back");
+            }
+        }
+    }
+
+    // Reads every balance in id order, one page at a time on the primary key, so writers are never blocked
+    // for long and the result is never held in memory at once. Balances are read as they are when their page
+    // is read, not as of one point in time.
+    @Override
+    public long forEachBalance(BalanceConsumer consumer) throws SQLException {
+        long count = 0;
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            int read = 0;
+            try (PooledConnection connection = connectionPool.acquire()) {
+                PreparedStatement stmt = connection.prepareStatement(SELECT_BALANCE_PAGE);
+                stmt.setLong(1, lastId);
+                stmt.setInt(2, BULK_PAGE_SIZE);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        lastId = rs.getLong(1);
+                        consumer.accept(lastId, rs.getLong(2));
+                        read++;
+                    }
+                }
+            }
+            count += read;
+            if (read < BULK_PAGE_SIZE) {
+                return count;
+            }
+        }
+    }
+
+    // Creates or overwrites the accounts of (id, balance) pairs read from the buffer, in batched transactions.
+    @Override
+    public long loadBalances(LongBuffer entries) throws SQLException {
+        long count = 0;
+        try (PooledConnection connection = connectionPool.acquire()) {
+            Connection jdbcConnection = connection.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try {
+                PreparedStatement merge = connection.prepareStatement(MERGE_BALANCE);
+                while (entries.remaining() >= 2) {
+                    merge.setLong(1, entries.get());
+                    merge.setLong(2, entries.get());
+                    merge.addBatch();
+                    if (++count % BULK_PAGE_SIZE == 0) {
+                        merge.executeBatch();
+                        jdbcConnection.commit();
+                    }
+                }
+                merge.executeBatch();
+                jdbcConnection.commit();
+                return count;
+            } catch (SQLException e) {
+                connection.prepareStatement(MERGE_BALANCE).clearBatch();
+                jdbcConnection.rollback();
+                throw e;
+            } finally {
+                jdbcConnection.setAutoCommit(true);
+            }
+        }
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public TransactionHistory getTransactionHistory() {
+        return history;
+    }
+
+    // Writes from then on also record their history rows, in the same transaction.
+    public void setTransactionHistory(TransactionHistory history) {
+        this.history = history;
+    }
+
+    // Creates the table when it is missing and seeds a few sample accounts into a new table only,
+    // an existing database keeps its accounts.
+    private void insertWithStatement() throws SQLException {
+        // Not caught like the rest : a balance the migration would round has to stop the start up.
+        try (PooledConnection connection = connectionPool.acquire();
+             Statement stmt = connection.getConnection().createStatement()) {
+            migrateBalanceColumn(stmt);
+        }
+        try (PooledConnection connection = connectionPool.acquire();
+             Statement stmt = connection.getConnection().createStatement()) {
+            if (accountTableExists(stmt)) {
+                stmt.execute(ADD_VERSION_COLUMN);
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Account")) {
+                    rs.next();
+                    System.out.println("  Using existing Account table with " + rs.getLong(1) + " accounts\n");
+                }
+                return;
+            }
+
+            // Balance is stored in minor units, see Money.
+            stmt.execute("CREATE TABLE IF NOT EXISTS Account(id long primary key, balance bigint not null, version bigint default 0 not null)");
+            stmt.execute("MERGE INTO Account(id, balance) KEY(id) VALUES(1, 1000000)");
+            stmt.execute("MERGE INTO Account(id, balance) KEY(id) VALUES(2, 1500000)");
+            stmt.execute("MERGE INTO Account(id, balance) KEY(id) VALUES(3, 2500000)");
 
             ResultSet rs = stmt.executeQuery("select * from Account");
             System.out.println("  Creating few sample accounts :\n");
             while (rs.next()) {
-                System.out.print("  Account Id " + rs.getInt("id") + " Balance " + rs.getString("balance") + "\n");
+                System.out.print("  Account Id " + rs.getInt("id") + " Balance " + Money.ofMinor(rs.getLong("balance")) + "\n");
             }
-            stmt.close();
-            connection.commit();
         } catch (SQLException e) {
             System.out.println("Exception Message " + e.getLocalizedMessage());
-        } catch (Exception e) {
-            e.printStackTrace();
-        } finally {
-            connection.close();
         }
     }
 
-    private static Connection getDBConnection() {
-        Connection dbConnection = null;
-        try {
-            Class.forName(DB_DRIVER);
-        } catch (ClassNotFoundException e) {
-            System.out.println(e.getMessage());
+    private boolean accountTableExists(Statement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(SELECT_ACCOUNT_TABLE)) {
+            return rs.next();
         }
-        try {
-            dbConnection = DriverManager.getConnection(DB_CONNECTION, DB_USER, DB_PASSWORD);
-            return dbConnection;
-        } catch (SQLException e) {
-            System.out.println(e.getMessage());
+    }
+
+    // Older databases keep the balance as varchar(255) in major units. Convert it in place to bigint minor units.
+    private void migrateBalanceColumn(Statement stmt) throws SQLException {
+        String columnType = null;
+        try (ResultSet rs = stmt.executeQuery(SELECT_BALANCE_COLUMN_TYPE)) {
+            if (rs.next()) {
+                columnType = rs.getString(1);
+            }
         }
-        return dbConnection;
+        if (columnType == null || !columnType.startsWith("VARCHAR")) {
+            return;
+        }
+
+        // Minor units keep two decimals, refuse rather than round away part of a balance.
+        List<Long> unrepresentable = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery(SELECT_SUB_MINOR_BALANCES)) {
+            while (rs.next()) {
+                unrepresentable.add(rs.getLong(1));
+            }
+        }
+        if (!unrepresentable.isEmpty()) {
+            throw new SQLException("Account.balance not migrated, balances with more than 2 decimals in accounts " + unrepresentable);
+        }
+
+        System.out.println("  Migrating Account.balance from " + columnType + " to BIGINT minor units");
+        stmt.execute("ALTER TABLE Account ADD COLUMN balance_minor bigint");
+        stmt.execute("UPDATE Account SET balance_minor = CAST(CAST(balance AS DECIMAL(38, 2)) * 100 AS BIGINT)");
+        stmt.execute("ALTER TABLE Account DROP COLUMN balance");
+        stmt.execute("ALTER TABLE Account ALTER COLUMN balance_minor RENAME TO balance");
+        stmt.execute("ALTER TABLE Account ALTER COLUMN balance SET NOT NULL");
     }
 }
@@ -1,14 +1,23 @@
 package com.sat.revolut.dao;
 
 import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
 
-import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 
 public interface AccountService {
-    void create(Long accountId, BigDecimal initialBalance) throws SQLException;
-    void update(Long accountId, BigDecimal newBalance) throws SQLException;
+    void create(Long accountId, Money initialBalance) throws SQLException;
+    void update(Long accountId, Money newBalance) throws SQLException;
     Account get(Long accountId) throws SQLException;
+    List<Account> getAll(Collection<Long> accountIds) throws SQLException;
+    void credit(Long accountId, Money amount) throws SQLException;
+    boolean debit(Long accountId, Money amount) throws SQLException;
+    boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException;
+    boolean[] transferBatch(List<Transfer> transfers) throws SQLException;
+    boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException;
     AccountDAO getAccountDAO();
     void setAccountDAO(AccountDAO accountDAO);
 }
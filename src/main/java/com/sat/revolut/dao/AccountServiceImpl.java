@@ -1,21 +1,24 @@
 package com.sat.revolut.dao;
 
 import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
 
-import java.math.BigDecimal;
 import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
 
 public class AccountServiceImpl implements AccountService {
 
     AccountDAO accountDAO;
 
     @Override
-    public void create(Long accountId, BigDecimal initialBalance) throws SQLException {
+    public void create(Long accountId, Money initialBalance) throws SQLException {
         accountDAO.create(accountId,initialBalance);
     }
 
     @Override
-    public void update(Long accountId, BigDecimal newBalance) throws SQLException {
+    public void update(Long accountId, Money newBalance) throws SQLException {
         accountDAO.update(accountId,newBalance);
     }
 
@@ -24,6 +27,36 @@ public class AccountServiceImpl implements AccountService {
         return accountDAO.get(accountId);
     }
 
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        return accountDAO.getAll(accountIds);
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        accountDAO.credit(accountId, amount);
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        return accountDAO.debit(accountId, amount);
+    }
+
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        return accountDAO.transfer(fromAccountId, toAccountId, amount);
+    }
+
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        return accountDAO.transferBatch(transfers);
+    }
+
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        return accountDAO.compareAndSetBalance(accountId, expectedVersion, newBalance);
+    }
+
     @Override
     public AccountDAO getAccountDAO() {
         return accountDAO;
@@ -0,0 +1,15 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.journal.BalanceConsumer;
+
+import java.nio.LongBuffer;
+import java.sql.SQLException;
+
+// Bulk access to every balance of an account store, used to write snapshots and to load them back at start up.
+public interface BalanceStore {
+    // Hands every (account id, balance in minor units) to the consumer, returns the number of accounts.
+    long forEachBalance(BalanceConsumer consumer) throws SQLException;
+
+    // Creates or overwrites the accounts of the (account id, balance) pairs in entries, returns the number of pairs.
+    long loadBalances(LongBuffer entries) throws SQLException;
+}
@@ -0,0 +1,101 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.stream.BalanceBroadcaster;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+// Tells the broadcaster which accounts every successful write of the wrapped AccountService changed, once the
+// wrapped service returned and so once the change is committed. Balances are read back by the broadcaster itself.
+public class BroadcastingAccountService implements AccountService {
+
+    private final AccountService delegate;
+    private final BalanceBroadcaster broadcaster;
+
+    public BroadcastingAccountService(AccountService delegate, BalanceBroadcaster broadcaster) {
+        this.delegate = delegate;
+        this.broadcaster = broadcaster;
+    }
+
+    @Override
+    public void create(Long accountId, Money initialBalance) throws SQLException {
+        delegate.create(accountId, initialBalance);
+        broadcaster.changed(accountId);
+    }
+
+    @Override
+    public void update(Long accountId, Money newBalance) throws SQLException {
+        delegate.update(accountId, newBalance);
+        broadcaster.changed(accountId);
+    }
+
+    @Override
+    public Account get(Long accountId) throws SQLException {
+        return delegate.get(accountId);
+    }
+
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        return delegate.getAll(accountIds);
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        delegate.credit(accountId, amount);
+        broadcaster.changed(accountId);
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        if (!delegate.debit(accountId, amount)) {
+            return false;
+        }
+        broadcaster.changed(accountId);
+        return true;
+    }
+
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        if (!delegate.transfer(fromAccountId, toAccountId, amount)) {
+            return false;
+        }
+        broadcaster.changed(fromAccountId);
+        broadcaster.changed(toAccountId);
+        return true;
+    }
+
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        boolean[] transferred = delegate.transferBatch(transfers);
+        for (int i = 0; i < transferred.length; i++) {
+            if (transferred[i]) {
+                broadcaster.changed(transfers.get(i).getFromAccountId());
+                broadcaster.changed(transfers.get(i).getToAccountId());
+            }
+        }
+        return transferred;
+    }
+
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        if (!delegate.compareAndSetBalance(accountId, expectedVersion, newBalance)) {
+            return false;
+        }
+        broadcaster.changed(accountId);
+        return true;
+    }
+
+    @Override
+    public AccountDAO getAccountDAO() {
+        return delegate.getAccountDAO();
+    }
+
+    @Override
+    public void setAccountDAO(AccountDAO accountDAO) {
+        delegate.setAccountDAO(accountDAO);
+    }
+}
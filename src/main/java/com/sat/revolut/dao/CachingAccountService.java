@@ -0,0 +1,296 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Write through cache in front of another AccountService. Balances of recently used accounts are held in memory,
+// each segment evicts its least recently used account once full.
+public class CachingAccountService implements AccountService {
+
+    public static final String PROPERTY_CAPACITY = "accounts.cache.capacity";
+    public static final int DEFAULT_CAPACITY = 100000;
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final AccountService delegate;
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public CachingAccountService(AccountService delegate, int capacity) {
+        if (capacity < SEGMENTS) {
+            throw new IllegalArgumentException("Cache capacity should be at least " + SEGMENTS);
+        }
+        this.delegate = delegate;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity / SEGMENTS);
+        }
+    }
+
+    @Override
+    public void create(Long accountId, Money initialBalance) throws SQLException {
+        Segment segment = segmentFor(accountId);
+        try {
+            delegate.create(accountId, initialBalance);
+        } catch (SQLException | RuntimeException e) {
+            segment.invalidate(accountId);
+            throw e;
+        }
+        segment.put(accountId, initialBalance);
+    }
+
+    @Override
+    public void update(Long accountId, Money newBalance) throws SQLException {
+        Segment segment = segmentFor(accountId);
+        try {
+            delegate.update(accountId, newBalance);
+        } catch (SQLException | RuntimeException e) {
+            segment.invalidate(accountId);
+            throw e;
+        }
+        segment.put(accountId, newBalance);
+    }
+
+    @Override
+    public Account get(Long accountId) throws SQLException {
+        Segment segment = segmentFor(accountId);
+        Money balance = segment.get(accountId);
+        if (balance != null) {
+            hitCount.increment();
+            return toAccount(accountId, balance);
+        }
+
+        missCount.increment();
+        long generation = segment.getGeneration();
+        Account account = delegate.get(accountId);
+        if (account != null) {
+            segment.putIfUnchanged(accountId, account.getTotalBalance(), generation);
+        }
+        return account;
+    }
+
+    // Cached accounts are answered from memory, all misses are read from the delegate in one call.
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        List<Account> accounts = new ArrayList<>(accountIds.size());
+        Map<Long, Long> missed = new HashMap<>();
+        for (Long accountId : accountIds) {
+            Segment segment = segmentFor(accountId);
+            Money balance = segment.get(accountId);
+            if (balance != null) {
+                hitCount.increment();
+                accounts.add(toAccount(accountId, balance));
+            } else {
+                missCount.increment();
+                missed.put(accountId, segment.getGeneration());
+            }
+        }
+        if (missed.isEmpty()) {
+            return accounts;
+        }
+
+        for (Account account : delegate.getAll(missed.keySet())) {
+            segmentFor(account.getAccountId()).putIfUnchanged(account.getAccountId(), account.getTotalBalance(),
+                    missed.get(account.getAccountId()));
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        Segment segment = segmentFor(accountId);
+        try {
+            delegate.credit(accountId, amount);
+        } catch (SQLException | RuntimeException e) {
+            segment.invalidate(accountId);
+            throw e;
+        }
+        segment.adjust(accountId, amount, true);
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        Segment segment = segmentFor(accountId);
+        boolean debited;
+        try {
+            debited = delegate.debit(accountId, amount);
+        } catch (SQLException | RuntimeException e) {
+            segment.invalidate(accountId);
+            throw e;
+        }
+        if (debited) {
+            segment.adjust(accountId, amount, false);
+        }
+        return debited;
+    }
+
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        boolean transferred;
+        try {
+            transferred = delegate.transfer(fromAccountId, toAccountId, amount);
+        } catch (SQLException | RuntimeException e) {
+            segmentFor(fromAccountId).invalidate(fromAccountId);
+            segmentFor(toAccountId).invalidate(toAccountId);
+            throw e;
+        }
+        if (transferred) {
+            segmentFor(fromAccountId).adjust(fromAccountId, amount, false);
+            segmentFor(toAccountId).adjust(toAccountId, amount, true);
+        }
+        return transferred;
+    }
+
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        boolean[] transferred;
+        try {
+            transferred = delegate.transferBatch(transfers);
+        } catch (SQLException | RuntimeException e) {
+            for (Transfer transfer : transfers) {
+                segmentFor(transfer.getFromAccountId()).invalidate(transfer.getFromAccountId());
+                segmentFor(transfer.getToAccountId()).invalidate(transfer.getToAccountId());
+            }
+            throw e;
+        }
+        for (int i = 0; i < transferred.length; i++) {
+            if (transferred[i]) {
+                Transfer transfer = transfers.get(i);
+                segmentFor(transfer.getFromAccountId()).adjust(transfer.getFromAccountId(), transfer.getAmount(), false);
+                segmentFor(transfer.getToAccountId()).adjust(transfer.getToAccountId(), transfer.getAmount(), true);
+            }
+        }
+        return transferred;
+    }
+
+    // Cached accounts carry no version, the entry is dropped so the next read returns the stored one.
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        Segment segment = segmentFor(accountId);
+        try {
+            return delegate.compareAndSetBalance(accountId, expectedVersion, newBalance);
+        } finally {
+            segment.invalidate(accountId);
+        }
+    }
+
+    @Override
+    public AccountDAO getAccountDAO() {
+        return delegate.getAccountDAO();
+    }
+
+    @Override
+    public void setAccountDAO(AccountDAO accountDAO) {
+        delegate.setAccountDAO(accountDAO);
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(Long accountId) {
+        long hash = accountId * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    // Callers get their own Account, cached balances can not be changed from outside.
+    private static Account toAccount(Long accountId, Money balance) {
+        Account account = new Account();
+        account.setAccountId(accountId);
+        account.setTotalBalance(balance);
+        return account;
+    }
+
+    private final class Segment {
+        private final LinkedHashMap<Long, Money> balances;
+        // Bumped on every write. A balance read from the delegate on a miss is only cached when no write
+        // happened in between, otherwise an older balance could overwrite a newer one.
+        private long generation = 0;
+
+        Segment(int capacity) {
+            balances = new LinkedHashMap<Long, Money>(Math.min(capacity, 1024), 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Money> eldest) {
+                    if (size() > capacity) {
+                        evictionCount.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Money get(Long accountId) {
+            return balances.get(accountId);
+        }
+
+        synchronized long getGeneration() {
+            return generation;
+        }
+
+        synchronized void put(Long accountId, Money balance) {
+            generation++;
+            balances.put(accountId, balance);
+        }
+
+        synchronized void putIfUnchanged(Long accountId, Money balance, long expectedGeneration) {
+            if (generation == expectedGeneration) {
+                balances.put(accountId, balance);
+            }
+        }
+
+        synchronized void adjust(Long accountId, Money amount, boolean credit) {
+            generation++;
+            Money balance = balances.get(accountId);
+            if (balance != null) {
+                balances.put(accountId, credit ? balance.plus(amount) : balance.minus(amount));
+            }
+        }
+
+        synchronized void invalidate(Long accountId) {
+            generation++;
+            balances.remove(accountId);
+        }
+
+        synchronized void clear() {
+            generation++;
+            balances.clear();
+        }
+
+        synchronized int size() {
+            return balances.size();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.sat.revolut.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.text.MessageFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConnectionPool {
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    private final ConnectionPoolConfig config;
+    private final BlockingQueue<PooledConnection> idleConnections;
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder waitCount = new LongAdder();
+    private final LongAdder waitTimeNanos = new LongAdder();
+    private final LongAdder timeoutCount = new LongAdder();
+
+    private volatile boolean closed = false;
+
+    public ConnectionPool(ConnectionPoolConfig config) throws SQLException {
+        this.config = config;
+        this.idleConnections = new ArrayBlockingQueue<>(config.getMaxPoolSize());
+        try {
+            Class.forName(config.getDriverClassName());
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("JDBC driver not found : " + config.getDriverClassName(), e);
+        }
+
+        int minIdle = Math.min(config.getMinIdle(), config.getMaxPoolSize());
+        for (int i = 0; i < minIdle; i++) {
+            PooledConnection connection = tryOpenConnection();
+            if (connection != null) {
+                idleConnections.offer(connection);
+            }
+        }
+    }
+
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        acquireCount.increment();
+
+        PooledConnection connection = idleConnections.poll();
+        if (connection == null) {
+            connection = tryOpenConnection();
+        }
+        if (connection != null) {
+            connection.acquired();
+            return connection;
+        }
+
+        // Pool is exhausted, wait for one of the active connections to be released.
+        waitCount.increment();
+        long waitStart = System.nanoTime();
+        try {
+            connection = idleConnections.poll(config.getAcquireTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        } finally {
+            waitTimeNanos.add(System.nanoTime() - waitStart);
+        }
+
+        if (connection == null) {
+            timeoutCount.increment();
+            throw new SQLTimeoutException(MessageFormat.format("Timed out after {0} ms waiting for a database connection, pool size : {1}",
+                    config.getAcquireTimeoutMillis(), config.getMaxPoolSize()));
+        }
+        connection.acquired();
+        return connection;
+    }
+
+    void release(PooledConnection connection) {
+        if (closed) {
+            discard(connection);
+            return;
+        }
+        if (!resetForReuse(connection)) {
+            discard(connection);
+            replenish();
+            return;
+        }
+        if (!idleConnections.offer(connection)) {
+            discard(connection);
+        }
+    }
+
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            discard(connection);
+        }
+    }
+
+    public int getActiveCount() {
+        return Math.max(0, totalConnections.get() - idleConnections.size());
+    }
+
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    public int getMaxPoolSize() {
+        return config.getMaxPoolSize();
+    }
+
+    public long getAcquireCount() {
+        return acquireCount.sum();
+    }
+
+    public long getWaitCount() {
+        return waitCount.sum();
+    }
+
+    public long getWaitTimeNanos() {
+        return waitTimeNanos.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.sum();
+    }
+
+    private PooledConnection tryOpenConnection() throws SQLException {
+        int current;
+        do {
+            current = totalConnections.get();
+            if (current >= config.getMaxPoolSize()) {
+                return null;
+            }
+        } while (!totalConnections.compareAndSet(current, current + 1));
+
+        try {
+            Connection connection = DriverManager.getConnection(config.getJdbcUrl(), config.getUser(), config.getPassword());
+            connection.setAutoCommit(true);
+            return new PooledConnection(this, connection, config.getStatementCacheSize());
+        } catch (SQLException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean resetForReuse(PooledConnection pooledConnection) {
+        Connection connection = pooledConnection.getConnection();
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            // Callers are expected to finish their own transactions, roll back whatever was left open.
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Discarding broken database connection : " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Open a replacement for a discarded connection, threads already waiting in acquire() would otherwise time out.
+    private void replenish() {
+        try {
+            PooledConnection connection = tryOpenConnection();
+            if (connection != null && !idleConnections.offer(connection)) {
+                discard(connection);
+            }
+        } catch (SQLException e) {
+            logger.warn("Unable to replace discarded database connection : " + e.getMessage());
+        }
+    }
+
+    private void discard(PooledConnection connection) {
+        connection.closePhysical();
+        totalConnections.decrementAndGet();
+    }
+}
@@ -0,0 +1,153 @@
+package com.sat.revolut.dao;
+
+public class ConnectionPoolConfig {
+
+    // Where H2 keeps the data. FILE and SERVER survive a restart, FILE runs embedded and SERVER connects over TCP
+    // to a separately started H2 server, e.g. java -cp h2.jar org.h2.tools.Server -tcp -baseDir data.
+    public enum Mode {
+        MEM, FILE, SERVER
+    }
+
+    public static final String PROPERTY_URL = "db.url";
+    public static final String PROPERTY_USER = "db.user";
+    public static final String PROPERTY_PASSWORD = "db.password";
+    public static final String PROPERTY_MAX_POOL_SIZE = "db.pool.maxSize";
+    public static final String PROPERTY_MIN_IDLE = "db.pool.minIdle";
+    public static final String PROPERTY_ACQUIRE_TIMEOUT_MILLIS = "db.pool.acquireTimeoutMillis";
+    public static final String PROPERTY_STATEMENT_CACHE_SIZE = "db.pool.statementCacheSize";
+    public static final String PROPERTY_MODE = "db.mode";
+    public static final String PROPERTY_PATH = "db.path";
+    public static final String DEFAULT_PATH = "./data/bank";
+    public static final String PROPERTY_SERVER = "db.server";
+    public static final String DEFAULT_SERVER = "localhost:9092";
+    public static final String PROPERTY_CACHE_SIZE_KB = "db.cacheSizeKb";
+    public static final String PROPERTY_WRITE_DELAY_MILLIS = "db.writeDelayMillis";
+    public static final String PROPERTY_LOCK_MODE = "db.lockMode";
+    static final String MEM_URL = "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1";
+
+    private String driverClassName = "org.h2.Driver";
+    private String jdbcUrl = MEM_URL;
+    private String user = "";
+    private String password = "";
+    private int maxPoolSize = 10;
+    private int minIdle = 2;
+    private long acquireTimeoutMillis = 5000;
+    private int statementCacheSize = 32;
+
+    public static ConnectionPoolConfig fromSystemProperties() {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        // An explicit db.url wins over the mode and storage settings.
+        String url = System.getProperty(PROPERTY_URL);
+        if (url == null) {
+            url = jdbcUrl(Mode.valueOf(System.getProperty(PROPERTY_MODE, Mode.MEM.name()).toUpperCase()),
+                    System.getProperty(PROPERTY_PATH, DEFAULT_PATH), System.getProperty(PROPERTY_SERVER, DEFAULT_SERVER),
+                    Integer.getInteger(PROPERTY_CACHE_SIZE_KB), Integer.getInteger(PROPERTY_WRITE_DELAY_MILLIS),
+                    Integer.getInteger(PROPERTY_LOCK_MODE));
+        }
+        config.setJdbcUrl(url);
+        config.setUser(System.getProperty(PROPERTY_USER, config.getUser()));
+        config.setPassword(System.getProperty(PROPERTY_PASSWORD, config.getPassword()));
+        config.setMaxPoolSize(Integer.getInteger(PROPERTY_MAX_POOL_SIZE, config.getMaxPoolSize()));
+        config.setMinIdle(Integer.getInteger(PROPERTY_MIN_IDLE, config.getMinIdle()));
+        config.setAcquireTimeoutMillis(Long.getLong(PROPERTY_ACQUIRE_TIMEOUT_MILLIS, config.getAcquireTimeoutMillis()));
+        config.setStatementCacheSize(Integer.getInteger(PROPERTY_STATEMENT_CACHE_SIZE, config.getStatementCacheSize()));
+        return config;
+    }
+
+    // Storage settings left null keep the H2 defaults : cache size in KB, WRITE_DELAY is how long a commit may
+    // stay in memory before it is written (0 writes at every commit), LOCK_MODE 0 to 3 (3, read committed, by default).
+    public static String jdbcUrl(Mode mode, String path, String server, Integer cacheSizeKb, Integer writeDelayMillis,
+                                 Integer lockMode) {
+        StringBuilder url = new StringBuilder();
+        switch (mode) {
+            case FILE:
+                url.append("jdbc:h2:file:").append(path);
+                break;
+            case SERVER:
+                url.append("jdbc:h2:tcp://").append(server).append('/').append(path);
+                break;
+            default:
+                url.append(MEM_URL);
+        }
+        if (cacheSizeKb != null) {
+            url.append(";CACHE_SIZE=").append(cacheSizeKb.intValue());
+        }
+        if (writeDelayMillis != null) {
+            url.append(";WRITE_DELAY=").append(writeDelayMillis.intValue());
+        }
+        if (lockMode != null) {
+            if (lockMode < 0 || lockMode > 3) {
+                throw new IllegalArgumentException("Lock mode should be between 0 and 3, got " + lockMode);
+            }
+            url.append(";LOCK_MODE=").append(lockMode.intValue());
+        }
+        return url.toString();
+    }
+
+    public String getDriverClassName() {
+        return driverClassName;
+    }
+
+    public void setDriverClassName(String driverClassName) {
+        this.driverClassName = driverClassName;
+    }
+
+    public String getJdbcUrl() {
+        return jdbcUrl;
+    }
+
+    public void setJdbcUrl(String jdbcUrl) {
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        if (maxPoolSize < 1) {
+            throw new IllegalArgumentException("Max pool size should be at least one.");
+        }
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    public void setAcquireTimeoutMillis(long acquireTimeoutMillis) {
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+}
@@ -0,0 +1,301 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Write pipeline in front of AccountJDBCDAOImpl. Creates, updates and transfers from concurrent callers are queued
+// and a single committer thread applies them in groups, one database transaction per group. A group is closed once
+// it has maxGroupSize writes or windowMicros have passed since its first write. Callers return once their group committed.
+// Every write runs under its own savepoint, a failing write is rolled back alone and does not fail its group.
+public class GroupCommitAccountDAO implements AccountDAO {
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public static final String PROPERTY_ENABLED = "db.groupCommit.enabled";
+    public static final String PROPERTY_WINDOW_MICROS = "db.groupCommit.windowMicros";
+    public static final String PROPERTY_MAX_GROUP_SIZE = "db.groupCommit.maxGroupSize";
+    public static final long DEFAULT_WINDOW_MICROS = 200;
+    public static final int DEFAULT_MAX_GROUP_SIZE = 64;
+
+    private static final int GROUP_SIZE_BUCKETS = 16;
+    private static final long SUBMIT_RETRY_MILLIS = 10;
+    private static final String SHUT_DOWN_MESSAGE = "Group commit pipeline is shut down";
+
+    private final AccountJDBCDAOImpl accountDAO;
+    private final long windowNanos;
+    private final int maxGroupSize;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread committer;
+    // Set by shutdown(), and by the committer itself once it stopped taking writes.
+    private volatile boolean stopped;
+
+    private final LongAdder groupCount = new LongAdder();
+    private final LongAdder writeCount = new LongAdder();
+    private final LongAdder failedGroupCount = new LongAdder();
+    // Bucket i counts groups with a size in [2^i, 2^(i+1)).
+    private final AtomicLongArray groupSizeBuckets = new AtomicLongArray(GROUP_SIZE_BUCKETS);
+    private volatile int maxObservedGroupSize = 0;
+
+    public GroupCommitAccountDAO(AccountJDBCDAOImpl accountDAO, long windowMicros, int maxGroupSize) {
+        if (maxGroupSize < 1) {
+            throw new IllegalArgumentException("Max group size should be at least one.");
+        }
+        this.accountDAO = accountDAO;
+        this.windowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+        this.maxGroupSize = maxGroupSize;
+        this.queue = new ArrayBlockingQueue<>(maxGroupSize * 64);
+        this.committer = new Thread(this::commitLoop, "account-group-commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    @Override
+    public void create(Long accountId, Money initialBalance) throws SQLException {
+        submit(connection -> {
+            accountDAO.applyCreate(connection, accountId, initialBalance);
+            return true;
+        });
+    }
+
+    @Override
+    public void update(Long accountId, Money newBalance) throws SQLException {
+        submit(connection -> {
+            accountDAO.applyUpdate(connection, accountId, newBalance);
+            return true;
+        });
+    }
+
+    @Override
+    public Account get(Long accountId) throws SQLException {
+        return accountDAO.get(accountId);
+    }
+
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        return accountDAO.getAll(accountIds);
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        submit(connection -> {
+            accountDAO.applyCredit(connection, accountId, amount);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        return submit(connection -> accountDAO.applyDebit(connection, accountId, amount));
+    }
+
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        return submit(connection -> accountDAO.applyTransfer(connection, fromAccountId, toAccountId, amount));
+    }
+
+    // Already applied as one transaction by the DAO itself.
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        return accountDAO.transferBatch(transfers);
+    }
+
+    // Conflicts have to be reported to the caller right away, compare and set is not grouped.
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        return accountDAO.compareAndSetBalance(accountId, expectedVersion, newBalance);
+    }
+
+    // Writes still queued fail with an SQLException, later submits are rejected with one.
+    public void shutdown() {
+        stopped = true;
+        committer.interrupt();
+    }
+
+    public long getGroupCount() {
+        return groupCount.sum();
+    }
+
+    public long getWriteCount() {
+        return writeCount.sum();
+    }
+
+    public long getFailedGroupCount() {
+        return failedGroupCount.sum();
+    }
+
+    public int getMaxObservedGroupSize() {
+        return maxObservedGroupSize;
+    }
+
+    public long[] getGroupSizeBuckets() {
+        long[] buckets = new long[GROUP_SIZE_BUCKETS];
+        for (int i = 0; i < GROUP_SIZE_BUCKETS; i++) {
+            buckets[i] = groupSizeBuckets.get(i);
+        }
+        return buckets;
+    }
+
+    public int getQueuedWrites() {
+        return queue.size();
+    }
+
+    private boolean submit(WriteOperation operation) throws SQLException {
+        PendingWrite write = new PendingWrite(operation);
+        try {
+            // Waits for room only while the committer runs, it fails whatever it finds queued once it stops.
+            while (!queue.offer(write, SUBMIT_RETRY_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (stopped) {
+                    throw new SQLException(SHUT_DOWN_MESSAGE);
+                }
+            }
+            if (stopped && queue.remove(write)) {
+                throw new SQLException(SHUT_DOWN_MESSAGE);
+            }
+            return write.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
+        }
+    }
+
+    private void commitLoop() {
+        List<PendingWrite> group = new ArrayList<>(maxGroupSize);
+        try {
+            while (!stopped && !Thread.currentThread().isInterrupted()) {
+                group.add(queue.take());
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxGroupSize) {
+                    // Take whatever is already queued, then wait for the rest of the window.
+                    if (queue.drainTo(group, maxGroupSize - group.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite write = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (write == null) {
+                        break;
+                    }
+                    group.add(write);
+                }
+                try {
+                    commitGroup(group);
+                } catch (RuntimeException e) {
+                    // E.g. a pool failing outside JDBC. Only this group fails, the committer keeps going.
+                    logger.error("Group commit of " + group.size() + " writes failed : " + e);
+                    failedGroupCount.increment();
+                    failAll(group, e);
+                }
+                group.clear();
+            }
+        } catch (InterruptedException e) {
+            // Shutting down, anyone still waiting is released below.
+        } finally {
+            // Set before draining : a submit that does not see it queued its write before the drain below.
+            stopped = true;
+            SQLException shutdown = new SQLException(SHUT_DOWN_MESSAGE);
+            failAll(group, shutdown);
+            PendingWrite write;
+            while ((write = queue.poll()) != null) {
+                write.result.completeExceptionally(shutdown);
+            }
+        }
+    }
+
+    private static void failAll(List<PendingWrite> group, Throwable failure) {
+        for (PendingWrite write : group) {
+            write.result.completeExceptionally(failure);
+        }
+    }
+
+    private void commitGroup(List<PendingWrite> group) {
+        boolean[] results = new boolean[group.size()];
+        Exception[] failures = new Exception[group.size()];
+        try (PooledConnection connection = accountDAO.getConnectionPool().acquire()) {
+            Connection jdbcConnection = connection.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try {
+                for (int i = 0; i < group.size(); i++) {
+                    Savepoint savepoint = jdbcConnection.setSavepoint();
+                    try {
+                        results[i] = group.get(i).operation.apply(connection);
+                        // A transfer rejected for low balance changed nothing, no need to roll back to the savepoint.
+                    } catch (SQLException | RuntimeException e) {
+                        // A bug in one write fails that write alone, never the committer thread.
+                        jdbcConnection.rollback(savepoint);
+                        failures[i] = e;
+                    }
+                }
+                jdbcConnection.commit();
+            } catch (SQLException e) {
+                jdbcConnection.rollback();
+                throw e;
+            } finally {
+                jdbcConnection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Group commit of " + group.size() + " writes failed : " + e.getMessage());
+            failedGroupCount.increment();
+            failAll(group, e);
+            return;
+        }
+
+        recordGroup(group.size());
+        for (int i = 0; i < group.size(); i++) {
+            if (failures[i] != null) {
+                group.get(i).result.completeExceptionally(failures[i]);
+            } else {
+                group.get(i).result.complete(results[i]);
+            }
+        }
+    }
+
+    private void recordGroup(int size) {
+        groupCount.increment();
+        writeCount.add(size);
+        groupSizeBuckets.incrementAndGet(Math.min(31 - Integer.numberOfLeadingZeros(size), GROUP_SIZE_BUCKETS - 1));
+        if (size > maxObservedGroupSize) {
+            // Only the committer thread writes it.
+            maxObservedGroupSize = size;
+        }
+    }
+
+    private interface WriteOperation {
+        boolean apply(PooledConnection connection) throws SQLException;
+    }
+
+    private static final class PendingWrite {
+        private final WriteOperation operation;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+        PendingWrite(WriteOperation operation) {
+            this.operation = operation;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionType;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.exception.JournalFailedException;
+import com.sat.revolut.journal.Journal;
+import com.sat.revolut.journal.JournalRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Journals every successful write of the wrapped AccountService, together with the balances it left behind.
+// The handlers hold the write locks of the accounts involved around each call, so the balances read back here
+// are those of this write and not of a later one. recover() rebuilds the wrapped store from the journal.
+// The journal is written after the wrapped store, with the balances it left. Once an append fails the change it
+// describes is applied but would be lost on restart, so every later write is refused until the process is restarted
+// and isHealthy() turns false.
+public class JournalingAccountService implements AccountService {
+    private static final Logger logger = LoggerFactory.getLogger(JournalingAccountService.class);
+
+    private static final long NO_ACCOUNT = 0;
+
+    private final AccountService delegate;
+    private final Journal journal;
+    private volatile IOException failure;
+
+    public JournalingAccountService(AccountService delegate, Journal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    @Override
+    public void create(Long accountId, Money initialBalance) throws SQLException {
+        checkWritable();
+        delegate.create(accountId, initialBalance);
+        append(TransactionType.CREATE, accountId, initialBalance.getMinorUnits(), NO_ACCOUNT, 0, initialBalance.getMinorUnits());
+    }
+
+    @Override
+    public void update(Long accountId, Money newBalance) throws SQLException {
+        checkWritable();
+        Account before = delegate.get(accountId);
+        delegate.update(accountId, newBalance);
+        long change = before == null ? newBalance.getMinorUnits()
+                : newBalance.getMinorUnits() - before.getTotalBalance().getMinorUnits();
+        append(change < 0 ? TransactionType.WITHDRAW : TransactionType.DEPOSIT, accountId, newBalance.getMinorUnits(),
+                NO_ACCOUNT, 0, Math.abs(change));
+    }
+
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        checkWritable();
+        Account before = delegate.get(accountId);
+        if (!delegate.compareAndSetBalance(accountId, expectedVersion, newBalance)) {
+            return false;
+        }
+        long change = before == null ? newBalance.getMinorUnits()
+                : newBalance.getMinorUnits() - before.getTotalBalance().getMinorUnits();
+        append(change < 0 ? TransactionType.WITHDRAW : TransactionType.DEPOSIT, accountId, newBalance.getMinorUnits(),
+                NO_ACCOUNT, 0, Math.abs(change));
+        return true;
+    }
+
+    @Override
+    public Account get(Long accountId) throws SQLException {
+        return delegate.get(accountId);
+    }
+
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        return delegate.getAll(accountIds);
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        checkWritable();
+        delegate.credit(accountId, amount);
+        append(TransactionType.DEPOSIT, accountId, balanceOf(accountId), NO_ACCOUNT, 0, amount.getMinorUnits());
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        checkWritable();
+        if (!delegate.debit(accountId, amount)) {
+            return false;
+        }
+        append(TransactionType.WITHDRAW, accountId, balanceOf(accountId), NO_ACCOUNT, 0, amount.getMinorUnits());
+        return true;
+    }
+
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        checkWritable();
+        boolean transferred = delegate.transfer(fromAccountId, toAccountId, amount);
+        if (transferred) {
+            appendTransfer(fromAccountId, toAccountId, amount);
+        }
+        return transferred;
+    }
+
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        checkWritable();
+        boolean[] transferred = delegate.transferBatch(transfers);
+        // Balances read after the whole batch are right for the last transfer touching each account. Records of
+        // earlier transfers may carry them too, replay ends on the same state either way.
+        for (int i = 0; i < transferred.length; i++) {
+            if (transferred[i]) {
+                Transfer transfer = transfers.get(i);
+                appendTransfer(transfer.getFromAccountId(), transfer.getToAccountId(), transfer.getAmount());
+            }
+        }
+        return transferred;
+    }
+
+    private void appendTransfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        append(TransactionType.TRANSFER, fromAccountId, balanceOf(fromAccountId), toAccountId, balanceOf(toAccountId),
+                amount.getMinorUnits());
+    }
+
+    private long balanceOf(Long accountId) throws SQLException {
+        Account account = delegate.get(accountId);
+        if (account == null) {
+            throw new SQLException("Account " + accountId + " disappeared before it could be journaled");
+        }
+        return account.getTotalBalance().getMinorUnits();
+    }
+
+    private void append(TransactionType type, long accountId, long balance, long counterpartyId, long counterpartyBalance,
+                        long amount) throws SQLException {
+        try {
+            journal.append(type, accountId, balance, counterpartyId, counterpartyBalance, amount);
+        } catch (IOException e) {
+            failure = e;
+            logger.error("Journal write failed, {} of {} on account {} is applied but not journaled. Refusing writes until restart : {}",
+                    type, amount, accountId, e.getMessage());
+            throw new JournalFailedException("Journal write failed after the change was applied : " + e.getMessage(), e);
+        }
+    }
+
+    // Nothing is applied yet, so this one is a plain SQLException the client may retry once the service is back.
+    private void checkWritable() throws SQLException {
+        IOException journalFailure = failure;
+        if (journalFailure != null) {
+            throw new SQLException("Writes are refused since the journal failed : " + journalFailure.getMessage());
+        }
+    }
+
+    // False once a journal write failed.
+    public boolean isHealthy() {
+        return failure == null;
+    }
+
+    public long recover() throws IOException, SQLException {
+        return recover(0);
+    }
+
+    // Applies the last journaled balance of every account touched after afterSequence, e.g. the sequence of the
+    // snapshot just loaded, to the wrapped store, creating missing accounts. Returns the number of records replayed.
+    // Meant to run once at start up, before any traffic.
+    public long recover(long afterSequence) throws IOException, SQLException {
+        Map<Long, Long> balances = new HashMap<>();
+        long[] replayed = new long[1];
+        journal.replay(afterSequence, record -> {
+            replayed[0]++;
+            apply(balances, record);
+        });
+        for (Map.Entry<Long, Long> entry : balances.entrySet()) {
+            Money balance = Money.ofMinor(entry.getValue());
+            if (delegate.get(entry.getKey()) == null) {
+                delegate.create(entry.getKey(), balance);
+            } else {
+                delegate.update(entry.getKey(), balance);
+            }
+        }
+        logger.info("Recovered {} accounts from {} journal records", balances.size(), replayed[0]);
+        return replayed[0];
+    }
+
+    static void apply(Map<Long, Long> balances, JournalRecord record) {
+        balances.put(record.getAccountId(), record.getBalance());
+        if (record.getType() == TransactionType.TRANSFER) {
+            balances.put(record.getCounterpartyId(), record.getCounterpartyBalance());
+        }
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public AccountDAO getAccountDAO() {
+        return delegate.getAccountDAO();
+    }
+
+    @Override
+    public void setAccountDAO(AccountDAO accountDAO) {
+        delegate.setAccountDAO(accountDAO);
+    }
+}
@@ -0,0 +1,156 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.metrics.MetricsRegistry;
+import com.sat.revolut.metrics.OperationMetrics;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+
+// Times every call to the wrapped DAO, including connection acquisition and, with group commit, the wait for the group.
+public class MeteredAccountDAO implements AccountDAO {
+
+    static final String PREFIX = "bank_dao";
+    static final String LABEL = "operation";
+
+    private final AccountDAO delegate;
+    private final OperationMetrics create;
+    private final OperationMetrics update;
+    private final OperationMetrics get;
+    private final OperationMetrics getAll;
+    private final OperationMetrics credit;
+    private final OperationMetrics debit;
+    private final OperationMetrics transfer;
+    private final OperationMetrics transferBatch;
+    private final OperationMetrics compareAndSet;
+
+    public MeteredAccountDAO(AccountDAO delegate, MetricsRegistry registry) {
+        this.delegate = delegate;
+        create = registry.operation(PREFIX, "account DAO calls", LABEL, "create");
+        update = registry.operation(PREFIX, "account DAO calls", LABEL, "update");
+        get = registry.operation(PREFIX, "account DAO calls", LABEL, "get");
+        getAll = registry.operation(PREFIX, "account DAO calls", LABEL, "getAll");
+        credit = registry.operation(PREFIX, "account DAO calls", LABEL, "credit");
+        debit = registry.operation(PREFIX, "account DAO calls", LABEL, "debit");
+        transfer = registry.operation(PREFIX, "account DAO calls", LABEL, "transfer");
+        transferBatch = registry.operation(PREFIX, "account DAO calls", LABEL, "transferBatch");
+        compareAndSet = registry.operation(PREFIX, "account DAO calls", LABEL, "compareAndSet");
+    }
+
+    @Override
+    public void create(Long accountId, Money initialBalance) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            delegate.create(accountId, initialBalance);
+            failed = false;
+        } finally {
+            create.record(start, failed);
+        }
+    }
+
+    @Override
+    public void update(Long accountId, Money newBalance) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            delegate.update(accountId, newBalance);
+            failed = false;
+        } finally {
+            update.record(start, failed);
+        }
+    }
+
+    @Override
+    public Account get(Long accountId) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Account account = delegate.get(accountId);
+            failed = false;
+            return account;
+        } finally {
+            get.record(start, failed);
+        }
+    }
+
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Account> accounts = delegate.getAll(accountIds);
+            failed = false;
+            return accounts;
+        } finally {
+            getAll.record(start, failed);
+        }
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            delegate.credit(accountId, amount);
+            failed = false;
+        } finally {
+            credit.record(start, failed);
+        }
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean debited = delegate.debit(accountId, amount);
+            failed = false;
+            return debited;
+        } finally {
+            debit.record(start, failed);
+        }
+    }
+
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean transferred = delegate.transfer(fromAccountId, toAccountId, amount);
+            failed = false;
+            return transferred;
+        } finally {
+            transfer.record(start, failed);
+        }
+    }
+
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean[] transferred = delegate.transferBatch(transfers);
+            failed = false;
+            return transferred;
+        } finally {
+            transferBatch.record(start, failed);
+        }
+    }
+
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean set = delegate.compareAndSetBalance(accountId, expectedVersion, newBalance);
+            failed = false;
+            return set;
+        } finally {
+            compareAndSet.record(start, failed);
+        }
+    }
+}
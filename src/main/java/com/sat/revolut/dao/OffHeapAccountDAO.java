@@ -0,0 +1,451 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.journal.BalanceConsumer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+// Balances held outside the Java heap in open addressing long -> long tables, one direct buffer per segment.
+// A slot is 16 bytes, account id then balance in minor units, linear probing, no boxing and nothing for the GC to
+// trace. Account ids are positive, 0 marks a free slot, accounts are never removed so there are no tombstones.
+// Reads are optimistic : they probe without locking and only retry under the read lock when a write to the same
+// segment raced with them. Writes lock their segments, several segments are always locked in index order.
+// Nothing is persisted, pair it with the journal and snapshots to survive a restart.
+public class OffHeapAccountDAO implements AccountDAO, BalanceStore {
+
+    public static final String PROPERTY_INITIAL_CAPACITY = "accounts.offheap.initialCapacity";
+    public static final long DEFAULT_INITIAL_CAPACITY = 1 << 20;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+    private static final int SLOT_BYTES = 16;
+    // A direct buffer is indexed by int, a segment table stays below 1 GB.
+    private static final int MAX_SEGMENT_SLOTS = 1 << 26;
+    private static final int MIN_SEGMENT_SLOTS = 16;
+    private static final double MAX_LOAD_FACTOR = 0.7;
+    private static final long FREE = 0;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    public OffHeapAccountDAO(long initialCapacity) {
+        long perSegment = (long) Math.ceil(initialCapacity / MAX_LOAD_FACTOR / SEGMENTS);
+        int slots = MIN_SEGMENT_SLOTS;
+        while (slots < perSegment && slots < MAX_SEGMENT_SLOTS) {
+            slots <<= 1;
+        }
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(slots);
+        }
+    }
+
+    @Override
+    public void create(Long accountId, Money initialBalance) throws SQLException {
+        checkAccountId(accountId);
+        Segment segment = segmentFor(accountId);
+        long stamp = segment.lock.writeLock();
+        try {
+            if (segment.find(segment.table, accountId) >= 0) {
+                throw new SQLException("Account " + accountId + " already exists");
+            }
+            segment.insert(accountId, initialBalance.getMinorUnits());
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Like the JDBC DAO, updating a missing account changes nothing.
+    @Override
+    public void update(Long accountId, Money newBalance) throws SQLException {
+        if (accountId <= FREE) {
+            return;
+        }
+        Segment segment = segmentFor(accountId);
+        long stamp = segment.lock.writeLock();
+        try {
+            int offset = segment.find(segment.table, accountId);
+            if (offset >= 0) {
+                segment.table.putLong(offset + 8, newBalance.getMinorUnits());
+            }
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Account get(Long accountId) throws SQLException {
+        if (accountId <= FREE) {
+            return null;
+        }
+        Segment segment = segmentFor(accountId);
+        long stamp = segment.lock.tryOptimisticRead();
+        ByteBuffer table = segment.table;
+        int offset = segment.find(table, accountId);
+        long balance = offset >= 0 ? table.getLong(offset + 8) : 0;
+        if (!segment.lock.validate(stamp)) {
+            stamp = segment.lock.readLock();
+            try {
+                table = segment.table;
+                offset = segment.find(table, accountId);
+                balance = offset >= 0 ? table.getLong(offset + 8) : 0;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        if (offset < 0) {
+            return null;
+        }
+        Account account = new Account();
+        account.setAccountId(accountId);
+        account.setTotalBalance(Money.ofMinor(balance));
+        return account;
+    }
+
+    // Nothing to round trip to, every id is an optimistic read of its own.
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        List<Account> accounts = new ArrayList<>(accountIds.size());
+        for (Long accountId : accountIds) {
+            Account account = get(accountId);
+            if (account != null) {
+                accounts.add(account);
+            }
+        }
+        return accounts;
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        Segment segment = segmentFor(accountId);
+        long stamp = segment.lock.writeLock();
+        try {
+            int offset = accountId > FREE ? segment.find(segment.table, accountId) : -1;
+            if (offset < 0) {
+                throw new SQLException("Account " + accountId + " does not exist");
+            }
+            segment.table.putLong(offset + 8, Math.addExact(segment.table.getLong(offset + 8), amount.getMinorUnits()));
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        Segment segment = segmentFor(accountId);
+        long stamp = segment.lock.writeLock();
+        try {
+            int offset = accountId > FREE ? segment.find(segment.table, accountId) : -1;
+            if (offset < 0 || segment.table.getLong(offset + 8) < amount.getMinorUnits()) {
+                return false;
+            }
+            segment.table.putLong(offset + 8, segment.table.getLong(offset + 8) - amount.getMinorUnits());
+            return true;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Same outcome as the JDBC DAO : false when the from account is missing or short of balance,
+    // SQLException and nothing changed when the to account is missing.
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        long[] locked = lockSegments(new long[]{fromAccountId, toAccountId}, 2);
+        try {
+            return applyTransfer(fromAccountId, toAccountId, amount.getMinorUnits(), null);
+        } finally {
+            unlockSegments(locked);
+        }
+    }
+
+    // Transfers are applied in list order while every segment involved is locked. Should a credit account be
+    // missing, the balances changed so far are put back and the whole batch fails, as the JDBC batch rolls back.
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        long[] accountIds = new long[transfers.size() * 2];
+        for (int i = 0; i < transfers.size(); i++) {
+            accountIds[2 * i] = transfers.get(i).getFromAccountId();
+            accountIds[2 * i + 1] = transfers.get(i).getToAccountId();
+        }
+        boolean[] transferred = new boolean[transfers.size()];
+        UndoLog undo = new UndoLog(transfers.size());
+        long[] locked = lockSegments(accountIds, accountIds.length);
+        try {
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer transfer = transfers.get(i);
+                try {
+                    transferred[i] = applyTransfer(transfer.getFromAccountId(), transfer.getToAccountId(),
+                            transfer.getAmount().getMinorUnits(), undo);
+                } catch (SQLException e) {
+                    undo.revert();
+                    throw new SQLException("Credit account of a batched transfer does not exist, batch rolled back", e);
+                }
+            }
+            return transferred;
+        } finally {
+            unlockSegments(locked);
+        }
+    }
+
+    // Called with the segments of both accounts write locked.
+    private boolean applyTransfer(long fromAccountId, long toAccountId, long amount, UndoLog undo) throws SQLException {
+        Segment fromSegment = segmentFor(fromAccountId);
+        int fromOffset = fromAccountId > FREE ? fromSegment.find(fromSegment.table, fromAccountId) : -1;
+        if (fromOffset < 0) {
+            return false;
+        }
+        long fromBalance = fromSegment.table.getLong(fromOffset + 8);
+        if (fromBalance < amount) {
+            return false;
+        }
+        Segment toSegment = segmentFor(toAccountId);
+        int toOffset = toAccountId > FREE ? toSegment.find(toSegment.table, toAccountId) : -1;
+        if (toOffset < 0) {
+            throw new SQLException("Account " + toAccountId + " does not exist, transfer rolled back");
+        }
+        long toBalance = toSegment.table.getLong(toOffset + 8);
+        long credited = Math.addExact(toBalance, amount);
+        if (undo != null) {
+            undo.add(fromSegment, fromOffset, fromBalance);
+            undo.add(toSegment, toOffset, toBalance);
+        }
+        fromSegment.table.putLong(fromOffset + 8, fromBalance - amount);
+        toSegment.table.putLong(toOffset + 8, credited);
+        return true;
+    }
+
+    // Slots hold no version, the store lives in one JVM and the locking engines serialize its writers.
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Off heap store keeps no versions, use a locking engine");
+    }
+
+    // Segment by segment, each one read under its read lock, so writers to other segments are never held up.
+    @Override
+    public long forEachBalance(BalanceConsumer consumer) {
+        long count = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                ByteBuffer table = segment.table;
+                for (int offset = 0; offset < table.capacity(); offset += SLOT_BYTES) {
+                    long accountId = table.getLong(offset);
+                    if (accountId != FREE) {
+                        consumer.accept(accountId, table.getLong(offset + 8));
+                        count++;
+                    }
+                }
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public long loadBalances(LongBuffer entries) throws SQLException {
+        long count = 0;
+        while (entries.remaining() >= 2) {
+            long accountId = entries.get();
+            long balance = entries.get();
+            checkAccountId(accountId);
+            Segment segment = segmentFor(accountId);
+            long stamp = segment.lock.writeLock();
+            try {
+                int offset = segment.find(segment.table, accountId);
+                if (offset >= 0) {
+                    segment.table.putLong(offset + 8, balance);
+                } else {
+                    segment.insert(accountId, balance);
+                }
+            } finally {
+                segment.lock.unlockWrite(stamp);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.size;
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    // Off heap bytes held by the tables.
+    public long getAllocatedBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                bytes += segment.table.capacity();
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return bytes;
+    }
+
+    private static void checkAccountId(long accountId) throws SQLException {
+        if (accountId <= FREE) {
+            throw new SQLException("Account id should be positive, got " + accountId);
+        }
+    }
+
+    private static long hash(long accountId) {
+        return accountId * 0x9E3779B97F4A7C15L;
+    }
+
+    private Segment segmentFor(long accountId) {
+        return segments[segmentIndex(accountId)];
+    }
+
+    private static int segmentIndex(long accountId) {
+        return (int) (hash(accountId) >>> (64 - SEGMENT_BITS));
+    }
+
+    // Write locks the distinct segments of the first count account ids in index order, returns them for unlocking.
+    private long[] lockSegments(long[] accountIds, int count) {
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = segmentIndex(accountIds[i]);
+        }
+        Arrays.sort(indexes);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || indexes[distinct - 1] != indexes[i]) {
+                indexes[distinct++] = indexes[i];
+            }
+        }
+        // Segment index and stamp of every lock taken.
+        long[] locked = new long[distinct * 2];
+        for (int i = 0; i < distinct; i++) {
+            locked[2 * i] = indexes[i];
+            locked[2 * i + 1] = segments[indexes[i]].lock.writeLock();
+        }
+        return locked;
+    }
+
+    private void unlockSegments(long[] locked) {
+        for (int i = locked.length - 2; i >= 0; i -= 2) {
+            segments[(int) locked[i]].lock.unlockWrite(locked[i + 1]);
+        }
+    }
+
+    private static final class Segment {
+        private final StampedLock lock = new StampedLock();
+        // Replaced when the segment grows, read without the lock by optimistic readers.
+        private ByteBuffer table;
+        private int size;
+
+        Segment(int slots) {
+            table = allocate(slots);
+        }
+
+        private static ByteBuffer allocate(int slots) {
+            // Direct buffers are zeroed, every slot starts free.
+            return ByteBuffer.allocateDirect(slots * SLOT_BYTES).order(ByteOrder.nativeOrder());
+        }
+
+        // Byte offset of the slot holding accountId in table, -1 when absent. Tables always keep free slots,
+        // so the probe ends even on a table an optimistic reader sees half written.
+        int find(ByteBuffer table, long accountId) {
+            int mask = table.capacity() / SLOT_BYTES - 1;
+            int slot = (int) (hash(accountId) >>> 24) & mask;
+            while (true) {
+                long key = table.getLong(slot * SLOT_BYTES);
+                if (key == accountId) {
+                    return slot * SLOT_BYTES;
+                }
+                if (key == FREE) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        // Called holding the write lock, with accountId absent.
+        void insert(long accountId, long balance) throws SQLException {
+            int slots = table.capacity() / SLOT_BYTES;
+            if (size + 1 > slots * MAX_LOAD_FACTOR) {
+                if (slots >= MAX_SEGMENT_SLOTS) {
+                    throw new SQLException("Off heap account store is full");
+                }
+                grow(slots * 2);
+            }
+            put(table, accountId, balance);
+            size++;
+        }
+
+        private void grow(int slots) {
+            ByteBuffer grown = allocate(slots);
+            for (int offset = 0; offset < table.capacity(); offset += SLOT_BYTES) {
+                long accountId = table.getLong(offset);
+                if (accountId != FREE) {
+                    put(grown, accountId, table.getLong(offset + 8));
+                }
+            }
+            table = grown;
+        }
+
+        private static void put(ByteBuffer table, long accountId, long balance) {
+            int mask = table.capacity() / SLOT_BYTES - 1;
+            int slot = (int) (hash(accountId) >>> 24) & mask;
+            while (table.getLong(slot * SLOT_BYTES) != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            // Balance first, a reader finding the id always sees its balance.
+            table.putLong(slot * SLOT_BYTES + 8, balance);
+            table.putLong(slot * SLOT_BYTES, accountId);
+        }
+    }
+
+    // Previous balances of a batch, restored in reverse order when the batch fails.
+    private static final class UndoLog {
+        private Segment[] segments;
+        private int[] offsets;
+        private long[] balances;
+        private int size;
+
+        UndoLog(int transfers) {
+            int capacity = Math.max(2, Math.min(transfers * 2, 1024));
+            segments = new Segment[capacity];
+            offsets = new int[capacity];
+            balances = new long[capacity];
+        }
+
+        void add(Segment segment, int offset, long balance) {
+            if (size == offsets.length) {
+                segments = Arrays.copyOf(segments, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+                balances = Arrays.copyOf(balances, size * 2);
+            }
+            segments[size] = segment;
+            offsets[size] = offset;
+            balances[size] = balance;
+            size++;
+        }
+
+        void revert() {
+            for (int i = size - 1; i >= 0; i--) {
+                segments[i].table.putLong(offsets[i] + 8, balances[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionType;
+import com.sat.revolut.domain.Transfer;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hot accounts, e.g. merchant or settlement accounts credited thousands of times a second, keep part of their balance
+// in sub-balance rows next to their Account row, like a LongAdder for money. A credit lands on a random one of slots
+// rows, so concurrent credits rarely wait on the same row. A debit takes from the Account row and, when that is short,
+// first sweeps every sub-balance into it. The balance of a hot account is its row plus its sub-balances, read in one
+// statement. Other accounts go straight to the wrapped DAO. Sweeps only take what a sub-balance holds with a
+// conditional update, a credit landing meanwhile is never lost.
+public class SubBalanceAccountDAO implements AccountDAO {
+
+    public static final String PROPERTY_HOT_ACCOUNTS = "accounts.hot.ids";
+    public static final String PROPERTY_SLOTS = "accounts.hot.slots";
+    public static final int DEFAULT_SLOTS = 16;
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS AccountSubBalance(account_id long not null, slot int not null, "
+            + "balance bigint default 0 not null, primary key(account_id, slot))";
+    private static final String INSERT_SLOT = "INSERT INTO AccountSubBalance(account_id, slot, balance) SELECT ?, ?, 0 FROM DUAL "
+            + "WHERE EXISTS(SELECT 1 FROM Account WHERE id = ?) AND NOT EXISTS(SELECT 1 FROM AccountSubBalance WHERE account_id = ? AND slot = ?)";
+    private static final String SELECT_ACCOUNT = "SELECT a.id, a.balance + COALESCE((SELECT SUM(s.balance) FROM AccountSubBalance s "
+            + "WHERE s.account_id = a.id), 0) AS balance, a.version FROM Account a WHERE a.id = ?";
+    private static final String SELECT_ACCOUNTS = "SELECT a.id, a.balance + COALESCE((SELECT SUM(s.balance) FROM AccountSubBalance s "
+            + "WHERE s.account_id = a.id), 0) AS balance, a.version FROM TABLE(id BIGINT = ?) t INNER JOIN Account a ON a.id = t.id";
+    private static final String CREDIT_SLOT = "UPDATE AccountSubBalance SET balance = balance + ? WHERE account_id = ? AND slot = ?";
+    private static final String SELECT_SLOTS = "SELECT slot, balance FROM AccountSubBalance WHERE account_id = ? AND balance > 0";
+    private static final String TAKE_FROM_SLOT = "UPDATE AccountSubBalance SET balance = balance - ? WHERE account_id = ? AND slot = ? AND balance >= ?";
+
+    private final AccountJDBCDAOImpl accountDAO;
+    private final Set<Long> hotAccountIds;
+    private final int slots;
+    private final LongAdder sweepCount = new LongAdder();
+
+    public SubBalanceAccountDAO(AccountJDBCDAOImpl accountDAO, Set<Long> hotAccountIds, int slots) throws SQLException {
+        if (slots < 1) {
+            throw new IllegalArgumentException("Hot accounts need at least one sub-balance.");
+        }
+        this.accountDAO = accountDAO;
+        this.hotAccountIds = Collections.unmodifiableSet(new HashSet<>(hotAccountIds));
+        this.slots = slots;
+        try (PooledConnection connection = accountDAO.getConnectionPool().acquire();
+             Statement stmt = connection.getConnection().createStatement()) {
+            stmt.execute(CREATE_TABLE);
+        }
+        for (Long accountId : this.hotAccountIds) {
+            addSlots(accountId);
+        }
+    }
+
+    public boolean isHot(Long accountId) {
+        return hotAccountIds.contains(accountId);
+    }
+
+    public Set<Long> getHotAccountIds() {
+        return hotAccountIds;
+    }
+
+    public int getSlots() {
+        return slots;
+    }
+
+    public long getSweepCount() {
+        return sweepCount.sum();
+    }
+
+    @Override
+    public void create(Long accountId, Money initialBalance) throws SQLException {
+        accountDAO.create(accountId, initialBalance);
+        if (isHot(accountId)) {
+            addSlots(accountId);
+        }
+    }
+
+    // Sub-balances are swept first, the new balance is then the Account row alone.
+    @Override
+    public void update(Long accountId, Money newBalance) throws SQLException {
+        if (!isHot(accountId)) {
+            accountDAO.update(accountId, newBalance);
+            return;
+        }
+        inTransaction(connection -> {
+            sweep(connection, accountId);
+            accountDAO.applyUpdate(connection, accountId, newBalance);
+            return true;
+        });
+    }
+
+    @Override
+    public Account get(Long accountId) throws SQLException {
+        if (!isHot(accountId)) {
+            return accountDAO.get(accountId);
+        }
+        try (PooledConnection connection = accountDAO.getConnectionPool().acquire()) {
+            PreparedStatement stmt = connection.prepareStatement(SELECT_ACCOUNT);
+            stmt.setLong(1, accountId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                Account account = new Account();
+                account.setAccountId(rs.getLong(1));
+                account.setTotalBalance(Money.ofMinor(rs.getLong(2)));
+                account.setVersion(rs.getLong(3));
+                return account;
+            }
+        }
+    }
+
+    // With a hot account among the ids, balances and sub-balances are summed by the same statement, one per chunk.
+    @Override
+    public List<Account> getAll(Collection<Long> accountIds) throws SQLException {
+        for (Long accountId : accountIds) {
+            if (isHot(accountId)) {
+                return accountDAO.selectAccounts(SELECT_ACCOUNTS, accountIds);
+            }
+        }
+        return accountDAO.getAll(accountIds);
+    }
+
+    @Override
+    public void credit(Long accountId, Money amount) throws SQLException {
+        if (!isHot(accountId)) {
+            accountDAO.credit(accountId, amount);
+            return;
+        }
+        if (history().isEnabled()) {
+            inTransaction(connection -> {
+                creditHot(connection, accountId, amount);
+                history().record(connection, accountId, TransactionType.DEPOSIT, amount.getMinorUnits(), null);
+                return true;
+            });
+            return;
+        }
+        try (PooledConnection connection = accountDAO.getConnectionPool().acquire()) {
+            creditHot(connection, accountId, amount);
+        }
+    }
+
+    @Override
+    public boolean debit(Long accountId, Money amount) throws SQLException {
+        if (!isHot(accountId)) {
+            return accountDAO.debit(accountId, amount);
+        }
+        return inTransaction(connection -> {
+            if (!debitHot(connection, accountId, amount)) {
+                return false;
+            }
+            history().record(connection, accountId, TransactionType.WITHDRAW, -amount.getMinorUnits(), null);
+            return true;
+        });
+    }
+
+    @Override
+    public boolean transfer(Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        if (!isHot(fromAccountId) && !isHot(toAccountId)) {
+            return accountDAO.transfer(fromAccountId, toAccountId, amount);
+        }
+        return inTransaction(connection -> applyTransfer(connection, fromAccountId, toAccountId, amount));
+    }
+
+    // Batches without a hot account keep the JDBC batched credits, others are applied one by one in one transaction.
+    @Override
+    public boolean[] transferBatch(List<Transfer> transfers) throws SQLException {
+        boolean touchesHot = false;
+        for (Transfer transfer : transfers) {
+            touchesHot |= isHot(transfer.getFromAccountId()) || isHot(transfer.getToAccountId());
+        }
+        if (!touchesHot) {
+            return accountDAO.transferBatch(transfers);
+        }
+        boolean[] transferred = new boolean[transfers.size()];
+        inTransaction(connection -> {
+            for (int i = 0; i < transfers.size(); i++) {
+                Transfer transfer = transfers.get(i);
+                try {
+                    transferred[i] = applyTransfer(connection, transfer.getFromAccountId(), transfer.getToAccountId(), transfer.getAmount());
+                } catch (SQLException e) {
+                    throw new SQLException("Credit account of a batched transfer does not exist, batch rolled back", e);
+                }
+            }
+            return true;
+        });
+        return transferred;
+    }
+
+    // The version of a hot account does not follow its sub-balances, compare and set would miss credits.
+    @Override
+    public boolean compareAndSetBalance(Long accountId, long expectedVersion, Money newBalance) throws SQLException {
+        if (isHot(accountId)) {
+            throw new SQLFeatureNotSupportedException("Account " + accountId + " is hot, use a locking engine");
+        }
+        return accountDAO.compareAndSetBalance(accountId, expectedVersion, newBalance);
+    }
+
+    private boolean applyTransfer(PooledConnection connection, Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        boolean debited = isHot(fromAccountId)
+                ? debitHot(connection, fromAccountId, amount)
+                : accountDAO.debitBalance(connection, fromAccountId, amount);
+        if (!debited) {
+            return false;
+        }
+        if (isHot(toAccountId)) {
+            creditHot(connection, toAccountId, amount);
+        } else {
+            accountDAO.creditBalance(connection, toAccountId, amount);
+        }
+        history().recordTransfer(connection, fromAccountId, toAccountId, amount);
+        return true;
+    }
+
+    // Sweeps only move money within an account, only the operations themselves are recorded.
+    private TransactionHistory history() {
+        return accountDAO.getTransactionHistory();
+    }
+
+    private void creditHot(PooledConnection connection, Long accountId, Money amount) throws SQLException {
+        PreparedStatement credit = connection.prepareStatement(CREDIT_SLOT);
+        credit.setLong(1, amount.getMinorUnits());
+        credit.setLong(2, accountId);
+        credit.setInt(3, ThreadLocalRandom.current().nextInt(slots));
+        if (credit.executeUpdate() != 1) {
+            // Slot rows are missing, e.g. the account was created by another instance. The Account row still works.
+            accountDAO.creditBalance(connection, accountId, amount);
+        }
+    }
+
+    private boolean debitHot(PooledConnection connection, Long accountId, Money amount) throws SQLException {
+        if (accountDAO.debitBalance(connection, accountId, amount)) {
+            return true;
+        }
+        return sweep(connection, accountId) > 0 && accountDAO.debitBalance(connection, accountId, amount);
+    }
+
+    // Moves what the sub-balances hold into the Account row, returns the amount moved in minor units.
+    private long sweep(PooledConnection connection, Long accountId) throws SQLException {
+        List<long[]> held = new ArrayList<>();
+        PreparedStatement select = connection.prepareStatement(SELECT_SLOTS);
+        select.setLong(1, accountId);
+        try (ResultSet rs = select.executeQuery()) {
+            while (rs.next()) {
+                held.add(new long[]{rs.getInt(1), rs.getLong(2)});
+            }
+        }
+
+        long moved = 0;
+        PreparedStatement take = connection.prepareStatement(TAKE_FROM_SLOT);
+        for (long[] slot : held) {
+            take.setLong(1, slot[1]);
+            take.setLong(2, accountId);
+            take.setInt(3, (int) slot[0]);
+            take.setLong(4, slot[1]);
+            if (take.executeUpdate() == 1) {
+                moved += slot[1];
+            }
+        }
+        if (moved > 0) {
+            accountDAO.creditBalance(connection, accountId, Money.ofMinor(moved));
+            sweepCount.increment();
+        }
+        return moved;
+    }
+
+    private void addSlots(Long accountId) throws SQLException {
+        try (PooledConnection connection = accountDAO.getConnectionPool().acquire()) {
+            PreparedStatement insert = connection.prepareStatement(INSERT_SLOT);
+            for (int slot = 0; slot < slots; slot++) {
+                insert.setLong(1, accountId);
+                insert.setInt(2, slot);
+                insert.setLong(3, accountId);
+                insert.setLong(4, accountId);
+                insert.setInt(5, slot);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+        try (PooledConnection connection = accountDAO.getConnectionPool().acquire()) {
+            Connection jdbcConnection = connection.getConnection();
+            jdbcConnection.setAutoCommit(false);
+            try {
+                T result = work.apply(connection);
+                jdbcConnection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                jdbcConnection.rollback();
+                throw e;
+            } finally {
+                jdbcConnection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private interface TransactionWork<T> {
+        T apply(PooledConnection connection) throws SQLException;
+    }
+}
@@ -0,0 +1,147 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionEntry;
+import com.sat.revolut.domain.TransactionType;
+import com.sat.revolut.domain.Transfer;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+// AccountTransaction rows, one per account a write changed, inserted on the connection of the balance change so they
+// commit or roll back with it. A transfer gives a row on each side. Pages are read newest first with keyset
+// pagination on the (account_id, ts, id) index : a page starts right after the last row of the previous one instead
+// of skipping an OFFSET, so every page costs the same however long the history is.
+public class TransactionHistory {
+
+    public static final String PROPERTY_ENABLED = "accounts.history.enabled";
+    public static final String PROPERTY_MAX_PAGE_SIZE = "accounts.history.maxPageSize";
+    public static final int DEFAULT_MAX_PAGE_SIZE = 1000;
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    // Records nothing, used until a real history is wired.
+    public static final TransactionHistory DISABLED = new TransactionHistory();
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS AccountTransaction(id bigint auto_increment primary key, "
+            + "account_id bigint not null, ts bigint not null, type varchar(16) not null, amount bigint not null, counterparty_id bigint)";
+    private static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS AccountTransaction_account_ts ON AccountTransaction(account_id, ts DESC, id DESC)";
+    private static final String INSERT_ENTRY = "INSERT INTO AccountTransaction(account_id, ts, type, amount, counterparty_id) VALUES(?, ?, ?, ?, ?)";
+    // ts <= ? bounds the index range, the OR only filters the rows sharing the last timestamp of the previous page.
+    private static final String SELECT_PAGE = "SELECT id, ts, type, amount, counterparty_id FROM AccountTransaction "
+            + "WHERE account_id = ? AND ts <= ? AND (ts < ? OR id < ?) ORDER BY ts DESC, id DESC LIMIT ?";
+
+    private final ConnectionPool connectionPool;
+
+    private TransactionHistory() {
+        this.connectionPool = null;
+    }
+
+    public TransactionHistory(ConnectionPool connectionPool) throws SQLException {
+        this.connectionPool = connectionPool;
+        try (PooledConnection connection = connectionPool.acquire();
+             Statement stmt = connection.getConnection().createStatement()) {
+            stmt.execute(CREATE_TABLE);
+            stmt.execute(CREATE_INDEX);
+        }
+    }
+
+    public boolean isEnabled() {
+        return connectionPool != null;
+    }
+
+    // amount in minor units, signed from the account's side.
+    void record(PooledConnection connection, Long accountId, TransactionType type, long amount, Long counterpartyId) throws SQLException {
+        if (!isEnabled()) {
+            return;
+        }
+        PreparedStatement insert = connection.prepareStatement(INSERT_ENTRY);
+        bind(insert, accountId, System.currentTimeMillis(), type, amount, counterpartyId);
+        insert.executeUpdate();
+    }
+
+    void recordTransfer(PooledConnection connection, Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        if (!isEnabled()) {
+            return;
+        }
+        PreparedStatement insert = connection.prepareStatement(INSERT_ENTRY);
+        addTransfer(insert, System.currentTimeMillis(), fromAccountId, toAccountId, amount);
+        executeBatch(insert);
+    }
+
+    // Rows of the transfers applied, in one JDBC batch.
+    void recordTransfers(PooledConnection connection, List<Transfer> transfers, boolean[] transferred) throws SQLException {
+        if (!isEnabled()) {
+            return;
+        }
+        PreparedStatement insert = connection.prepareStatement(INSERT_ENTRY);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < transfers.size(); i++) {
+            if (transferred[i]) {
+                Transfer transfer = transfers.get(i);
+                addTransfer(insert, now, transfer.getFromAccountId(), transfer.getToAccountId(), transfer.getAmount());
+            }
+        }
+        executeBatch(insert);
+    }
+
+    // Up to limit entries of the account, newest first, older than the (beforeTimestamp, beforeId) entry.
+    // Long.MAX_VALUE for both gives the first page, the last entry of a page gives the bounds of the next one.
+    public List<TransactionEntry> page(Long accountId, long beforeTimestamp, long beforeId, int limit) throws SQLException {
+        List<TransactionEntry> entries = new ArrayList<>(Math.min(limit, DEFAULT_MAX_PAGE_SIZE));
+        if (!isEnabled()) {
+            return entries;
+        }
+        try (PooledConnection connection = connectionPool.acquire()) {
+            PreparedStatement select = connection.prepareStatement(SELECT_PAGE);
+            select.setLong(1, accountId);
+            select.setLong(2, beforeTimestamp);
+            select.setLong(3, beforeTimestamp);
+            select.setLong(4, beforeId);
+            select.setInt(5, limit);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    // wasNull reports on the last column read, counterparty_id is read alone right before it.
+                    long counterpartyId = rs.getLong(5);
+                    Long counterparty = rs.wasNull() ? null : counterpartyId;
+                    entries.add(new TransactionEntry(rs.getLong(1), rs.getLong(2), TransactionType.valueOf(rs.getString(3)),
+                            Money.ofMinor(rs.getLong(4)), counterparty));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static void addTransfer(PreparedStatement insert, long now, Long fromAccountId, Long toAccountId, Money amount) throws SQLException {
+        bind(insert, fromAccountId, now, TransactionType.TRANSFER, -amount.getMinorUnits(), toAccountId);
+        insert.addBatch();
+        bind(insert, toAccountId, now, TransactionType.TRANSFER, amount.getMinorUnits(), fromAccountId);
+        insert.addBatch();
+    }
+
+    private static void bind(PreparedStatement insert, Long accountId, long now, TransactionType type, long amount, Long counterpartyId) throws SQLException {
+        insert.setLong(1, accountId);
+        insert.setLong(2, now);
+        insert.setString(3, type.name());
+        insert.setLong(4, amount);
+        if (counterpartyId == null) {
+            insert.setNull(5, Types.BIGINT);
+        } else {
+            insert.setLong(5, counterpartyId);
+        }
+    }
+
+    private static void executeBatch(PreparedStatement insert) throws SQLException {
+        try {
+            insert.executeBatch();
+        } catch (SQLException e) {
+            // Statement is cached with the connection, rows left in its batch must not leak into the next use.
+            insert.clearBatch();
+            throw e;
+        }
+    }
+}
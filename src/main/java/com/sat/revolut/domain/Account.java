@@ -2,13 +2,14 @@ package com.sat.revolut.domain;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.math.BigDecimal;
-
 public class Account {
 
     Long accountId;
 
-    BigDecimal totalBalance;
+    Money totalBalance;
+
+    // Bumped by every write to the row, compared by AccountDAO.compareAndSetBalance.
+    long version;
 
     public Long getAccountId() {
         return accountId;
@@ -18,19 +19,29 @@ public class Account {
         this.accountId = accountId;
     }
 
-    public BigDecimal getTotalBalance() {
+    public Money getTotalBalance() {
         return totalBalance;
     }
 
-    public void setTotalBalance(BigDecimal totalBalance) {
+    public void setTotalBalance(Money totalBalance) {
         this.totalBalance = totalBalance;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public String toString() {
-        StringBuilder accountDetails = new StringBuilder();
-        accountDetails.append("Account Id : " + accountId); accountDetails.append("\n");
-        accountDetails.append("Total balance : " + totalBalance);
-        return accountDetails.toString();
+        return appendTo(new StringBuilder(64)).toString();
+    }
+
+    public StringBuilder appendTo(StringBuilder builder) {
+        builder.append("Account Id : ").append(accountId).append('\n').append("Total balance : ");
+        return totalBalance == null ? builder.append("null") : totalBalance.appendTo(builder);
     }
 }
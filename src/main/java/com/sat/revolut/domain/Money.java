@@ -0,0 +1,163 @@
+package com.sat.revolut.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Amount held as a long count of minor units (cents), two decimal places.
+// Arithmetic is exact : overflow and amounts with more than two decimal places throw ArithmeticException, nothing is rounded.
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+    private static final long MINOR_UNITS_PER_UNIT = 100;
+
+    public static final Money ZERO = new Money(0);
+    public static final Money ONE = new Money(MINOR_UNITS_PER_UNIT);
+
+    private final long minorUnits;
+
+    private Money(long minorUnits) {
+        this.minorUnits = minorUnits;
+    }
+
+    public static Money ofMinor(long minorUnits) {
+        return minorUnits == 0 ? ZERO : new Money(minorUnits);
+    }
+
+    public static Money of(long units) {
+        return ofMinor(Math.multiplyExact(units, MINOR_UNITS_PER_UNIT));
+    }
+
+    public static Money of(BigDecimal amount) {
+        try {
+            return ofMinor(amount.setScale(SCALE, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Amount " + amount.toPlainString() + " can not be represented exactly with " + SCALE + " decimal places");
+        }
+    }
+
+    // Parses plain decimal text such as "100", "-3.5" or "12.50" without going through BigDecimal.
+    // Trailing zeros beyond two decimal places are accepted, any other extra precision is rejected.
+    public static Money parse(CharSequence text) {
+        if (text == null) {
+            throw new NumberFormatException("Amount is missing");
+        }
+        return parse(text, 0, text.length());
+    }
+
+    // Parses the characters between start (inclusive) and end (exclusive), e.g. a value inside a query string,
+    // without copying them out first.
+    public static Money parse(CharSequence text, int start, int end) {
+        int index = start;
+        boolean negative = false;
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            negative = text.charAt(index) == '-';
+            index++;
+        }
+        if (index == end) {
+            throw invalid(text, start, end);
+        }
+
+        long minorUnits = 0;
+        int fractionDigits = -1;
+        boolean digitSeen = false;
+        for (; index < end; index++) {
+            char c = text.charAt(index);
+            if (c == '.') {
+                if (fractionDigits >= 0) {
+                    throw invalid(text, start, end);
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw invalid(text, start, end);
+            }
+            digitSeen = true;
+            if (fractionDigits >= SCALE) {
+                if (c != '0') {
+                    throw new ArithmeticException("Amount " + text.subSequence(start, end) + " can not be represented exactly with " + SCALE + " decimal places");
+                }
+                continue;
+            }
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+            // Accumulate negatively so that Long.MIN_VALUE can be parsed as well.
+            minorUnits = Math.subtractExact(Math.multiplyExact(minorUnits, 10), c - '0');
+        }
+        if (!digitSeen) {
+            throw invalid(text, start, end);
+        }
+        for (int scale = Math.max(fractionDigits, 0); scale < SCALE; scale++) {
+            minorUnits = Math.multiplyExact(minorUnits, 10);
+        }
+        return ofMinor(negative ? minorUnits : Math.negateExact(minorUnits));
+    }
+
+    private static NumberFormatException invalid(CharSequence text, int start, int end) {
+        return new NumberFormatException("Invalid amount : " + text.subSequence(start, end));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Money plus(Money other) {
+        return ofMinor(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return ofMinor(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public boolean isGreaterThan(Money other) {
+        return minorUnits > other.minorUnits;
+    }
+
+    public boolean isLessThan(Money other) {
+        return minorUnits < other.minorUnits;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Money)) {
+            return false;
+        }
+        return minorUnits == ((Money) other).minorUnits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder(24)).toString();
+    }
+
+    public StringBuilder appendTo(StringBuilder builder) {
+        long units = minorUnits / MINOR_UNITS_PER_UNIT;
+        long cents = Math.abs(minorUnits % MINOR_UNITS_PER_UNIT);
+        if (minorUnits < 0 && units == 0) {
+            builder.append('-');
+        }
+        builder.append(units).append('.');
+        if (cents < 10) {
+            builder.append('0');
+        }
+        return builder.append(cents);
+    }
+}
@@ -0,0 +1,46 @@
+package com.sat.revolut.domain;
+
+// One line of an account's transaction history. amount is signed from the account's side, negative when money left it.
+public class TransactionEntry {
+
+    private final long id;
+    private final long timestamp;
+    private final TransactionType type;
+    private final Money amount;
+    private final Long counterpartyId;
+
+    public TransactionEntry(long id, long timestamp, TransactionType type, Money amount, Long counterpartyId) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.amount = amount;
+        this.counterpartyId = counterpartyId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    // Epoch milliseconds of the write.
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    // Other account of a transfer, null otherwise.
+    public Long getCounterpartyId() {
+        return counterpartyId;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + amount + " at " + timestamp + (counterpartyId == null ? "" : " with " + counterpartyId);
+    }
+}
@@ -0,0 +1,8 @@
+package com.sat.revolut.domain;
+
+public enum TransactionType {
+    CREATE,
+    DEPOSIT,
+    WITHDRAW,
+    TRANSFER
+}
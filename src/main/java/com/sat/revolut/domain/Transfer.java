@@ -0,0 +1,31 @@
+package com.sat.revolut.domain;
+
+public class Transfer {
+
+    private final Long fromAccountId;
+    private final Long toAccountId;
+    private final Money amount;
+
+    public Transfer(Long fromAccountId, Long toAccountId, Money amount) {
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+    }
+
+    public Long getFromAccountId() {
+        return fromAccountId;
+    }
+
+    public Long getToAccountId() {
+        return toAccountId;
+    }
+
+    public Money getAmount() {
+        return amount;
+    }
+
+    @Override
+    public String toString() {
+        return "Transfer " + amount + " from " + fromAccountId + " to " + toAccountId;
+    }
+}
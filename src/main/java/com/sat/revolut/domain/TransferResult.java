@@ -0,0 +1,26 @@
+package com.sat.revolut.domain;
+
+public class TransferResult {
+
+    private final Transfer transfer;
+    private final TransferStatus status;
+    private final String message;
+
+    public TransferResult(Transfer transfer, TransferStatus status, String message) {
+        this.transfer = transfer;
+        this.status = status;
+        this.message = message;
+    }
+
+    public Transfer getTransfer() {
+        return transfer;
+    }
+
+    public TransferStatus getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,10 @@
+package com.sat.revolut.domain;
+
+public enum TransferStatus {
+    COMPLETED,
+    LOW_BALANCE,
+    NO_ACCOUNT_FOUND,
+    INVALID_AMOUNT,
+    INVALID_ACCOUNT_NUMBER,
+    FAILED
+}
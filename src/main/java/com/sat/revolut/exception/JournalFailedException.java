@@ -0,0 +1,9 @@
+package com.sat.revolut.exception;
+
+// A write was applied but could not be journaled. Not retryable : sending it again would apply it twice.
+public class JournalFailedException extends RuntimeException {
+
+    public JournalFailedException(String s, Throwable cause) {
+        super(s, cause);
+    }
+}
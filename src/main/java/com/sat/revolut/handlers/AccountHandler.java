@@ -3,29 +3,165 @@ package com.sat.revolut.handlers;
 import com.sat.revolut.exception.*;
 import com.sat.revolut.dao.AccountService;
 import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionType;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.domain.TransferResult;
+import com.sat.revolut.domain.TransferStatus;
+import com.sat.revolut.metrics.MetricsRegistry;
+import com.sat.revolut.txlog.TransactionLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
 import java.sql.SQLException;
-import java.text.MessageFormat;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 public class AccountHandler {
     private Logger logger = LoggerFactory.getLogger(this.getClass());
-    private final ConcurrentHashMap<Long, ReentrantReadWriteLock> mapOfLocks = new ConcurrentHashMap<>();
+    private final AccountLockStripes lockStripes;
     private AccountService accountService = null;
+    private final TransactionIdGenerator transactionIds = new TransactionIdGenerator();
+    // Recorded into a private registry until setMetricsRegistry is called, so recording never needs a null check.
+    private AccountHandlerMetrics metrics = new AccountHandlerMetrics(new MetricsRegistry());
+    private TransactionLog transactionLog = TransactionLog.DISABLED;
 
-    private boolean lockCleanUpInProgress = Boolean.FALSE;
+    public static final String PROPERTY_LOCK_TIMEOUT_MILLIS = "accounts.lock.timeoutMillis";
+    public static final long DEFAULT_LOCK_TIMEOUT_MILLIS = 5000;
+    private long lockTimeoutMillis = DEFAULT_LOCK_TIMEOUT_MILLIS;
 
-    private static final int MAX_ALLOWED_IN_MEMORY_LOCKS = 100; // Value depends on available memory. Intentionally kept less.
+    public static final String PROPERTY_BATCH_GROUP_SIZE = "accounts.batch.groupSize";
+    public static final int DEFAULT_BATCH_GROUP_SIZE = 100;
+    private int batchGroupSize = DEFAULT_BATCH_GROUP_SIZE;
 
+    // Accounts whose balance is split into sub-balances, see SubBalanceAccountDAO. Credits to them take no lock.
+    private Set<Long> hotAccountIds = Collections.emptySet();
 
+    public AccountHandler() {
+        this(AccountLockStripes.DEFAULT_STRIPES);
+    }
+
+    public AccountHandler(int lockStripes) {
+        this.lockStripes = new AccountLockStripes(lockStripes);
+    }
+
+    // Public operations only time and log the call, engines override the do* methods below.
+    public String transferAmount(Money amount, Long fromAccountId, Long toAccountId) throws NoAccountFoundException, InvalidAccountNumberException, SQLException, InvalidAmountException, RetriesExceededException, InterruptedException {
+        long start = System.nanoTime();
+        long transactionId = newTransactionId();
+        Throwable failure = null;
+        try {
+            return doTransferAmount(transactionId, amount, fromAccountId, toAccountId);
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            long latency = System.nanoTime() - start;
+            metrics.transferAmount.recordDuration(latency, failure != null);
+            transactionLog.record(transactionId, TransactionType.TRANSFER, fromAccountId, toAccountId, amount, failure, latency);
+        }
+    }
 
-    public String transferAmount(BigDecimal amount, Long fromAccountId, Long toAccountId) throws NoAccountFoundException, InvalidAccountNumberException, SQLException, InvalidAmountException, RetriesExceededException, InterruptedException {
+    public List<TransferResult> transferBatch(List<Transfer> transfers) throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<TransferResult> results = doTransferBatch(transfers);
+            failed = false;
+            if (transactionLog.isEnabled()) {
+                long latency = System.nanoTime() - start;
+                for (TransferResult result : results) {
+                    Transfer transfer = result.getTransfer();
+                    transactionLog.record(newTransactionId(), TransactionType.TRANSFER, transfer.getFromAccountId(), transfer.getToAccountId(),
+                            transfer.getAmount(), result.getStatus(), latency);
+                }
+            }
+            return results;
+        } finally {
+            metrics.transferBatch.record(start, failed);
+        }
+    }
+
+    public void deposit(Money amount,Long accountId) throws InvalidAmountException,NoAccountFoundException,SQLException,InterruptedException{
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            doDeposit(amount, accountId);
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            long latency = System.nanoTime() - start;
+            metrics.deposit.recordDuration(latency, failure != null);
+            transactionLog.record(newTransactionId(), TransactionType.DEPOSIT, null, accountId, amount, failure, latency);
+        }
+    }
+
+    public void withDraw(Money amount,Long accountId) throws InvalidAmountException,NoAccountFoundException,SQLException,InterruptedException{
+        long start = System.nanoTime();
+        long transactionId = newTransactionId();
+        Throwable failure = null;
+        try {
+            doWithDraw(transactionId, amount, accountId);
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            long latency = System.nanoTime() - start;
+            metrics.withDraw.recordDuration(latency, failure != null);
+            transactionLog.record(transactionId, TransactionType.WITHDRAW, accountId, null, amount, failure, latency);
+        }
+    }
+
+    public Account getAccount(Long accountId) throws SQLException, NoAccountFoundException,InterruptedException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Account result = doGetAccount(accountId);
+            failed = false;
+            return result;
+        } finally {
+            metrics.getAccount.record(start, failed);
+        }
+    }
+
+    public List<Account> getAccounts(Collection<Long> accountIds) throws SQLException, InterruptedException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            List<Account> result = doGetAccounts(accountIds);
+            failed = false;
+            return result;
+        } finally {
+            metrics.getAccounts.record(start, failed);
+        }
+    }
+
+    public void createAccount(Long accountId, Money initialBalance) throws InvalidAmountException, InvalidAccountNumberException, AccountAlreadyExistException,SQLException,InterruptedException {
+        long start = System.nanoTime();
+        Throwable failure = null;
+        try {
+            doCreateAccount(accountId, initialBalance);
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            long latency = System.nanoTime() - start;
+            metrics.createAccount.recordDuration(latency, failure != null);
+            transactionLog.record(newTransactionId(), TransactionType.CREATE, null, accountId, initialBalance, failure, latency);
+        }
+    }
+
+
+    protected String doTransferAmount(long transactionId, Money amount, Long fromAccountId, Long toAccountId) throws NoAccountFoundException, InvalidAccountNumberException, SQLException, InvalidAmountException, RetriesExceededException, InterruptedException {
         if(fromAccountId.equals(toAccountId)){
             throw new InvalidAccountNumberException("From and To account ID same");
         }
@@ -36,77 +172,146 @@ public class AccountHandler {
             throw new NoAccountFoundException("One of Account does not exist");
         }
 
-
-        String transactionId = Thread.currentThread().hashCode() + "_" +System.currentTimeMillis() + "_" + fromAccountId + "_" + toAccountId;
-        if(logger.isInfoEnabled()){
-            logger.info(MessageFormat.format("Initiating transaction : {0}" , transactionId));
+        if(logger.isDebugEnabled()){
+            logger.debug("Initiating transaction : {}", transactionId);
         }
 
-        ReadWriteLock fromAccountLock = getLockTobeAcquired(fromAccountId);
-        ReadWriteLock toAccountLock = getLockTobeAcquired(toAccountId);
+        // Both locks are taken in stripe order with a timeout, instead of spinning on tryLock.
+        // A hot to account is credited on a sub-balance, only the from account needs its lock.
+        ReentrantReadWriteLock[] locks = hotAccountIds.contains(toAccountId)
+                ? lockStripes.orderedLocksFor(Collections.singleton(fromAccountId))
+                : lockStripes.orderedLocksFor(fromAccountId, toAccountId);
+        acquireWriteLocks(locks);
+        try {
+            // Debit is conditional in the DAO, no need to read balances before updating them.
+            if(!accountService.transfer(fromAccountId, toAccountId, amount)){
+                throw new LowBalanceException("Transaction Id : " + transactionId + " failed with error : " + "Low balance in account " + fromAccountId);
+            }
+        }finally {
+            releaseWriteLocks(locks, locks.length);
+        }
+        return "Transaction : " + transactionId + " is completed";
+    }
 
-        int retires = 0;
-        while(!isBothLockAcquired(fromAccountLock,toAccountLock)){
-            retires++;
-            if(retires > 100){
-                throw new RetriesExceededException("Unable to acquire lock after 100 tries.");
+    // Every transfer is validated on its own, valid ones are applied in groups of batchGroupSize.
+    // Each group is one database transaction holding the locks of all accounts it touches.
+    protected List<TransferResult> doTransferBatch(List<Transfer> transfers) throws SQLException, InterruptedException {
+        TransferResult[] results = new TransferResult[transfers.size()];
+        List<Transfer> group = new ArrayList<>(Math.min(transfers.size(), batchGroupSize));
+        List<Integer> groupIndexes = new ArrayList<>(Math.min(transfers.size(), batchGroupSize));
+
+        for(int i = 0; i < transfers.size(); i++){
+            Transfer transfer = transfers.get(i);
+            TransferResult invalid = validateTransfer(transfer);
+            if(invalid != null){
+                results[i] = invalid;
+                continue;
+            }
+            group.add(transfer);
+            groupIndexes.add(i);
+            if(group.size() == batchGroupSize){
+                applyTransferGroup(group, groupIndexes, results);
+                group.clear();
+                groupIndexes.clear();
             }
         }
+        if(!group.isEmpty()){
+            applyTransferGroup(group, groupIndexes, results);
+        }
+        return Arrays.asList(results);
+    }
 
+    private void applyTransferGroup(List<Transfer> group, List<Integer> groupIndexes, TransferResult[] results) throws InterruptedException {
+        Set<Long> accountIds = new HashSet<>();
+        for(Transfer transfer : group){
+            accountIds.add(transfer.getFromAccountId());
+            if(!hotAccountIds.contains(transfer.getToAccountId())){
+                accountIds.add(transfer.getToAccountId());
+            }
+        }
 
+        ReentrantReadWriteLock[] locks = lockStripes.orderedLocksFor(accountIds);
         try {
-
-            BigDecimal fromAccountBalance = getBalance(fromAccountId);
-
-            if(fromAccountBalance.compareTo(amount) < 0){
-                throw new LowBalanceException("Transaction Id : " + transactionId + " failed with error : " + "Low balance in account " + fromAccountId);
+            acquireWriteLocks(locks);
+        } catch (RetriesExceededException e) {
+            failTransferGroup(group, groupIndexes, results, e.getMessage());
+            return;
+        }
+        try {
+            boolean[] transferred = accountService.transferBatch(group);
+            for(int i = 0; i < group.size(); i++){
+                Transfer transfer = group.get(i);
+                results[groupIndexes.get(i)] = transferred[i]
+                        ? new TransferResult(transfer, TransferStatus.COMPLETED, null)
+                        : new TransferResult(transfer, TransferStatus.LOW_BALANCE, "Low balance in account " + transfer.getFromAccountId());
             }
+        } catch (SQLException e) {
+            logger.error("Batch transfer group of " + group.size() + " rolled back : " + e.getMessage());
+            failTransferGroup(group, groupIndexes, results, e.getMessage());
+        } finally {
+            releaseWriteLocks(locks, locks.length);
+        }
+    }
 
-            BigDecimal toAccountBalance = getBalance(toAccountId);
-
-            fromAccountBalance = fromAccountBalance.subtract(amount);
-            toAccountBalance = toAccountBalance.add(amount);
-
-            updateBalance(fromAccountBalance, fromAccountId);
-            updateBalance(toAccountBalance, toAccountId);
-        }finally {
-            fromAccountLock.writeLock().unlock();
-            toAccountLock.writeLock().unlock();
+    private void failTransferGroup(List<Transfer> group, List<Integer> groupIndexes, TransferResult[] results, String message){
+        for(int i = 0; i < group.size(); i++){
+            results[groupIndexes.get(i)] = new TransferResult(group.get(i), TransferStatus.FAILED, message);
         }
-        return "Transaction : " + transactionId + " is completed";
     }
 
-    private boolean isBothLockAcquired(ReadWriteLock lock1 , ReadWriteLock lock2){
-        boolean lock2Acq = false;
-        boolean lock1Acq = false;
+    // Same checks as transferAmount, reported as a result instead of an exception. Null when the transfer is valid.
+    protected TransferResult validateTransfer(Transfer transfer) throws SQLException {
+        if(transfer.getFromAccountId().equals(transfer.getToAccountId())){
+            return new TransferResult(transfer, TransferStatus.INVALID_ACCOUNT_NUMBER, "From and To account ID same");
+        }
         try {
-            lock2Acq = lock2.writeLock().tryLock();
-            lock1Acq = lock1.writeLock().tryLock();
+            validateInputAmount(transfer.getAmount());
+        } catch (InvalidAmountException e) {
+            return new TransferResult(transfer, TransferStatus.INVALID_AMOUNT, e.getMessage());
+        }
+        if(!isAccountExist(transfer.getFromAccountId()) || !isAccountExist(transfer.getToAccountId())){
+            return new TransferResult(transfer, TransferStatus.NO_ACCOUNT_FOUND, "One of Account does not exist");
+        }
+        return null;
+    }
 
-        }finally{
-            if(!(lock1Acq && lock2Acq)){
-                if(lock1Acq){
-                   lock1.writeLock().unlock();
-                }
-                if(lock2Acq){
-                    lock2.writeLock().unlock();
-                }
-            }
+    private void acquireWriteLocks(ReentrantReadWriteLock[] locks) throws RetriesExceededException, InterruptedException {
+        long start = System.nanoTime();
+        boolean locked = AccountLockStripes.tryWriteLockAll(locks, lockTimeoutMillis);
+        metrics.lockWait.recordSince(start);
+        if(!locked){
+            metrics.lockTimeouts.increment();
+            throw new RetriesExceededException("Unable to acquire account locks within " + lockTimeoutMillis + " ms.");
         }
-        return lock1Acq && lock2Acq;
     }
 
-    public void deposit(BigDecimal amount,Long accountId) throws InvalidAmountException,NoAccountFoundException,SQLException,InterruptedException{
+    private void lockWrite(ReadWriteLock lock){
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        metrics.lockWait.recordSince(start);
+    }
+
+    private void releaseWriteLocks(ReentrantReadWriteLock[] locks, int acquired){
+        AccountLockStripes.unlockWrite(locks, acquired);
+    }
+
+    protected void doDeposit(Money amount,Long accountId) throws InvalidAmountException,NoAccountFoundException,SQLException,InterruptedException{
         validateInputAmount(amount);
         if(!isAccountExist(accountId)){
             throw new NoAccountFoundException("Account does not exist");
         }
 
+        if(hotAccountIds.contains(accountId)){
+            // Lands on one of the account's sub-balances, concurrent deposits do not wait for each other.
+            accountService.credit(accountId, amount);
+            return;
+        }
+
         ReadWriteLock lock = getLockTobeAcquired(accountId);
-        lock.writeLock().lock();
+        lockWrite(lock);
         try{
-            BigDecimal currentBalance = getBalance(accountId);
-            BigDecimal newBalance = currentBalance.add(amount);
+            Money currentBalance = getBalance(accountId);
+            Money newBalance = currentBalance.plus(amount);
 
             updateBalance(newBalance,accountId);
         } finally{
@@ -114,20 +319,26 @@ public class AccountHandler {
         }
     }
 
-    public void withDraw(BigDecimal amount,Long accountId) throws InvalidAmountException,NoAccountFoundException,SQLException,InterruptedException{
+    protected void doWithDraw(long transactionId, Money amount,Long accountId) throws InvalidAmountException,NoAccountFoundException,SQLException,InterruptedException{
         validateInputAmount(amount);
         if(!isAccountExist(accountId)){
             throw new NoAccountFoundException("Account does not exist");
         }
-        String transactionId = Thread.currentThread().hashCode() + "_withdraw_" + System.currentTimeMillis() + "_" + accountId;
         ReadWriteLock lock = getLockTobeAcquired(accountId);
-        lock.writeLock().lock();
+        lockWrite(lock);
         try{
-            BigDecimal currentBalance = getBalance(accountId);
-            if(currentBalance.compareTo(amount) < 0){
+            if(hotAccountIds.contains(accountId)){
+                // Lock free credits may land at any time, the balance can only be checked by a conditional debit.
+                if(!accountService.debit(accountId, amount)){
+                    throw new LowBalanceException("Transaction : " + transactionId + " failed. Low balance in account " + accountId);
+                }
+                return;
+            }
+            Money currentBalance = getBalance(accountId);
+            if(currentBalance.isLessThan(amount)){
                 throw new LowBalanceException("Transaction : " + transactionId + " failed. Low balance in account " + accountId);
             }
-            BigDecimal newBalance = currentBalance.subtract(amount);
+            Money newBalance = currentBalance.minus(amount);
 
             updateBalance(newBalance,accountId);
         }finally{
@@ -135,7 +346,7 @@ public class AccountHandler {
         }
     }
 
-    public Account getAccount(Long accountId) throws SQLException, NoAccountFoundException,InterruptedException {
+    protected Account doGetAccount(Long accountId) throws SQLException, NoAccountFoundException,InterruptedException {
         if(!isAccountExist(accountId)){
             throw new NoAccountFoundException("No account with exist id : " + accountId);
         }
@@ -143,7 +354,9 @@ public class AccountHandler {
         ReadWriteLock lock = getLockTobeAcquired(accountId);
 
 
+        long lockStart = System.nanoTime();
         lock.readLock().lock();
+        metrics.lockWait.recordSince(lockStart);
         try{
             return accountService.get(accountId);
         }finally{
@@ -151,7 +364,13 @@ public class AccountHandler {
         }
     }
 
-    public void createAccount(Long accountId, BigDecimal initialBalance) throws InvalidAmountException, InvalidAccountNumberException, AccountAlreadyExistException,SQLException,InterruptedException {
+    // One lookup for all ids and no account locks : a single statement never sees half of a transfer, and a
+    // deposit or withdrawal is a single row write. Missing accounts are left out instead of failing the call.
+    protected List<Account> doGetAccounts(Collection<Long> accountIds) throws SQLException, InterruptedException {
+        return accountService.getAll(accountIds);
+    }
+
+    protected void doCreateAccount(Long accountId, Money initialBalance) throws InvalidAmountException, InvalidAccountNumberException, AccountAlreadyExistException,SQLException,InterruptedException {
         validateInputAmount(initialBalance);
 
         if(accountId <= 0){
@@ -163,7 +382,7 @@ public class AccountHandler {
         }
 
         ReadWriteLock lock = getLockTobeAcquired(accountId);
-        lock.writeLock().lock();
+        lockWrite(lock);
         try{
             // Check again , to avoid parallel threads creating same account.
             if(isAccountExist(accountId)){
@@ -179,77 +398,70 @@ public class AccountHandler {
 
 
 
-    private void updateBalance(BigDecimal balance, Long accountId) throws SQLException {
+    private void updateBalance(Money balance, Long accountId) throws SQLException {
         accountService.update(accountId,balance);
     }
 
-    private BigDecimal getBalance(Long accountId) throws SQLException {
+    private Money getBalance(Long accountId) throws SQLException {
         Account account = accountService.get(accountId);
         return account.getTotalBalance();
     }
 
-    private void validateInputAmount(BigDecimal amount) throws InvalidAmountException{
-        if(amount.compareTo(new BigDecimal("1")) <= 0){
+    protected long newTransactionId(){
+        return transactionIds.next();
+    }
+
+    protected void validateInputAmount(Money amount) throws InvalidAmountException{
+        if(amount.compareTo(Money.ONE) <= 0){
             throw new InvalidAmountException("Invalid amount. Amount should always be greater than One.");
         }
     }
 
-    private void cleanUpUnusedLocks(){
-        try{
-            if(logger.isInfoEnabled()) {
-                logger.info(MessageFormat.format("Unused lock clean up in progress , current size {1} max allowed size : {0}" , MAX_ALLOWED_IN_MEMORY_LOCKS,mapOfLocks.size()));
-            }
-            lockCleanUpInProgress = true;
-            mapOfLocks.forEachKey(0, accountId -> {
-                    ReentrantReadWriteLock lock = mapOfLocks.get(accountId);
-                    if(lock.writeLock().getHoldCount() == 0){
-                        mapOfLocks.remove(accountId);
-                    }
-            });
+    private ReentrantReadWriteLock getLockTobeAcquired(Long accountId) {
+        // Account level locking for read , write and update operation. Stripe table is fixed size, nothing to clean up.
+        return lockStripes.lockFor(accountId);
+    }
 
-        }finally {
-            if(logger.isInfoEnabled()) {
-                logger.info(MessageFormat.format("Unused lock clean state , current size {1} max allowed size : {0}", MAX_ALLOWED_IN_MEMORY_LOCKS, mapOfLocks.size()));
-            }
-            lockCleanUpInProgress = false;
-        }
+    protected boolean isAccountExist(Long accountId) throws SQLException {
+        return accountService.get(accountId) != null ? Boolean.TRUE : Boolean.FALSE ;
     }
 
 
+    public void setHotAccountIds(Set<Long> hotAccountIds) {
+        this.hotAccountIds = hotAccountIds;
+    }
 
-    private ReentrantReadWriteLock getLockTobeAcquired(Long accountId) throws InterruptedException {
-        // Like stop the world scenario, Force all incoming threads accessing locks to sleep, so that clean up can be performed efficiently.
-        // Sleep will be executed. Only latency will be seen, will NOT hung application, as cleanup will be very fast.
-        while(lockCleanUpInProgress){
-            try{
-                if(logger.isInfoEnabled()) {
-                    logger.info(MessageFormat.format("{0} is going to sleep to help clean up of locks.", Thread.currentThread().getName()));
-                }
-                Thread.sleep(100);
-            }catch(InterruptedException e) {
-                logger.error(MessageFormat.format( " {0} is interrupted while sleeping.",Thread.currentThread().getName()));
-                throw e;
-            }
-        }
+    public void setLockTimeoutMillis(long lockTimeoutMillis) {
+        this.lockTimeoutMillis = lockTimeoutMillis;
+    }
 
-        if(mapOfLocks.size() > MAX_ALLOWED_IN_MEMORY_LOCKS){
-            synchronized (mapOfLocks){
-                if(mapOfLocks.size() > MAX_ALLOWED_IN_MEMORY_LOCKS){
-                    cleanUpUnusedLocks();
-                }
-            }
-        }
+    public void setMetricsRegistry(MetricsRegistry registry) {
+        this.metrics = new AccountHandlerMetrics(registry);
+        registry.gauge("bank_lock_stripes", "Account lock stripes, fixed at start up so there is no lock map to clean up", lockStripes::getStripeCount);
+    }
 
-        // Compute if lock for particular account is missing, else return existing lock.
-        // This will help in account level locking for read , write and update operation.
-        return mapOfLocks.computeIfAbsent(accountId, lock -> new ReentrantReadWriteLock());
+    public void setTransactionLog(TransactionLog transactionLog) {
+        this.transactionLog = transactionLog;
+    }
 
+    public AccountHandlerMetrics getMetrics() {
+        return metrics;
     }
 
-    private boolean isAccountExist(Long accountId) throws SQLException {
-        return accountService.get(accountId) != null ? Boolean.TRUE : Boolean.FALSE ;
+    protected AccountService getAccountService() {
+        return accountService;
+    }
+
+    protected int getBatchGroupSize() {
+        return batchGroupSize;
     }
 
+    public void setBatchGroupSize(int batchGroupSize) {
+        if(batchGroupSize < 1){
+            throw new IllegalArgumentException("Batch group size should be at least one.");
+        }
+        this.batchGroupSize = batchGroupSize;
+    }
 
     public void setAccountService(AccountService accountService) {
         this.accountService = accountService;
@@ -0,0 +1,48 @@
+package com.sat.revolut.handlers;
+
+import com.sat.revolut.metrics.Counter;
+import com.sat.revolut.metrics.LatencyHistogram;
+import com.sat.revolut.metrics.MetricsRegistry;
+import com.sat.revolut.metrics.OperationMetrics;
+
+// Latency and failures of every public AccountHandler operation, time spent waiting for account locks and the number
+// of lock timeouts (RetriesExceededException).
+public class AccountHandlerMetrics {
+
+    static final String PREFIX = "bank_handler";
+    static final String LABEL = "method";
+
+    final OperationMetrics transferAmount;
+    final OperationMetrics transferBatch;
+    final OperationMetrics deposit;
+    final OperationMetrics withDraw;
+    final OperationMetrics getAccount;
+    final OperationMetrics getAccounts;
+    final OperationMetrics createAccount;
+    final LatencyHistogram lockWait;
+    final Counter lockTimeouts;
+
+    public AccountHandlerMetrics(MetricsRegistry registry) {
+        transferAmount = registry.operation(PREFIX, "account handler calls", LABEL, "transferAmount");
+        transferBatch = registry.operation(PREFIX, "account handler calls", LABEL, "transferBatch");
+        deposit = registry.operation(PREFIX, "account handler calls", LABEL, "deposit");
+        withDraw = registry.operation(PREFIX, "account handler calls", LABEL, "withDraw");
+        getAccount = registry.operation(PREFIX, "account handler calls", LABEL, "getAccount");
+        getAccounts = registry.operation(PREFIX, "account handler calls", LABEL, "getAccounts");
+        createAccount = registry.operation(PREFIX, "account handler calls", LABEL, "createAccount");
+        lockWait = registry.histogram("bank_lock_wait_seconds", "Time spent waiting for account locks");
+        lockTimeouts = registry.counter("bank_lock_timeouts_total", "Account lock acquisitions that timed out");
+    }
+
+    public OperationMetrics getTransferAmount() {
+        return transferAmount;
+    }
+
+    public LatencyHistogram getLockWait() {
+        return lockWait;
+    }
+
+    public Counter getLockTimeouts() {
+        return lockTimeouts;
+    }
+}
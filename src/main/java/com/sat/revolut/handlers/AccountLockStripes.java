@@ -0,0 +1,108 @@
+package com.sat.revolut.handlers;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Fixed table of read write locks, an account is mapped to a stripe by hashing its id.
+// Accounts sharing a stripe share the lock, memory used stays constant however many accounts are touched.
+public class AccountLockStripes {
+
+    public static final String PROPERTY_STRIPES = "accounts.lock.stripes";
+    public static final int DEFAULT_STRIPES = 1024;
+    private static final int MAX_STRIPES = 1 << 20;
+
+    private final ReentrantReadWriteLock[] locks;
+    private final int mask;
+
+    public AccountLockStripes() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public AccountLockStripes(int stripes) {
+        if (stripes < 1 || stripes > MAX_STRIPES) {
+            throw new IllegalArgumentException("Lock stripes should be between 1 and " + MAX_STRIPES);
+        }
+        // Round up to a power of two, stripe can then be picked with a mask.
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) {
+            size <<= 1;
+        }
+        locks = new ReentrantReadWriteLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        mask = size - 1;
+    }
+
+    public ReentrantReadWriteLock lockFor(long accountId) {
+        return locks[stripeIndex(accountId)];
+    }
+
+    // Locks of both accounts in ascending stripe order, taking them in this order can not deadlock.
+    // Only one lock is returned when both accounts share a stripe.
+    public ReentrantReadWriteLock[] orderedLocksFor(long firstAccountId, long secondAccountId) {
+        int firstStripe = stripeIndex(firstAccountId);
+        int secondStripe = stripeIndex(secondAccountId);
+        if (firstStripe == secondStripe) {
+            return new ReentrantReadWriteLock[]{locks[firstStripe]};
+        }
+        return new ReentrantReadWriteLock[]{locks[Math.min(firstStripe, secondStripe)], locks[Math.max(firstStripe, secondStripe)]};
+    }
+
+    // Same ordering for any number of accounts, each stripe appears once.
+    public ReentrantReadWriteLock[] orderedLocksFor(Collection<Long> accountIds) {
+        int[] stripes = new int[accountIds.size()];
+        int count = 0;
+        for (Long accountId : accountIds) {
+            stripes[count++] = stripeIndex(accountId);
+        }
+        Arrays.sort(stripes);
+
+        ReentrantReadWriteLock[] ordered = new ReentrantReadWriteLock[count];
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || stripes[i] != stripes[i - 1]) {
+                ordered[distinct++] = locks[stripes[i]];
+            }
+        }
+        return Arrays.copyOf(ordered, distinct);
+    }
+
+    // Takes the write locks in the given order, waiting up to timeoutMillis for each. On a timeout the locks already
+    // taken are released and false is returned, the caller holds either all of them or none.
+    public static boolean tryWriteLockAll(ReentrantReadWriteLock[] locks, long timeoutMillis) throws InterruptedException {
+        for (int acquired = 0; acquired < locks.length; acquired++) {
+            boolean locked = false;
+            try {
+                locked = locks[acquired].writeLock().tryLock(timeoutMillis, TimeUnit.MILLISECONDS);
+            } finally {
+                if (!locked) {
+                    unlockWrite(locks, acquired);
+                }
+            }
+            if (!locked) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Releases the write locks of the first count locks, last taken first.
+    public static void unlockWrite(ReentrantReadWriteLock[] locks, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            locks[i].writeLock().unlock();
+        }
+    }
+
+    public int stripeIndex(long accountId) {
+        // Spread sequential ids across the table.
+        long hash = accountId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    public int getStripeCount() {
+        return locks.length;
+    }
+}
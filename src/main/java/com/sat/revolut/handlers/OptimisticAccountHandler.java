@@ -0,0 +1,194 @@
+package com.sat.revolut.handlers;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.domain.TransferResult;
+import com.sat.revolut.domain.TransferStatus;
+import com.sat.revolut.exception.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Lock free engine for several instances sharing one database. Nothing is serialized in the JVM :
+// deposits and withdrawals read balance and version, then write with a compare and set on the version and start
+// over with a jittered exponential back-off when another writer got in between. Transfers and batches rely on the
+// conditional debit of the DAO, which the database applies atomically with its credit.
+// Needs an AccountDAO keeping versions, i.e. the JDBC one, and no cache in front of it.
+public class OptimisticAccountHandler extends AccountHandler {
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public static final String PROPERTY_MAX_ATTEMPTS = "accounts.optimistic.maxAttempts";
+    public static final int DEFAULT_MAX_ATTEMPTS = 16;
+    public static final String PROPERTY_BACKOFF_MICROS = "accounts.optimistic.backoffMicros";
+    public static final long DEFAULT_BACKOFF_MICROS = 50;
+    static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final int maxAttempts;
+    private final long backoffNanos;
+    private final LongAdder conflictCount = new LongAdder();
+
+    public OptimisticAccountHandler() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BACKOFF_MICROS);
+    }
+
+    public OptimisticAccountHandler(int maxAttempts, long backoffMicros) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is needed.");
+        }
+        this.maxAttempts = maxAttempts;
+        this.backoffNanos = TimeUnit.MICROSECONDS.toNanos(backoffMicros);
+    }
+
+    @Override
+    protected String doTransferAmount(long transactionId, Money amount, Long fromAccountId, Long toAccountId) throws NoAccountFoundException, InvalidAccountNumberException, SQLException, InvalidAmountException, RetriesExceededException, InterruptedException {
+        if (fromAccountId.equals(toAccountId)) {
+            throw new InvalidAccountNumberException("From and To account ID same");
+        }
+
+        validateInputAmount(amount);
+
+        if (!isAccountExist(fromAccountId) || !isAccountExist(toAccountId)) {
+            throw new NoAccountFoundException("One of Account does not exist");
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Initiating transaction : {}", transactionId);
+        }
+
+        if (!getAccountService().transfer(fromAccountId, toAccountId, amount)) {
+            throw new LowBalanceException("Transaction Id : " + transactionId + " failed with error : " + "Low balance in account " + fromAccountId);
+        }
+        return "Transaction : " + transactionId + " is completed";
+    }
+
+    // Valid transfers are applied in groups of batchGroupSize, each one database transaction.
+    @Override
+    protected List<TransferResult> doTransferBatch(List<Transfer> transfers) throws SQLException, InterruptedException {
+        TransferResult[] results = new TransferResult[transfers.size()];
+        List<Transfer> group = new ArrayList<>();
+        List<Integer> groupIndexes = new ArrayList<>();
+        for (int i = 0; i < transfers.size(); i++) {
+            TransferResult invalid = validateTransfer(transfers.get(i));
+            if (invalid != null) {
+                results[i] = invalid;
+                continue;
+            }
+            group.add(transfers.get(i));
+            groupIndexes.add(i);
+            if (group.size() == getBatchGroupSize()) {
+                applyTransferGroup(group, groupIndexes, results);
+                group.clear();
+                groupIndexes.clear();
+            }
+        }
+        if (!group.isEmpty()) {
+            applyTransferGroup(group, groupIndexes, results);
+        }
+        return Arrays.asList(results);
+    }
+
+    private void applyTransferGroup(List<Transfer> group, List<Integer> groupIndexes, TransferResult[] results) {
+        try {
+            boolean[] transferred = getAccountService().transferBatch(group);
+            for (int i = 0; i < group.size(); i++) {
+                Transfer transfer = group.get(i);
+                results[groupIndexes.get(i)] = transferred[i]
+                        ? new TransferResult(transfer, TransferStatus.COMPLETED, null)
+                        : new TransferResult(transfer, TransferStatus.LOW_BALANCE, "Low balance in account " + transfer.getFromAccountId());
+            }
+        } catch (SQLException e) {
+            logger.error("Batch transfer group of " + group.size() + " rolled back : " + e.getMessage());
+            for (int i = 0; i < group.size(); i++) {
+                results[groupIndexes.get(i)] = new TransferResult(group.get(i), TransferStatus.FAILED, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    protected void doDeposit(Money amount, Long accountId) throws InvalidAmountException, NoAccountFoundException, SQLException, InterruptedException {
+        validateInputAmount(amount);
+        for (int attempt = 0; ; attempt++) {
+            Account account = getAccountService().get(accountId);
+            if (account == null) {
+                throw new NoAccountFoundException("Account does not exist");
+            }
+            if (getAccountService().compareAndSetBalance(accountId, account.getVersion(), account.getTotalBalance().plus(amount))) {
+                return;
+            }
+            backOff(accountId, attempt);
+        }
+    }
+
+    @Override
+    protected void doWithDraw(long transactionId, Money amount, Long accountId) throws InvalidAmountException, NoAccountFoundException, SQLException, InterruptedException {
+        validateInputAmount(amount);
+        for (int attempt = 0; ; attempt++) {
+            Account account = getAccountService().get(accountId);
+            if (account == null) {
+                throw new NoAccountFoundException("Account does not exist");
+            }
+            if (account.getTotalBalance().isLessThan(amount)) {
+                throw new LowBalanceException("Transaction : " + transactionId + " failed. Low balance in account " + accountId);
+            }
+            if (getAccountService().compareAndSetBalance(accountId, account.getVersion(), account.getTotalBalance().minus(amount))) {
+                return;
+            }
+            backOff(accountId, attempt);
+        }
+    }
+
+    @Override
+    protected Account doGetAccount(Long accountId) throws SQLException, NoAccountFoundException, InterruptedException {
+        Account account = getAccountService().get(accountId);
+        if (account == null) {
+            throw new NoAccountFoundException("No account with exist id : " + accountId);
+        }
+        return account;
+    }
+
+    // The primary key decides between instances creating the same account.
+    @Override
+    protected void doCreateAccount(Long accountId, Money initialBalance) throws InvalidAmountException, InvalidAccountNumberException, AccountAlreadyExistException, SQLException, InterruptedException {
+        validateInputAmount(initialBalance);
+
+        if (accountId <= 0) {
+            throw new InvalidAccountNumberException("Account number is invalid");
+        }
+
+        try {
+            getAccountService().create(accountId, initialBalance);
+        } catch (SQLException e) {
+            if (isAccountExist(accountId)) {
+                throw new AccountAlreadyExistException("Account already exist");
+            }
+            throw e;
+        }
+    }
+
+    // Called after the attempt-th conflict. Waits a random time up to backoff * 2^attempt, capped.
+    private void backOff(Long accountId, int attempt) throws SQLException, InterruptedException {
+        conflictCount.increment();
+        if (attempt + 1 >= maxAttempts) {
+            throw new SQLTransientException("Account " + accountId + " kept changing, gave up after " + maxAttempts + " attempts");
+        }
+        long ceiling = Math.min(MAX_BACKOFF_NANOS, backoffNanos << Math.min(attempt, 20));
+        LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    public long getConflictCount() {
+        return conflictCount.sum();
+    }
+}
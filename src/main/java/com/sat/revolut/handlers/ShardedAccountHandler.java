@@ -0,0 +1,335 @@
+package com.sat.revolut.handlers;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.domain.TransferResult;
+import com.sat.revolut.domain.TransferStatus;
+import com.sat.revolut.exception.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+// Single writer execution engine. Accounts are partitioned across shards by id, every write to an account runs on
+// the one thread owning its shard, so balances are updated without any lock.
+// Transfers across shards debit on the owner of the from account first, then credit on the owner of the to account.
+// An operation is waited for until it ran once it is queued, an interrupt is only passed on afterwards, so a caller
+// never leaves with a debit applied behind its back.
+public class ShardedAccountHandler extends AccountHandler {
+    private Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    public static final String PROPERTY_SHARDS = "accounts.engine.shards";
+    public static final String PROPERTY_QUEUE_CAPACITY = "accounts.engine.queueCapacity";
+    public static final int DEFAULT_QUEUE_CAPACITY = 10000;
+    private static final long OFFER_RETRY_MILLIS = 10;
+    private static final String SHUT_DOWN_MESSAGE = "Account shard is shut down";
+
+    private final Shard[] shards;
+
+    public ShardedAccountHandler() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public ShardedAccountHandler(int shardCount, int queueCapacity) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count should be at least one.");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+            shards[i].start();
+        }
+    }
+
+    @Override
+    protected String doTransferAmount(long transactionId, Money amount, Long fromAccountId, Long toAccountId) throws NoAccountFoundException, InvalidAccountNumberException, SQLException, InvalidAmountException, RetriesExceededException, InterruptedException {
+        if (fromAccountId.equals(toAccountId)) {
+            throw new InvalidAccountNumberException("From and To account ID same");
+        }
+
+        validateInputAmount(amount);
+
+        if (!isAccountExist(fromAccountId) || !isAccountExist(toAccountId)) {
+            throw new NoAccountFoundException("One of Account does not exist");
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Initiating transaction : {}", transactionId);
+        }
+
+        Shard fromShard = shardFor(fromAccountId);
+        Shard toShard = shardFor(toAccountId);
+        if (fromShard == toShard) {
+            // Both accounts owned by the same thread, a single transaction moves the amount.
+            if (!fromShard.execute(() -> getAccountService().transfer(fromAccountId, toAccountId, amount))) {
+                throw new LowBalanceException("Transaction Id : " + transactionId + " failed with error : " + "Low balance in account " + fromAccountId);
+            }
+            return "Transaction : " + transactionId + " is completed";
+        }
+
+        // Phase one, debit. Nothing has changed yet when it fails.
+        if (!fromShard.execute(() -> debit(fromAccountId, amount))) {
+            throw new LowBalanceException("Transaction Id : " + transactionId + " failed with error : " + "Low balance in account " + fromAccountId);
+        }
+
+        // Phase two, credit. Amount is handed back to the from account if the credit can not be applied.
+        // Past the debit nothing is interruptible, an interrupted caller finishes the transfer first.
+        try {
+            toShard.executeUninterruptibly(() -> credit(toAccountId, amount));
+        } catch (JournalFailedException e) {
+            // The credit is applied, only its journal record is missing. Handing the amount back would create money.
+            throw e;
+        } catch (SQLException | RuntimeException | Error e) {
+            logger.error("Transaction {} credit failed, reverting debit : {}", transactionId, e.getMessage());
+            try {
+                fromShard.executeUninterruptibly(() -> credit(fromAccountId, amount));
+            } catch (SQLException | RuntimeException revertFailure) {
+                // Nothing left to try, the caller still gets the credit failure and the amount is logged for repair.
+                e.addSuppressed(revertFailure);
+                logger.error("Transaction {} lost {} : debited from account {}, neither credited to account {} nor reverted : {}",
+                        transactionId, amount, fromAccountId, toAccountId, revertFailure.getMessage());
+            }
+            throw e;
+        }
+        return "Transaction : " + transactionId + " is completed";
+    }
+
+    // Every transfer goes through its owning shards like a single transfer, there are no locks to group them under.
+    // The batch as a whole is timed and logged by transferBatch, its items are not counted again as single transfers.
+    @Override
+    protected List<TransferResult> doTransferBatch(List<Transfer> transfers) throws SQLException, InterruptedException {
+        List<TransferResult> results = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            TransferResult invalid = validateTransfer(transfer);
+            if (invalid != null) {
+                results.add(invalid);
+                continue;
+            }
+            try {
+                doTransferAmount(newTransactionId(), transfer.getAmount(), transfer.getFromAccountId(), transfer.getToAccountId());
+                results.add(new TransferResult(transfer, TransferStatus.COMPLETED, null));
+            } catch (LowBalanceException e) {
+                results.add(new TransferResult(transfer, TransferStatus.LOW_BALANCE, e.getMessage()));
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                results.add(new TransferResult(transfer, TransferStatus.FAILED, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    protected void doDeposit(Money amount, Long accountId) throws InvalidAmountException, NoAccountFoundException, SQLException, InterruptedException {
+        validateInputAmount(amount);
+        if (!isAccountExist(accountId)) {
+            throw new NoAccountFoundException("Account does not exist");
+        }
+        shardFor(accountId).execute(() -> credit(accountId, amount));
+    }
+
+    @Override
+    protected void doWithDraw(long transactionId, Money amount, Long accountId) throws InvalidAmountException, NoAccountFoundException, SQLException, InterruptedException {
+        validateInputAmount(amount);
+        if (!isAccountExist(accountId)) {
+            throw new NoAccountFoundException("Account does not exist");
+        }
+        if (!shardFor(accountId).execute(() -> debit(accountId, amount))) {
+            throw new LowBalanceException("Withdraw from account " + accountId + " failed. Low balance in account " + accountId);
+        }
+    }
+
+    @Override
+    protected Account doGetAccount(Long accountId) throws SQLException, NoAccountFoundException, InterruptedException {
+        // A single row read never sees a half applied write, no need to go through the owning shard.
+        Account account = getAccountService().get(accountId);
+        if (account == null) {
+            throw new NoAccountFoundException("No account with exist id : " + accountId);
+        }
+        return account;
+    }
+
+    @Override
+    protected void doCreateAccount(Long accountId, Money initialBalance) throws InvalidAmountException, InvalidAccountNumberException, AccountAlreadyExistException, SQLException, InterruptedException {
+        validateInputAmount(initialBalance);
+
+        if (accountId <= 0) {
+            throw new InvalidAccountNumberException("Account number is invalid");
+        }
+
+        boolean created = shardFor(accountId).execute(() -> {
+            if (isAccountExist(accountId)) {
+                return false;
+            }
+            getAccountService().create(accountId, initialBalance);
+            return true;
+        });
+        if (!created) {
+            throw new AccountAlreadyExistException("Account already exist");
+        }
+    }
+
+    // Operations still queued fail with an SQLException, later ones are rejected with one.
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.stopped = true;
+            shard.interrupt();
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int getQueuedOperations() {
+        int queued = 0;
+        for (Shard shard : shards) {
+            queued += shard.queue.size();
+        }
+        return queued;
+    }
+
+    // Only called on the thread owning the account.
+    private boolean debit(Long accountId, Money amount) throws SQLException {
+        Money balance = getAccountService().get(accountId).getTotalBalance();
+        if (balance.isLessThan(amount)) {
+            return false;
+        }
+        getAccountService().update(accountId, balance.minus(amount));
+        return true;
+    }
+
+    // Only called on the thread owning the account.
+    private boolean credit(Long accountId, Money amount) throws SQLException {
+        Money balance = getAccountService().get(accountId).getTotalBalance();
+        getAccountService().update(accountId, balance.plus(amount));
+        return true;
+    }
+
+    private Shard shardFor(Long accountId) {
+        return shards[(int) Math.floorMod(accountId, (long) shards.length)];
+    }
+
+    private interface ShardOperation<T> {
+        T apply() throws SQLException;
+    }
+
+    private static final class Shard extends Thread {
+        private final BlockingQueue<ShardTask<?>> queue;
+        // Set by shutdown(), and by the shard itself once it stopped taking operations.
+        private volatile boolean stopped;
+
+        Shard(int index, int queueCapacity) {
+            super("account-shard-" + index);
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            setDaemon(true);
+        }
+
+        // Runs the operation on this shard's thread and waits for it. Callers block while the queue is full, an
+        // interrupt only gets them out until the operation is queued.
+        <T> T execute(ShardOperation<T> operation) throws SQLException, InterruptedException {
+            ShardTask<T> task = new ShardTask<>(operation);
+            checkRunning(false);
+            while (!queue.offer(task, OFFER_RETRY_MILLIS, TimeUnit.MILLISECONDS)) {
+                checkRunning(false);
+            }
+            return await(task, false);
+        }
+
+        // Same, an interrupt never gets the caller out. For operations that have to follow one already applied.
+        <T> T executeUninterruptibly(ShardOperation<T> operation) throws SQLException {
+            ShardTask<T> task = new ShardTask<>(operation);
+            boolean interrupted = false;
+            while (true) {
+                checkRunning(interrupted);
+                try {
+                    if (queue.offer(task, OFFER_RETRY_MILLIS, TimeUnit.MILLISECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            return await(task, interrupted);
+        }
+
+        private void checkRunning(boolean interrupted) throws SQLException {
+            if (stopped) {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new SQLException(SHUT_DOWN_MESSAGE);
+            }
+        }
+
+        private <T> T await(ShardTask<T> task, boolean interrupted) throws SQLException {
+            try {
+                // A shard stopping without seeing the task left it queued, nobody else would fail it.
+                if (stopped && queue.remove(task)) {
+                    throw new SQLException(SHUT_DOWN_MESSAGE);
+                }
+                while (true) {
+                    try {
+                        return task.get();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new SQLException(cause);
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    queue.take().run();
+                }
+            } catch (InterruptedException e) {
+                // Shutting down.
+            } finally {
+                // Set before draining : a caller that does not see it queued its task before the drain below.
+                stopped = true;
+                SQLException shutdown = new SQLException(SHUT_DOWN_MESSAGE);
+                ShardTask<?> task;
+                while ((task = queue.poll()) != null) {
+                    task.fail(shutdown);
+                }
+            }
+        }
+    }
+
+    private static final class ShardTask<T> extends FutureTask<T> {
+        ShardTask(ShardOperation<T> operation) {
+            super((Callable<T>) operation::apply);
+        }
+
+        void fail(Throwable failure) {
+            setException(failure);
+        }
+    }
+}
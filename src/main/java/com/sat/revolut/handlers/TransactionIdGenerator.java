@@ -0,0 +1,25 @@
+package com.sat.revolut.handlers;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Numeric transaction ids, one atomic increment per id and no string formatting.
+// The sequence starts from the start up time shifted left by 16 bits, so ids keep growing across restarts as long as
+// fewer than 65536 ids per millisecond are handed out on average.
+public class TransactionIdGenerator {
+
+    static final int SEQUENCE_BITS = 16;
+
+    private final AtomicLong sequence;
+
+    public TransactionIdGenerator() {
+        this(System.currentTimeMillis());
+    }
+
+    TransactionIdGenerator(long startMillis) {
+        sequence = new AtomicLong(startMillis << SEQUENCE_BITS);
+    }
+
+    public long next() {
+        return sequence.incrementAndGet();
+    }
+}
@@ -0,0 +1,7 @@
+package com.sat.revolut.journal;
+
+// Receives account balances in minor units, e.g. while a snapshot is written.
+@FunctionalInterface
+public interface BalanceConsumer {
+    void accept(long accountId, long balance);
+}
@@ -0,0 +1,385 @@
+package com.sat.revolut.journal;
+
+import com.sat.revolut.domain.TransactionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append only journal made of fixed size segment files, journal-<first sequence>.seg, written through a memory mapping.
+// Every record is a CRC32 followed by a fixed size body, a record failing its checksum or out of sequence marks the
+// end of the journal, so a write torn by a crash is simply ignored on the next start.
+// When an append returns depends on the fsync policy :
+//   PER_OP   every append forces the segment before returning.
+//   GROUP    appenders wait for a force covering their record, one of them forces for all that are waiting.
+//   INTERVAL appends return at once, a background thread forces every fsyncIntervalMillis.
+public class Journal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(Journal.class);
+
+    public static final String PROPERTY_DIR = "journal.dir";
+    public static final String PROPERTY_FSYNC = "journal.fsync";
+    public static final String PROPERTY_FSYNC_INTERVAL_MILLIS = "journal.fsyncIntervalMillis";
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 10;
+    public static final String PROPERTY_SEGMENT_BYTES = "journal.segmentBytes";
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    static final String SEGMENT_PREFIX = "journal-";
+    static final String SEGMENT_SUFFIX = ".seg";
+    // sequence, type, timestamp, account, balance, counterparty, counterparty balance, amount
+    static final int BODY_SIZE = 8 + 1 + 8 + 8 + 8 + 8 + 8 + 8;
+    static final int RECORD_SIZE = 4 + BODY_SIZE;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final long SYNC_THREAD_JOIN_MILLIS = 5000;
+
+    public enum FsyncPolicy {
+        PER_OP, GROUP, INTERVAL
+    }
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+
+    // Guarded by this.
+    private Segment current;
+    private long nextSequence;
+    private final CRC32 crc = new CRC32();
+    private final ByteBuffer body = ByteBuffer.allocate(BODY_SIZE);
+    private boolean closed;
+
+    // Guarded by syncLock.
+    private final Object syncLock = new Object();
+    private long durableSequence;
+    private boolean syncInProgress;
+
+    private final Thread intervalSyncThread;
+    private volatile long syncCount;
+    private volatile int segmentCount;
+
+    private Journal(Path directory, long segmentBytes, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        if (segmentBytes < RECORD_SIZE || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size should be between " + RECORD_SIZE + " and " + Integer.MAX_VALUE + " bytes");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_SIZE;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(directory);
+
+        List<Path> segments = listSegments(directory);
+        segmentCount = segments.size();
+        if (segments.isEmpty()) {
+            nextSequence = 1;
+            current = Segment.create(segmentPath(directory, 1), this.segmentBytes);
+            segmentCount = 1;
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            current = Segment.create(last, Math.max(this.segmentBytes, Files.size(last)));
+            nextSequence = scan(current.buffer, firstSequenceOf(last), Long.MAX_VALUE, null);
+            current.position = (int) ((nextSequence - firstSequenceOf(last)) * RECORD_SIZE);
+        }
+        durableSequence = nextSequence - 1;
+
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            intervalSyncThread = new Thread(() -> syncEvery(fsyncIntervalMillis), "journal-sync");
+            intervalSyncThread.setDaemon(true);
+            intervalSyncThread.start();
+        } else {
+            intervalSyncThread = null;
+        }
+    }
+
+    public static Journal open(Path directory, long segmentBytes, FsyncPolicy fsyncPolicy, long fsyncIntervalMillis) throws IOException {
+        return new Journal(directory, segmentBytes, fsyncPolicy, fsyncIntervalMillis);
+    }
+
+    public static Journal open(Path directory) throws IOException {
+        return open(directory,
+                Long.getLong(PROPERTY_SEGMENT_BYTES, DEFAULT_SEGMENT_BYTES),
+                FsyncPolicy.valueOf(System.getProperty(PROPERTY_FSYNC, FsyncPolicy.GROUP.name()).toUpperCase()),
+                Long.getLong(PROPERTY_FSYNC_INTERVAL_MILLIS, DEFAULT_FSYNC_INTERVAL_MILLIS));
+    }
+
+    // Returns the record's sequence number once the record is as durable as the fsync policy promises.
+    public long append(TransactionType type, long accountId, long balance, long counterpartyId, long counterpartyBalance, long amount) throws IOException {
+        long sequence;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("Journal is closed");
+            }
+            if (current.position + RECORD_SIZE > segmentBytes) {
+                roll();
+            }
+            sequence = nextSequence;
+            body.clear();
+            body.putLong(sequence).put((byte) type.ordinal()).putLong(System.currentTimeMillis())
+                    .putLong(accountId).putLong(balance).putLong(counterpartyId).putLong(counterpartyBalance).putLong(amount);
+            crc.reset();
+            crc.update(body.array(), 0, BODY_SIZE);
+
+            MappedByteBuffer buffer = current.buffer;
+            buffer.position(current.position);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(body.array(), 0, BODY_SIZE);
+            current.position += RECORD_SIZE;
+            nextSequence++;
+
+            if (fsyncPolicy == FsyncPolicy.PER_OP) {
+                buffer.force();
+                syncCount++;
+                synchronized (syncLock) {
+                    durableSequence = sequence;
+                }
+                return sequence;
+            }
+        }
+        if (fsyncPolicy == FsyncPolicy.GROUP) {
+            awaitDurable(sequence);
+        }
+        return sequence;
+    }
+
+    private void awaitDurable(long sequence) throws IOException {
+        synchronized (syncLock) {
+            while (durableSequence < sequence && syncInProgress) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for the journal to be synced", e);
+                }
+            }
+            if (durableSequence >= sequence) {
+                return;
+            }
+            syncInProgress = true;
+        }
+        // This thread leads, the force covers everything appended so far.
+        sync();
+    }
+
+    // Forces everything appended so far. Callers other than the group leader take the sync slot first.
+    private void sync() throws IOException {
+        long target;
+        MappedByteBuffer buffer;
+        synchronized (this) {
+            target = nextSequence - 1;
+            buffer = current.buffer;
+        }
+        boolean synced = false;
+        try {
+            buffer.force();
+            syncCount++;
+            synced = true;
+        } finally {
+            synchronized (syncLock) {
+                if (synced && target > durableSequence) {
+                    durableSequence = target;
+                }
+                syncInProgress = false;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    private void syncEvery(long intervalMillis) {
+        while (true) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                if (claimSync()) {
+                    sync();
+                }
+            } catch (IOException e) {
+                logger.error("Journal sync failed : " + e.getMessage());
+            }
+        }
+    }
+
+    private boolean claimSync() {
+        synchronized (this) {
+            synchronized (syncLock) {
+                if (syncInProgress || durableSequence >= nextSequence - 1) {
+                    return false;
+                }
+                syncInProgress = true;
+                return true;
+            }
+        }
+    }
+
+    // Called holding this. Records of the full segment are forced before the next one is started, so whatever
+    // a later sync covers, all earlier segments are durable too.
+    private void roll() throws IOException {
+        current.buffer.force();
+        current.close();
+        current = Segment.create(segmentPath(directory, nextSequence), segmentBytes);
+        segmentCount++;
+    }
+
+    // Replays records with a sequence greater than afterSequence, in order. Meant for start up, before appends.
+    public void replay(long afterSequence, Consumer<JournalRecord> consumer) throws IOException {
+        List<Path> segments = listSegments(directory);
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= afterSequence + 1) {
+                // Every record of this segment is covered already.
+                continue;
+            }
+            Path path = segments.get(i);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                scan(buffer, firstSequenceOf(path), afterSequence, consumer);
+            }
+        }
+    }
+
+    // Deletes segments holding only records up to sequence, e.g. once a snapshot covers them.
+    // The segment being written is never deleted. Returns the number of segments deleted.
+    public int deleteSegmentsThrough(long sequence) throws IOException {
+        List<Path> segments = listSegments(directory);
+        int deleted = 0;
+        for (int i = 0; i + 1 < segments.size() && firstSequenceOf(segments.get(i + 1)) <= sequence + 1; i++) {
+            Files.delete(segments.get(i));
+            deleted++;
+        }
+        synchronized (this) {
+            segmentCount -= deleted;
+        }
+        return deleted;
+    }
+
+    // Reads valid records from the start of a segment, handing those after afterSequence to the consumer.
+    // Returns the sequence following the last valid record.
+    private static long scan(ByteBuffer buffer, long firstSequence, long afterSequence, Consumer<JournalRecord> consumer) {
+        CRC32 checksum = new CRC32();
+        byte[] record = new byte[BODY_SIZE];
+        long expected = firstSequence;
+        int position = 0;
+        while (position + RECORD_SIZE <= buffer.limit()) {
+            buffer.position(position);
+            int storedCrc = buffer.getInt();
+            buffer.get(record);
+            checksum.reset();
+            checksum.update(record, 0, BODY_SIZE);
+            ByteBuffer fields = ByteBuffer.wrap(record);
+            if ((int) checksum.getValue() != storedCrc || fields.getLong() != expected) {
+                break;
+            }
+            int type = fields.get();
+            if (type < 0 || type >= TYPES.length) {
+                break;
+            }
+            if (consumer != null && expected > afterSequence) {
+                consumer.accept(new JournalRecord(expected, TYPES[type], fields.getLong(), fields.getLong(), fields.getLong(),
+                        fields.getLong(), fields.getLong(), fields.getLong()));
+            }
+            expected++;
+            position += RECORD_SIZE;
+        }
+        return expected;
+    }
+
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        // First sequences are zero padded, name order is sequence order.
+        Collections.sort(segments);
+        return segments;
+    }
+
+    static Path segmentPath(Path directory, long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    public synchronized long getLastSequence() {
+        return nextSequence - 1;
+    }
+
+    public long getDurableSequence() {
+        synchronized (syncLock) {
+            return durableSequence;
+        }
+    }
+
+    public long getSyncCount() {
+        return syncCount;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (intervalSyncThread != null) {
+            intervalSyncThread.interrupt();
+            // A sync already running finishes before the segment it forces is closed.
+            try {
+                intervalSyncThread.join(SYNC_THREAD_JOIN_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (intervalSyncThread.isAlive()) {
+                logger.warn("Journal sync thread still running after {} ms, closing anyway", SYNC_THREAD_JOIN_MILLIS);
+            }
+        }
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            current.buffer.force();
+            current.close();
+        }
+    }
+
+    private static final class Segment {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int position;
+
+        private Segment(FileChannel channel, MappedByteBuffer buffer) {
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path path, long size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            return new Segment(channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sat.revolut.journal;
+
+import com.sat.revolut.domain.TransactionType;
+
+// One journaled operation. Balances are the account balances after the operation, in minor units, so replaying a
+// record twice or on top of a newer state of another account gives the same result.
+// Transfers carry both accounts, every other type only the first one.
+public final class JournalRecord {
+
+    private final long sequence;
+    private final TransactionType type;
+    private final long timestampMillis;
+    private final long accountId;
+    private final long balance;
+    private final long counterpartyId;
+    private final long counterpartyBalance;
+    private final long amount;
+
+    public JournalRecord(long sequence, TransactionType type, long timestampMillis, long accountId, long balance,
+                         long counterpartyId, long counterpartyBalance, long amount) {
+        this.sequence = sequence;
+        this.type = type;
+        this.timestampMillis = timestampMillis;
+        this.accountId = accountId;
+        this.balance = balance;
+        this.counterpartyId = counterpartyId;
+        this.counterpartyBalance = counterpartyBalance;
+        this.amount = amount;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public TransactionType getType() {
+        return type;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public long getBalance() {
+        return balance;
+    }
+
+    public long getCounterpartyId() {
+        return counterpartyId;
+    }
+
+    public long getCounterpartyBalance() {
+        return counterpartyBalance;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,206 @@
+package com.sat.revolut.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Compact binary snapshots of all balances, snapshot-<journal sequence>.snap :
+//   header  magic, version, journal sequence, account count, CRC32 of the entries
+//   entries (account id, balance in minor units) pairs of longs
+// A snapshot is written to a temporary file and renamed once forced, so a snapshot file is always complete.
+// Loading maps the file and hands the entries over as a LongBuffer view, nothing is copied or decoded on the way.
+// The journal sequence is taken before the balances are read, replaying the journal after it on top of the
+// snapshot restores the exact state since journaled balances are absolute.
+public class SnapshotStore {
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+    public static final String PROPERTY_DIR = "snapshot.dir";
+    public static final String PROPERTY_INTERVAL_SECONDS = "snapshot.intervalSeconds";
+    public static final long DEFAULT_INTERVAL_SECONDS = 300;
+    public static final String PROPERTY_RETAIN = "snapshot.retain";
+    public static final int DEFAULT_RETAIN = 2;
+
+    static final String SNAPSHOT_PREFIX = "snapshot-";
+    static final String SNAPSHOT_SUFFIX = ".snap";
+    static final int MAGIC = 0x42414E4B;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8;
+    static final int ENTRY_SIZE = 16;
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    public interface BalanceSource {
+        long forEachBalance(BalanceConsumer consumer) throws SQLException;
+    }
+
+    private final Path directory;
+    private final int retain;
+
+    public SnapshotStore(Path directory, int retain) throws IOException {
+        if (retain < 1) {
+            throw new IllegalArgumentException("At least one snapshot should be retained");
+        }
+        this.directory = directory;
+        this.retain = retain;
+        Files.createDirectories(directory);
+    }
+
+    // Writes the balances of source as the snapshot of journalSequence and deletes snapshots beyond the retained ones.
+    // Returns the number of accounts written.
+    public long write(long journalSequence, BalanceSource source) throws IOException, SQLException {
+        Path target = snapshotPath(journalSequence);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        long count;
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            try {
+                count = source.forEachBalance((accountId, balance) -> {
+                    if (buffer.remaining() < ENTRY_SIZE) {
+                        flush(channel, buffer, crc);
+                    }
+                    buffer.putLong(accountId).putLong(balance);
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            flush(channel, buffer, crc);
+
+            buffer.clear();
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(journalSequence).putLong(count).putLong(crc.getValue()).flip();
+            channel.write(buffer, 0);
+            channel.force(true);
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        prune();
+        return count;
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer, CRC32 crc) {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    // Latest snapshot that passes its checks, null when there is none. Corrupt snapshots are skipped.
+    public Snapshot loadLatest() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Snapshot snapshot = load(snapshots.get(i));
+            if (snapshot != null) {
+                return snapshot;
+            }
+            logger.warn("Skipping unreadable snapshot {}", snapshots.get(i));
+        }
+        return null;
+    }
+
+    static Snapshot load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long journalSequence = buffer.getLong();
+            long count = buffer.getLong();
+            long expectedCrc = buffer.getLong();
+            if (channel.size() != HEADER_SIZE + count * ENTRY_SIZE) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if (crc.getValue() != expectedCrc) {
+                return null;
+            }
+            return new Snapshot(journalSequence, count, buffer.slice().asLongBuffer());
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (int i = 0; i < snapshots.size() - retain; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+    }
+
+    // Journal sequence of the oldest retained snapshot, the journal is needed from there on. -1 without snapshots.
+    public long getOldestJournalSequence() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        return snapshots.isEmpty() ? -1 : journalSequenceOf(snapshots.get(0));
+    }
+
+    static long journalSequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    List<Path> listSnapshots() throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path path : stream) {
+                snapshots.add(path);
+            }
+        }
+        Collections.sort(snapshots);
+        return snapshots;
+    }
+
+    Path snapshotPath(long journalSequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, journalSequence, SNAPSHOT_SUFFIX));
+    }
+
+    public static final class Snapshot {
+        private final long journalSequence;
+        private final long count;
+        private final LongBuffer entries;
+
+        Snapshot(long journalSequence, long count, LongBuffer entries) {
+            this.journalSequence = journalSequence;
+            this.count = count;
+            this.entries = entries;
+        }
+
+        public long getJournalSequence() {
+            return journalSequence;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        // (account id, balance) pairs, read straight from the mapped file.
+        public LongBuffer getEntries() {
+            return entries.duplicate();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.sat.revolut.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Takes snapshots of the balances behind a journal, on demand or periodically on a background thread, while
+// traffic goes on. Journal segments only needed by snapshots older than the retained ones are deleted afterwards.
+public class Snapshotter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(Snapshotter.class);
+
+    private final Journal journal;
+    private final SnapshotStore store;
+    private final SnapshotStore.BalanceSource source;
+    private ScheduledExecutorService scheduler;
+
+    private volatile long snapshotCount;
+    private volatile long lastSnapshotSequence;
+    private volatile long lastSnapshotAccounts;
+    private volatile long lastSnapshotNanos;
+
+    public Snapshotter(Journal journal, SnapshotStore store, SnapshotStore.BalanceSource source) {
+        this.journal = journal;
+        this.store = store;
+        this.source = source;
+    }
+
+    // Returns the journal sequence the snapshot covers. Every record up to it has been applied to the source
+    // already, since records are only journaled once their write is done.
+    public synchronized long snapshot() throws IOException, SQLException {
+        long start = System.nanoTime();
+        long sequence = journal.getLastSequence();
+        long accounts = store.write(sequence, source);
+        journal.deleteSegmentsThrough(store.getOldestJournalSequence());
+
+        lastSnapshotNanos = System.nanoTime() - start;
+        lastSnapshotSequence = sequence;
+        lastSnapshotAccounts = accounts;
+        snapshotCount++;
+        logger.info("Snapshot of {} accounts at journal sequence {} written in {} ms", accounts, sequence,
+                TimeUnit.NANOSECONDS.toMillis(lastSnapshotNanos));
+        return sequence;
+    }
+
+    public synchronized void start(long intervalSeconds) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Snapshots are already scheduled");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            } catch (IOException | SQLException | RuntimeException e) {
+                logger.error("Snapshot failed : " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    public long getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    public long getLastSnapshotSequence() {
+        return lastSnapshotSequence;
+    }
+
+    public long getLastSnapshotAccounts() {
+        return lastSnapshotAccounts;
+    }
+
+    public long getLastSnapshotNanos() {
+        return lastSnapshotNanos;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
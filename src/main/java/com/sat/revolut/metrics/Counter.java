@@ -0,0 +1,21 @@
+package com.sat.revolut.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Monotonic counter, striped so that concurrent increments do not contend.
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,86 @@
+package com.sat.revolut.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Latency histogram with power of two bucket bounds, from 2^10 ns (about 1 microsecond) to 2^35 ns (about 34 seconds),
+// plus an overflow bucket. Recording is a bit count and a LongAdder increment, no lock and no allocation.
+// Like HdrHistogram it trades precision for a fixed footprint, values are known to within a factor of two.
+public class LatencyHistogram {
+
+    static final int MIN_EXPONENT = 10;
+    static final int MAX_EXPONENT = 35;
+    static final int BUCKET_COUNT = MAX_EXPONENT - MIN_EXPONENT + 2;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        buckets[bucketIndex(nanos)].increment();
+        sumNanos.add(Math.max(nanos, 0));
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int bucketIndex(long nanos) {
+        if (nanos <= 1) {
+            return 0;
+        }
+        // Smallest exponent with nanos <= 2^exponent.
+        int exponent = 64 - Long.numberOfLeadingZeros(nanos - 1);
+        return Math.min(Math.max(exponent - MIN_EXPONENT, 0), BUCKET_COUNT - 1);
+    }
+
+    // Upper bound of the bucket in nanoseconds, Long.MAX_VALUE for the overflow bucket.
+    static long upperBoundNanos(int index) {
+        return index == BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << (MIN_EXPONENT + index);
+    }
+
+    public long[] getBucketCounts() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    // Upper bound of the bucket holding the given percentile, 0 when nothing was recorded.
+    public long getValueAtPercentile(double percentile) {
+        long[] counts = getBucketCounts();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBoundNanos(i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
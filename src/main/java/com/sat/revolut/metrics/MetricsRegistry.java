@@ -0,0 +1,158 @@
+package com.sat.revolut.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+// Named metrics written out in the Prometheus text exposition format.
+// Registration is synchronized and meant for start up, callers keep the returned histogram or counter and record into
+// it directly, so the hot path never looks anything up. Labels are given as name, value pairs.
+public class MetricsRegistry {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final Map<String, Family> families = new LinkedHashMap<>();
+
+    public synchronized LatencyHistogram histogram(String name, String help, String... labels) {
+        return (LatencyHistogram) family(name, help, Type.HISTOGRAM).series.computeIfAbsent(labels(labels), key -> new LatencyHistogram());
+    }
+
+    public synchronized Counter counter(String name, String help, String... labels) {
+        return (Counter) family(name, help, Type.COUNTER).series.computeIfAbsent(labels(labels), key -> new Counter());
+    }
+
+    // Counter kept elsewhere, e.g. by a connection pool, read at scrape time only.
+    public synchronized void counter(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.COUNTER).series.put(labels(labels), value);
+    }
+
+    // Read at scrape time only. Registering the same name and labels again replaces the supplier.
+    public synchronized void gauge(String name, String help, DoubleSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series.put(labels(labels), value);
+    }
+
+    // Latency histogram <prefix>_duration_seconds and error counter <prefix>_errors_total, labelled with the operation.
+    public OperationMetrics operation(String prefix, String help, String labelName, String operation) {
+        return new OperationMetrics(
+                histogram(prefix + "_duration_seconds", "Latency of " + help, labelName, operation),
+                counter(prefix + "_errors_total", "Failed " + help, labelName, operation));
+    }
+
+    public synchronized String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        for (Family family : families.values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.name).append('\n');
+            for (Map.Entry<String, Object> series : family.series.entrySet()) {
+                String labels = series.getKey();
+                switch (family.type) {
+                    case HISTOGRAM:
+                        writeHistogram(out, family.name, labels, (LatencyHistogram) series.getValue());
+                        break;
+                    case COUNTER:
+                        if (series.getValue() instanceof Counter) {
+                            writeSample(out, family.name, labels, ((Counter) series.getValue()).get());
+                            break;
+                        }
+                        // Counter read from a supplier.
+                    default:
+                        writeSample(out, family.name, labels, ((DoubleSupplier) series.getValue()).getAsDouble());
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private void writeHistogram(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] counts = histogram.getBucketCounts();
+        String bucketLabels = labels.isEmpty() ? "le=\"" : labels + ",le=\"";
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = i == counts.length - 1 ? "+Inf" : Double.toString(LatencyHistogram.upperBoundNanos(i) / NANOS_PER_SECOND);
+            out.append(name).append("_bucket{").append(bucketLabels).append(bound).append("\"} ").append(cumulative).append('\n');
+        }
+        writeSample(out, name + "_sum", labels, histogram.getSumNanos() / NANOS_PER_SECOND);
+        writeSample(out, name + "_count", labels, cumulative);
+    }
+
+    private void writeSample(StringBuilder out, String name, String labels, long value) {
+        appendName(out, name, labels).append(' ').append(value).append('\n');
+    }
+
+    private void writeSample(StringBuilder out, String name, String labels, double value) {
+        appendName(out, name, labels).append(' ');
+        if (value == (long) value) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private StringBuilder appendName(StringBuilder out, String name, String labels) {
+        out.append(name);
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        return out;
+    }
+
+    private Family family(String name, String help, Type type) {
+        Family family = families.computeIfAbsent(name, key -> new Family(name, help, type));
+        if (family.type != type) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type.name);
+        }
+        return family;
+    }
+
+    static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels should be name, value pairs");
+        }
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(labels[i]).append("=\"");
+            String value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\\' || ch == '"') {
+                    out.append('\\').append(ch);
+                } else if (ch == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(ch);
+                }
+            }
+            out.append('"');
+        }
+        return out.toString();
+    }
+
+    private enum Type {
+        HISTOGRAM("histogram"), COUNTER("counter"), GAUGE("gauge");
+
+        private final String name;
+
+        Type(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final Map<String, Object> series = new LinkedHashMap<>();
+
+        Family(String name, String help, Type type) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+        }
+    }
+}
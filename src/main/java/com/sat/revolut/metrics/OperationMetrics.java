@@ -0,0 +1,33 @@
+package com.sat.revolut.metrics;
+
+// Latency and failure count of one operation. Callers take System.nanoTime() before the operation and report the
+// outcome once it is done, the number of calls is the histogram count.
+public class OperationMetrics {
+
+    private final LatencyHistogram latency;
+    private final Counter errors;
+
+    OperationMetrics(LatencyHistogram latency, Counter errors) {
+        this.latency = latency;
+        this.errors = errors;
+    }
+
+    public void record(long startNanos, boolean failed) {
+        recordDuration(System.nanoTime() - startNanos, failed);
+    }
+
+    public void recordDuration(long nanos, boolean failed) {
+        latency.record(nanos);
+        if (failed) {
+            errors.increment();
+        }
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public Counter getErrors() {
+        return errors;
+    }
+}
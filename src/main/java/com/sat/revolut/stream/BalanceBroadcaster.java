@@ -0,0 +1,307 @@
+package com.sat.revolut.stream;
+
+import com.sat.revolut.domain.Account;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Pushes balance changes to subscribers of a set of accounts. Writers only mark a changed account id, and only when
+// someone listens to it. A single dispatcher thread drains the marked ids, reads their committed balances in one
+// multi-get and hands them to the subscribers, each keeping only the latest balance per account until it is sent.
+// A few sender threads write to the subscribers, one at a time per subscriber, so a slow one never holds the others
+// back. Subscribers whose updates wait longer than maxLag are dropped.
+public class BalanceBroadcaster implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BalanceBroadcaster.class);
+
+    public static final String PROPERTY_MAX_SUBSCRIBERS = "stream.maxSubscribers";
+    public static final int DEFAULT_MAX_SUBSCRIBERS = 1000;
+    public static final String PROPERTY_MAX_IDS = "stream.maxIds";
+    public static final int DEFAULT_MAX_IDS = 1000;
+    public static final String PROPERTY_SENDER_THREADS = "stream.senderThreads";
+    public static final int DEFAULT_SENDER_THREADS = 4;
+    public static final String PROPERTY_MAX_LAG_MILLIS = "stream.maxLagMillis";
+    public static final long DEFAULT_MAX_LAG_MILLIS = 5000;
+    public static final String EVENT_BALANCE = "balance";
+
+    static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    // Where a subscriber's events go, e.g. a server-sent events connection.
+    public interface Sink {
+        void send(String event, String data) throws IOException;
+
+        void close();
+    }
+
+    public interface BalanceReader {
+        List<Account> getAll(Collection<Long> accountIds) throws SQLException;
+    }
+
+    // Turns an account into the data of its event.
+    public interface Encoder {
+        String encode(Account account);
+    }
+
+    private final BalanceReader reader;
+    private final Encoder encoder;
+    private final int maxSubscribers;
+    private final int maxIds;
+    private final long maxLagNanos;
+    private final Map<Long, Set<Subscription>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Long> changed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senders;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final LongAdder sentCount = new LongAdder();
+    private final LongAdder coalescedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public BalanceBroadcaster(BalanceReader reader, Encoder encoder, int maxSubscribers, int maxIds, int senderThreads, long maxLagMillis) {
+        if (maxSubscribers < 1 || maxIds < 1 || senderThreads < 1) {
+            throw new IllegalArgumentException("Subscribers, ids per subscriber and sender threads should be at least one.");
+        }
+        this.reader = reader;
+        this.encoder = encoder;
+        this.maxSubscribers = maxSubscribers;
+        this.maxIds = maxIds;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+        AtomicInteger senderIds = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "balance-sender-" + senderIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "balance-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public static BalanceBroadcaster fromSystemProperties(BalanceReader reader, Encoder encoder) {
+        return new BalanceBroadcaster(reader, encoder,
+                Integer.getInteger(PROPERTY_MAX_SUBSCRIBERS, DEFAULT_MAX_SUBSCRIBERS),
+                Integer.getInteger(PROPERTY_MAX_IDS, DEFAULT_MAX_IDS),
+                Integer.getInteger(PROPERTY_SENDER_THREADS, DEFAULT_SENDER_THREADS),
+                Long.getLong(PROPERTY_MAX_LAG_MILLIS, DEFAULT_MAX_LAG_MILLIS));
+    }
+
+    // Called after a write committed. Costs a map lookup when nobody listens to the account.
+    public void changed(Long accountId) {
+        if (subscribers.containsKey(accountId) && changed.add(accountId)) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    // Sends the current balances, then every change. Null when the broadcaster already has maxSubscribers.
+    public Subscription subscribe(Set<Long> accountIds, Sink sink) throws SQLException {
+        if (accountIds.size() > maxIds) {
+            throw new IllegalArgumentException("At most " + maxIds + " accounts per subscription");
+        }
+        int count;
+        do {
+            count = subscriberCount.get();
+            if (count >= maxSubscribers) {
+                rejectedCount.increment();
+                return null;
+            }
+        } while (!subscriberCount.compareAndSet(count, count + 1));
+
+        Subscription subscription = new Subscription(new HashSet<>(accountIds), sink);
+        for (Long accountId : subscription.accountIds) {
+            subscribers.compute(accountId, (id, set) -> {
+                Set<Subscription> subscriptions = set == null ? new CopyOnWriteArraySet<>() : set;
+                subscriptions.add(subscription);
+                return subscriptions;
+            });
+        }
+        // Registered before the first read, a change committed meanwhile is sent again rather than missed.
+        try {
+            for (Account account : reader.getAll(subscription.accountIds)) {
+                subscription.offer(account);
+            }
+        } catch (SQLException | RuntimeException e) {
+            // The caller still owns the sink, e.g. to report the failure on it.
+            subscription.unregister();
+            throw e;
+        }
+        return subscription;
+    }
+
+    private void dispatch() {
+        while (running) {
+            if (changed.isEmpty()) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                continue;
+            }
+            // Ids are removed before their balance is read, a write committing after the read marks them again.
+            List<Long> accountIds = new ArrayList<>(changed.size());
+            for (Long accountId : changed) {
+                if (changed.remove(accountId)) {
+                    accountIds.add(accountId);
+                }
+            }
+            try {
+                for (Account account : reader.getAll(accountIds)) {
+                    for (Subscription subscription : subscribers.getOrDefault(account.getAccountId(), Collections.emptySet())) {
+                        subscription.offer(account);
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                logger.error("Unable to read changed balances : " + e.getMessage());
+            }
+        }
+    }
+
+    public int getMaxIds() {
+        return maxIds;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    public int getChangedAccounts() {
+        return changed.size();
+    }
+
+    public long getSentCount() {
+        return sentCount.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        dispatcher.join();
+        senders.shutdown();
+        senders.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    public final class Subscription {
+        private final Set<Long> accountIds;
+        private final Sink sink;
+        // Latest unsent balance per account, guarded by this.
+        private final Map<Long, Account> pending = new LinkedHashMap<>();
+        private long oldestPendingNanos;
+        private boolean sending;
+        private boolean closed;
+
+        Subscription(Set<Long> accountIds, Sink sink) {
+            this.accountIds = accountIds;
+            this.sink = sink;
+        }
+
+        void offer(Account account) {
+            boolean drop;
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                long now = System.nanoTime();
+                if (pending.isEmpty()) {
+                    oldestPendingNanos = now;
+                }
+                if (pending.put(account.getAccountId(), account) != null) {
+                    coalescedCount.increment();
+                }
+                drop = now - oldestPendingNanos > maxLagNanos;
+                if (!drop && !sending) {
+                    sending = true;
+                    senders.execute(this::drain);
+                }
+            }
+            if (drop) {
+                logger.warn("Dropping balance subscriber lagging more than {} ms", TimeUnit.NANOSECONDS.toMillis(maxLagNanos));
+                droppedCount.increment();
+                close();
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                List<Account> accounts;
+                synchronized (this) {
+                    if (closed || pending.isEmpty()) {
+                        sending = false;
+                        return;
+                    }
+                    accounts = new ArrayList<>(pending.values());
+                    pending.clear();
+                }
+                try {
+                    for (Account account : accounts) {
+                        sink.send(EVENT_BALANCE, encoder.encode(account));
+                        sentCount.increment();
+                    }
+                } catch (IOException | RuntimeException e) {
+                    synchronized (this) {
+                        sending = false;
+                    }
+                    close();
+                    return;
+                }
+            }
+        }
+
+        // Unregisters the subscription and closes its sink, only the first call does anything.
+        public void close() {
+            if (unregister()) {
+                sink.close();
+            }
+        }
+
+        // False when already closed.
+        private boolean unregister() {
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                closed = true;
+                pending.clear();
+            }
+            for (Long accountId : accountIds) {
+                subscribers.computeIfPresent(accountId, (id, set) -> {
+                    set.remove(this);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+            subscriberCount.decrementAndGet();
+            return true;
+        }
+
+        public Set<Long> getAccountIds() {
+            return accountIds;
+        }
+    }
+}
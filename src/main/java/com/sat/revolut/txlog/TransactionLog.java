@@ -0,0 +1,301 @@
+package com.sat.revolut.txlog;
+
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionType;
+import com.sat.revolut.domain.TransferStatus;
+import com.sat.revolut.exception.InvalidAccountNumberException;
+import com.sat.revolut.exception.InvalidAmountException;
+import com.sat.revolut.exception.LowBalanceException;
+import com.sat.revolut.exception.NoAccountFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Structured log of every account operation, one JSON object per line :
+// {"ts":1700000000000,"txId":111,"op":"TRANSFER","from":1,"to":2,"amount":"10.00","outcome":"COMPLETED","latencyMicros":85}
+// Request threads copy the fields into a preallocated slot of a bounded lock-free ring buffer, a single background
+// thread formats and writes them, flushing whenever the buffer runs dry. Successful operations can be sampled,
+// failures are always kept. When the buffer is full events are either dropped and counted, or the caller waits.
+public class TransactionLog implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionLog.class);
+
+    public static final String PROPERTY_PATH = "txlog.path";
+    public static final String PROPERTY_CAPACITY = "txlog.capacity";
+    public static final int DEFAULT_CAPACITY = 65536;
+    public static final String PROPERTY_SAMPLE_RATE = "txlog.sampleRate";
+    public static final double DEFAULT_SAMPLE_RATE = 1.0;
+    public static final String PROPERTY_OVERFLOW = "txlog.overflow";
+
+    static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Logs nothing, used until a real log is wired.
+    public static final TransactionLog DISABLED = new TransactionLog();
+
+    public enum OverflowPolicy {
+        // Event is discarded and counted, request threads never wait for the log.
+        DROP,
+        // Caller waits until the writer has made room, nothing is lost.
+        BLOCK
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong enqueuePosition = new AtomicLong();
+    // Only written by the writer thread.
+    private volatile long dequeuePosition;
+
+    private final Writer out;
+    private final double sampleRate;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread writerThread;
+    private volatile boolean running;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong sampledOutCount = new AtomicLong();
+    private volatile long writtenCount;
+
+    private TransactionLog() {
+        slots = null;
+        mask = 0;
+        out = null;
+        sampleRate = 0;
+        overflowPolicy = OverflowPolicy.DROP;
+        writerThread = null;
+    }
+
+    public TransactionLog(Writer out, int capacity, double sampleRate, OverflowPolicy overflowPolicy) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Transaction log capacity should be a power of two, got " + capacity);
+        }
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate should be between 0 and 1, got " + sampleRate);
+        }
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot(i);
+        }
+        this.mask = capacity - 1;
+        this.out = out;
+        this.sampleRate = sampleRate;
+        this.overflowPolicy = overflowPolicy;
+        this.running = true;
+        this.writerThread = new Thread(this::drainLoop, "transaction-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Appends to the file at txlog.path, DISABLED when the property is not set.
+    public static TransactionLog fromSystemProperties() throws IOException {
+        String path = System.getProperty(PROPERTY_PATH);
+        if (path == null || path.isEmpty()) {
+            return DISABLED;
+        }
+        Path file = Paths.get(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        String sampleRate = System.getProperty(PROPERTY_SAMPLE_RATE);
+        return new TransactionLog(out,
+                Integer.getInteger(PROPERTY_CAPACITY, DEFAULT_CAPACITY),
+                sampleRate == null ? DEFAULT_SAMPLE_RATE : Double.parseDouble(sampleRate),
+                OverflowPolicy.valueOf(System.getProperty(PROPERTY_OVERFLOW, OverflowPolicy.DROP.name()).toUpperCase()));
+    }
+
+    public boolean isEnabled() {
+        return slots != null;
+    }
+
+    // Account ids and amount may be null, e.g. for a request rejected before they were parsed.
+    public void record(long transactionId, TransactionType type, Long fromAccountId, Long toAccountId, Money amount,
+                       TransferStatus outcome, long latencyNanos) {
+        if (slots == null || !running) {
+            return;
+        }
+        if (outcome == TransferStatus.COMPLETED && sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOutCount.incrementAndGet();
+            return;
+        }
+        Slot slot = claim();
+        if (slot == null) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        slot.timestampMillis = System.currentTimeMillis();
+        slot.transactionId = transactionId;
+        slot.type = type;
+        slot.fromAccountId = fromAccountId;
+        slot.toAccountId = toAccountId;
+        slot.amount = amount;
+        slot.outcome = outcome;
+        slot.latencyNanos = latencyNanos;
+        slot.publish();
+    }
+
+    public void record(long transactionId, TransactionType type, Long fromAccountId, Long toAccountId, Money amount,
+                       Throwable failure, long latencyNanos) {
+        record(transactionId, type, fromAccountId, toAccountId, amount, outcomeOf(failure), latencyNanos);
+    }
+
+    public static TransferStatus outcomeOf(Throwable failure) {
+        if (failure == null) {
+            return TransferStatus.COMPLETED;
+        }
+        if (failure instanceof LowBalanceException) {
+            return TransferStatus.LOW_BALANCE;
+        }
+        if (failure instanceof NoAccountFoundException) {
+            return TransferStatus.NO_ACCOUNT_FOUND;
+        }
+        if (failure instanceof InvalidAmountException) {
+            return TransferStatus.INVALID_AMOUNT;
+        }
+        if (failure instanceof InvalidAccountNumberException) {
+            return TransferStatus.INVALID_ACCOUNT_NUMBER;
+        }
+        return TransferStatus.FAILED;
+    }
+
+    // Bounded multi producer queue after Dmitry Vyukov : a slot is free for position p when its sequence equals p,
+    // the producer winning the CAS on the enqueue position owns it until it publishes p + 1.
+    private Slot claim() {
+        while (true) {
+            long position = enqueuePosition.get();
+            Slot slot = slots[(int) position & mask];
+            long difference = slot.sequence - position;
+            if (difference == 0) {
+                if (enqueuePosition.compareAndSet(position, position + 1)) {
+                    return slot;
+                }
+            } else if (difference < 0) {
+                if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                    return null;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void drainLoop() {
+        StringBuilder line = new StringBuilder(256);
+        char[] chars = new char[256];
+        boolean dirty = false;
+        try {
+            while (true) {
+                Slot slot = slots[(int) dequeuePosition & mask];
+                if (slot.sequence == dequeuePosition + 1) {
+                    format(slot, line);
+                    slot.release(dequeuePosition + slots.length);
+                    dequeuePosition++;
+                    if (chars.length < line.length()) {
+                        chars = new char[line.length() * 2];
+                    }
+                    line.getChars(0, line.length(), chars, 0);
+                    out.write(chars, 0, line.length());
+                    writtenCount++;
+                    dirty = true;
+                    continue;
+                }
+                if (dirty) {
+                    out.flush();
+                    dirty = false;
+                }
+                if (!running && enqueuePosition.get() == dequeuePosition) {
+                    break;
+                }
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        } catch (IOException e) {
+            logger.error("Transaction log writer stopped : " + e.getMessage());
+            running = false;
+        }
+    }
+
+    static void format(Slot slot, StringBuilder line) {
+        line.setLength(0);
+        line.append("{\"ts\":").append(slot.timestampMillis)
+                .append(",\"txId\":").append(slot.transactionId)
+                .append(",\"op\":\"").append(slot.type.name()).append('"');
+        if (slot.fromAccountId != null) {
+            line.append(",\"from\":").append(slot.fromAccountId.longValue());
+        }
+        if (slot.toAccountId != null) {
+            line.append(",\"to\":").append(slot.toAccountId.longValue());
+        }
+        if (slot.amount != null) {
+            slot.amount.appendTo(line.append(",\"amount\":\"")).append('"');
+        }
+        line.append(",\"outcome\":\"").append(slot.outcome.name())
+                .append("\",\"latencyMicros\":").append(TimeUnit.NANOSECONDS.toMicros(slot.latencyNanos))
+                .append("}\n");
+    }
+
+    public long getWrittenCount() {
+        return writtenCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSampledOutCount() {
+        return sampledOutCount.get();
+    }
+
+    public int getQueuedEvents() {
+        return slots == null ? 0 : (int) (enqueuePosition.get() - dequeuePosition);
+    }
+
+    // Stops accepting events, writes out what is queued and closes the output.
+    @Override
+    public void close() throws IOException {
+        if (writerThread == null) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        out.close();
+    }
+
+    static final class Slot {
+        volatile long sequence;
+        long timestampMillis;
+        long transactionId;
+        TransactionType type;
+        Long fromAccountId;
+        Long toAccountId;
+        Money amount;
+        TransferStatus outcome;
+        long latencyNanos;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+
+        void publish() {
+            sequence = sequence + 1;
+        }
+
+        void release(long nextSequence) {
+            fromAccountId = null;
+            toAccountId = null;
+            amount = null;
+            sequence = nextSequence;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.domain.Account;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// Reads the account ids of a bulk read and streams the accounts found back.
+// Ids are a comma separated list, "1,2,3", optionally wrapped in a JSON array, "[1, 2, 3]".
+// Accounts are written as a JSON array of {"accountId":3,"balance":"25000.00"} objects, one at a time to the writer,
+// so the whole body is never held in memory.
+public final class AccountListCodec {
+
+    public static final String PARAM_ACCOUNT_IDS = "accountIds";
+    public static final String PROPERTY_MAX_IDS = "accounts.bulk.maxIds";
+    public static final int DEFAULT_MAX_IDS = 10000;
+    // Reused per account, an account rarely needs more.
+    private static final int ENTRY_SIZE = 64;
+
+    private AccountListCodec() {
+    }
+
+    // Distinct ids in request order, IllegalArgumentException when the list is empty, too long or not numeric.
+    public static Set<Long> parseIds(String text, int maxIds) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing account ids, expected " + PARAM_ACCOUNT_IDS + "=1,2,3");
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        if (start < end && text.charAt(start) == '[') {
+            if (text.charAt(end - 1) != ']') {
+                throw new IllegalArgumentException("Unterminated account id array");
+            }
+            start++;
+            end--;
+        }
+
+        Set<Long> accountIds = new LinkedHashSet<>();
+        while (start < end) {
+            int comma = text.indexOf(',', start);
+            int idEnd = comma < 0 || comma > end ? end : comma;
+            int idStart = start;
+            int trimmedEnd = idEnd;
+            while (idStart < trimmedEnd && Character.isWhitespace(text.charAt(idStart))) {
+                idStart++;
+            }
+            while (trimmedEnd > idStart && Character.isWhitespace(text.charAt(trimmedEnd - 1))) {
+                trimmedEnd--;
+            }
+            accountIds.add(QueryParams.parseLong(text, idStart, trimmedEnd));
+            if (accountIds.size() > maxIds) {
+                throw new IllegalArgumentException("More than " + maxIds + " account ids requested");
+            }
+            start = idEnd + 1;
+        }
+        if (accountIds.isEmpty()) {
+            throw new IllegalArgumentException("Missing account ids, expected " + PARAM_ACCOUNT_IDS + "=1,2,3");
+        }
+        return accountIds;
+    }
+
+    public static void write(List<Account> accounts, Writer writer) throws IOException {
+        StringBuilder entry = new StringBuilder(ENTRY_SIZE);
+        writer.write('[');
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            entry.setLength(0);
+            if (i > 0) {
+                entry.append(',');
+            }
+            entry.append("{\"accountId\":").append(account.getAccountId()).append(",\"balance\":\"");
+            account.getTotalBalance().appendTo(entry).append("\"}");
+            writer.append(entry);
+        }
+        writer.write(']');
+    }
+}
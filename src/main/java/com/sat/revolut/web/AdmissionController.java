@@ -0,0 +1,228 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.metrics.Counter;
+import com.sat.revolut.metrics.MetricsRegistry;
+import io.javalin.http.Context;
+import io.javalin.http.Handler;
+import io.javalin.http.RequestLogger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Admission control in front of the routes. Every endpoint has its own concurrency limit, adapted with AIMD : the limit
+// grows by about one per round of requests while responses come back within the target latency and is cut by
+// backoffRatio, at most once per target latency, when one is slower or the server answered 5xx. A request over its
+// endpoint's limit is answered 503 with Retry-After straight away instead of queueing on locks or connections.
+// On top, all endpoints share maxInFlight requests of which writes may only take (1 - readReserve), so reads keep
+// being served while writes are shed. Permits are handed back by the request logger, once async responses completed.
+public class AdmissionController implements RequestLogger {
+
+    public static final String PROPERTY_ENABLED = "http.admission.enabled";
+    public static final String PROPERTY_INITIAL_LIMIT = "http.admission.initialLimit";
+    public static final int DEFAULT_INITIAL_LIMIT = 32;
+    public static final String PROPERTY_MIN_LIMIT = "http.admission.minLimit";
+    public static final int DEFAULT_MIN_LIMIT = 2;
+    public static final String PROPERTY_MAX_LIMIT = "http.admission.maxLimit";
+    public static final int DEFAULT_MAX_LIMIT = 512;
+    public static final String PROPERTY_TARGET_LATENCY_MILLIS = "http.admission.targetLatencyMillis";
+    public static final long DEFAULT_TARGET_LATENCY_MILLIS = 250;
+    public static final String PROPERTY_BACKOFF_RATIO = "http.admission.backoffRatio";
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final String PROPERTY_MAX_IN_FLIGHT = "http.admission.maxInFlight";
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+    public static final String PROPERTY_READ_RESERVE = "http.admission.readReserve";
+    public static final double DEFAULT_READ_RESERVE = 0.25;
+    static final int STATUS_OVERLOADED = 503;
+    static final String OVERLOADED_MESSAGE = "Server overloaded, retry later";
+    static final String RETRY_AFTER_SECONDS = "1";
+    static final String PERMIT_ATTRIBUTE = "admission.permit";
+
+    public enum Priority {
+        READ,
+        WRITE
+    }
+
+    private final MetricsRegistry registry;
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final double backoffRatio;
+    private final int maxInFlight;
+    private final int maxWritesInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public AdmissionController(MetricsRegistry registry, boolean enabled, int initialLimit, int minLimit, int maxLimit,
+                               long targetLatencyMillis, double backoffRatio, int maxInFlight, double readReserve) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Admission limits should satisfy 1 <= min <= initial <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1 || readReserve < 0 || readReserve >= 1) {
+            throw new IllegalArgumentException("Backoff ratio and read reserve should be between 0 and 1");
+        }
+        this.registry = registry;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.backoffRatio = backoffRatio;
+        this.maxInFlight = maxInFlight;
+        this.maxWritesInFlight = Math.max(1, (int) (maxInFlight * (1 - readReserve)));
+        if (enabled) {
+            registry.gauge("bank_admission_in_flight_total", "Admitted requests still running, all endpoints", inFlight::get);
+            registry.gauge("bank_admission_max_in_flight", "Requests all endpoints may run at once", () -> maxInFlight);
+            registry.gauge("bank_admission_max_writes_in_flight", "Share of the in flight requests writes may take", () -> maxWritesInFlight);
+        }
+    }
+
+    public static AdmissionController fromSystemProperties(MetricsRegistry registry) {
+        String backoffRatio = System.getProperty(PROPERTY_BACKOFF_RATIO);
+        String readReserve = System.getProperty(PROPERTY_READ_RESERVE);
+        return new AdmissionController(registry,
+                Boolean.parseBoolean(System.getProperty(PROPERTY_ENABLED, "true")),
+                Integer.getInteger(PROPERTY_INITIAL_LIMIT, DEFAULT_INITIAL_LIMIT),
+                Integer.getInteger(PROPERTY_MIN_LIMIT, DEFAULT_MIN_LIMIT),
+                Integer.getInteger(PROPERTY_MAX_LIMIT, DEFAULT_MAX_LIMIT),
+                Long.getLong(PROPERTY_TARGET_LATENCY_MILLIS, DEFAULT_TARGET_LATENCY_MILLIS),
+                backoffRatio == null ? DEFAULT_BACKOFF_RATIO : Double.parseDouble(backoffRatio),
+                Integer.getInteger(PROPERTY_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT),
+                readReserve == null ? DEFAULT_READ_RESERVE : Double.parseDouble(readReserve));
+    }
+
+    // Handler running route only when the endpoint and the shared limit let it in. endpoint names the series.
+    public Handler admit(String endpoint, Priority priority, Handler route) {
+        if (!enabled) {
+            return route;
+        }
+        EndpointLimit limit = endpoint(endpoint, priority);
+        return ctx -> {
+            Permit permit = limit.tryAcquire();
+            if (permit == null) {
+                reject(ctx);
+                return;
+            }
+            ctx.attribute(PERMIT_ATTRIBUTE, permit);
+            route.handle(ctx);
+        };
+    }
+
+    EndpointLimit endpoint(String endpoint, Priority priority) {
+        EndpointLimit limit = new EndpointLimit(priority);
+        registry.gauge("bank_admission_limit", "Adaptive concurrency limit per endpoint", limit::getLimit, "endpoint", endpoint);
+        registry.gauge("bank_admission_in_flight", "Admitted requests still running per endpoint", limit::getInFlight, "endpoint", endpoint);
+        limit.rejected = registry.counter("bank_admission_rejected_total", "Requests shed with 503 before reaching the handler", "endpoint", endpoint);
+        return limit;
+    }
+
+    // Called by Javalin once the response is written, async ones included.
+    @Override
+    public void handle(Context ctx, Float executionTimeMs) {
+        Permit permit = ctx.attribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            permit.release(ctx.status() >= 500);
+        }
+    }
+
+    private static void reject(Context ctx) {
+        boolean json = ResponseEncoder.acceptsJson(ctx);
+        if (json) {
+            ctx.contentType(ResponseEncoder.CONTENT_TYPE_JSON);
+        }
+        ctx.status(STATUS_OVERLOADED);
+        ctx.header("Retry-After", RETRY_AFTER_SECONDS);
+        ctx.result(ResponseEncoder.error(OVERLOADED_MESSAGE, json));
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    final class EndpointLimit {
+        private final Priority priority;
+        private final AtomicInteger endpointInFlight = new AtomicInteger();
+        private Counter rejected;
+        // Guarded by this, read without the lock by tryAcquire and the metrics.
+        private volatile double limit = initialLimit;
+        private long lastDecreaseNanos = System.nanoTime() - targetLatencyNanos;
+
+        EndpointLimit(Priority priority) {
+            this.priority = priority;
+        }
+
+        Permit tryAcquire() {
+            int sharedLimit = priority == Priority.READ ? maxInFlight : maxWritesInFlight;
+            int shared;
+            do {
+                shared = inFlight.get();
+                if (shared >= sharedLimit) {
+                    rejected.increment();
+                    return null;
+                }
+            } while (!inFlight.compareAndSet(shared, shared + 1));
+
+            int running;
+            do {
+                running = endpointInFlight.get();
+                if (running >= (int) limit) {
+                    inFlight.decrementAndGet();
+                    rejected.increment();
+                    return null;
+                }
+            } while (!endpointInFlight.compareAndSet(running, running + 1));
+            return new Permit(this, running + 1);
+        }
+
+        void release(Permit permit, boolean failed) {
+            endpointInFlight.decrementAndGet();
+            inFlight.decrementAndGet();
+            long now = System.nanoTime();
+            long latency = now - permit.startNanos;
+            synchronized (this) {
+                if (failed || latency > targetLatencyNanos) {
+                    // Requests admitted under the old limit all report the same slow down, cut once per target latency.
+                    if (now - lastDecreaseNanos >= targetLatencyNanos) {
+                        limit = Math.max(minLimit, limit * backoffRatio);
+                        lastDecreaseNanos = now;
+                    }
+                } else if (permit.inFlightAtStart * 2 >= limit) {
+                    // Only grow a limit that is being used, an idle endpoint would otherwise drift to the maximum.
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+        }
+
+        double getLimit() {
+            return limit;
+        }
+
+        int getInFlight() {
+            return endpointInFlight.get();
+        }
+    }
+
+    static final class Permit {
+        private final EndpointLimit endpoint;
+        private final int inFlightAtStart;
+        private final long startNanos = System.nanoTime();
+        private boolean released;
+
+        Permit(EndpointLimit endpoint, int inFlightAtStart) {
+            this.endpoint = endpoint;
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        // Only the first call counts, a permit is never handed back twice.
+        synchronized void release(boolean failed) {
+            if (!released) {
+                released = true;
+                endpoint.release(this, failed);
+            }
+        }
+    }
+}
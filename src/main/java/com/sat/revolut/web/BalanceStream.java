@@ -0,0 +1,75 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.stream.BalanceBroadcaster;
+import io.javalin.http.sse.SseClient;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Set;
+
+// Server-sent events side of a balance subscription. Each "balance" event carries {"accountId":3,"balance":"25000.00"},
+// the current balances first, then every change. Bad requests and a full broadcaster get one "error" event and the
+// stream is closed. The connection closing, either way, ends the subscription.
+public final class BalanceStream implements BalanceBroadcaster.Sink {
+
+    static final String EVENT_ERROR = "error";
+    static final String BUSY_MESSAGE = "Too many balance subscribers, retry later";
+
+    private final SseClient client;
+    // Set once the client went away, sends then fail so the broadcaster closes the subscription.
+    private volatile boolean closed;
+    private volatile BalanceBroadcaster.Subscription subscription;
+
+    private BalanceStream(SseClient client) {
+        this.client = client;
+    }
+
+    public static void subscribe(SseClient client, BalanceBroadcaster broadcaster) {
+        BalanceStream stream = new BalanceStream(client);
+        // Registered first, the client may leave while the current balances are being sent.
+        client.onClose(stream::clientClosed);
+        try {
+            Set<Long> accountIds = AccountListCodec.parseIds(client.ctx.queryParam(AccountListCodec.PARAM_ACCOUNT_IDS),
+                    broadcaster.getMaxIds());
+            stream.subscription = broadcaster.subscribe(accountIds, stream);
+            if (stream.subscription == null) {
+                stream.fail(BUSY_MESSAGE);
+            } else if (stream.closed) {
+                stream.subscription.close();
+            }
+        } catch (IllegalArgumentException | SQLException e) {
+            stream.fail(e.getMessage());
+        }
+    }
+
+    @Override
+    public void send(String event, String data) throws IOException {
+        if (closed) {
+            throw new IOException("Balance stream closed");
+        }
+        client.sendEvent(event, data, null);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            client.ctx.req.getAsyncContext().complete();
+        } catch (IllegalStateException e) {
+            // Already completed by the client leaving.
+        }
+    }
+
+    private void clientClosed() {
+        closed = true;
+        BalanceBroadcaster.Subscription current = subscription;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void fail(String message) {
+        client.sendEvent(EVENT_ERROR, ResponseEncoder.error(message, true), null);
+        close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.metrics.MetricsRegistry;
+import com.sat.revolut.metrics.OperationMetrics;
+import io.javalin.http.Context;
+import io.javalin.http.RequestLogger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Latency and 5xx count per endpoint. Installed as Javalin's request logger, which runs once the response is
+// written, so async responses are timed until they complete. Series are keyed by the matched route, not the raw path.
+public class EndpointMetrics implements RequestLogger {
+
+    static final String PREFIX = "bank_http_request";
+    static final String LABEL = "endpoint";
+    static final String UNMATCHED = "unmatched";
+
+    private final MetricsRegistry registry;
+    private final Map<String, Map<String, OperationMetrics>> endpoints = new ConcurrentHashMap<>();
+
+    public EndpointMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void handle(Context ctx, Float executionTimeMs) {
+        String matchedPath = ctx.matchedPath();
+        String path = matchedPath == null || matchedPath.isEmpty() ? UNMATCHED : matchedPath;
+        endpoint(ctx.method(), path).recordDuration((long) (executionTimeMs * 1_000_000L), ctx.status() >= 500);
+    }
+
+    OperationMetrics endpoint(String method, String path) {
+        Map<String, OperationMetrics> paths = endpoints.get(method);
+        if (paths == null) {
+            paths = endpoints.computeIfAbsent(method, key -> new ConcurrentHashMap<>());
+        }
+        OperationMetrics metrics = paths.get(path);
+        if (metrics == null) {
+            metrics = paths.computeIfAbsent(path, key -> registry.operation(PREFIX, "HTTP requests", LABEL, method + " " + key));
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,440 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.exception.JournalFailedException;
+import com.sat.revolut.exception.LowBalanceException;
+import com.sat.revolut.exception.RetriesExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Results of write requests sent with an Idempotency-Key header, so a client retrying after a timeout gets the
+// response of its first request instead of having it applied twice. A repeated key is answered from memory without
+// reaching the handler, its locks or the DAO; a repeat arriving while the first request still runs waits for it.
+// Keys are scoped by endpoint and expire after ttl. Each segment holds capacity / 16 keys, oldest completed first out.
+// Only outcomes a retry would get again are kept : success and rejections such as low balance. Database errors and
+// lock timeouts release the key, the retry runs for real.
+// With a file every result is appended to it before the response is sent and reloaded on start, so keys survive a
+// restart of the process. A result is written after its balance change, a crash in between still lets a retry apply.
+public class IdempotencyStore implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String PROPERTY_CAPACITY = "idempotency.capacity";
+    public static final int DEFAULT_CAPACITY = 100000;
+    public static final String PROPERTY_TTL_SECONDS = "idempotency.ttlSeconds";
+    public static final long DEFAULT_TTL_SECONDS = TimeUnit.DAYS.toSeconds(1);
+    public static final String PROPERTY_PATH = "idempotency.path";
+    static final int MAX_KEY_LENGTH = 255;
+    static final long IN_FLIGHT_WAIT_MILLIS = 30000;
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    // Stores nothing, every request runs.
+    public static final IdempotencyStore DISABLED = new IdempotencyStore();
+
+    private final Segment[] segments;
+    private final int capacity;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Path file;
+    // Guarded by this.
+    private Writer out;
+    private long appendedSinceCompaction;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder inFlightWaitCount = new LongAdder();
+    private final LongAdder conflictCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder persistFailureCount = new LongAdder();
+
+    private IdempotencyStore() {
+        segments = null;
+        capacity = 0;
+        ttlMillis = 0;
+        clock = System::currentTimeMillis;
+        file = null;
+    }
+
+    // file is null to keep results in memory only.
+    public IdempotencyStore(int capacity, long ttlMillis, Path file) throws IOException {
+        this(capacity, ttlMillis, file, System::currentTimeMillis);
+    }
+
+    IdempotencyStore(int capacity, long ttlMillis, Path file, LongSupplier clock) throws IOException {
+        if (capacity < SEGMENTS) {
+            throw new IllegalArgumentException("Idempotency store capacity should be at least " + SEGMENTS);
+        }
+        if (ttlMillis < 1) {
+            throw new IllegalArgumentException("Idempotency key time to live should be positive, got " + ttlMillis);
+        }
+        this.capacity = capacity;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.file = file;
+        segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity / SEGMENTS);
+        }
+        if (file != null) {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            load();
+            synchronized (this) {
+                compact();
+            }
+        }
+    }
+
+    // In memory unless idempotency.path is set, DISABLED with a capacity of 0.
+    public static IdempotencyStore fromSystemProperties() throws IOException {
+        int capacity = Integer.getInteger(PROPERTY_CAPACITY, DEFAULT_CAPACITY);
+        if (capacity == 0) {
+            return DISABLED;
+        }
+        String path = System.getProperty(PROPERTY_PATH);
+        return new IdempotencyStore(capacity,
+                TimeUnit.SECONDS.toMillis(Long.getLong(PROPERTY_TTL_SECONDS, DEFAULT_TTL_SECONDS)),
+                path == null || path.isEmpty() ? null : Paths.get(path));
+    }
+
+    public boolean isEnabled() {
+        return segments != null;
+    }
+
+    // Work for one request of endpoint scope. key is the Idempotency-Key header, null runs work as is. request
+    // identifies what was asked, e.g. the query string, a key sent again with another request is refused.
+    public RequestExecutor.Work wrap(String scope, String key, String request, RequestExecutor.Work work) {
+        if (key == null || segments == null) {
+            return work;
+        }
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return json -> {
+                throw new IllegalArgumentException(HEADER + " should have 1 to " + MAX_KEY_LENGTH + " characters");
+            };
+        }
+        String id = scope + ' ' + key;
+        String fingerprint = request == null ? "" : request;
+        return json -> {
+            long now = clock.getAsLong();
+            Entry entry = new Entry(fingerprint, now + ttlMillis);
+            Segment segment = segmentFor(id);
+            Entry existing = segment.putIfAbsent(id, entry, now);
+            if (existing != null) {
+                return replay(existing, fingerprint);
+            }
+            missCount.increment();
+            String body;
+            try {
+                body = work.run(json);
+            } catch (Exception e) {
+                if (isRetryable(e)) {
+                    segment.remove(id, entry);
+                    entry.result.completeExceptionally(e);
+                    throw e;
+                }
+                body = ResponseEncoder.error(e.getMessage(), json);
+            }
+            complete(id, entry, body);
+            return body;
+        };
+    }
+
+    private String replay(Entry existing, String fingerprint) throws Exception {
+        hitCount.increment();
+        if (!existing.request.equals(fingerprint)) {
+            conflictCount.increment();
+            throw new IllegalArgumentException(HEADER + " was already used for a different request");
+        }
+        if (!existing.result.isDone()) {
+            inFlightWaitCount.increment();
+        }
+        try {
+            return existing.result.get(IN_FLIGHT_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            throw new RetriesExceededException("Request with the same " + HEADER + " is still running, retry later.");
+        }
+    }
+
+    // Failures that may not have applied anything, or that another attempt may get past.
+    private static boolean isRetryable(Exception e) {
+        if (e instanceof LowBalanceException || e instanceof JournalFailedException) {
+            return false;
+        }
+        return e instanceof SQLException || e instanceof RetriesExceededException || e instanceof InterruptedException
+                || e instanceof RuntimeException;
+    }
+
+    private void complete(String id, Entry entry, String body) {
+        if (file != null) {
+            persist(id, entry, body);
+        }
+        entry.result.complete(body);
+    }
+
+    private synchronized void persist(String id, Entry entry, String body) {
+        try {
+            if (out == null) {
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            writeLine(out, id, entry.request, entry.expiresAt, body);
+            out.flush();
+            if (++appendedSinceCompaction > capacity) {
+                compact();
+            }
+        } catch (IOException e) {
+            persistFailureCount.increment();
+            logger.error("Unable to persist idempotency key : " + e.getMessage());
+        }
+    }
+
+    // Rewrites the file with the keys still held and not expired, the file never grows past about twice the capacity.
+    private void compact() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        long now = clock.getAsLong();
+        Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+        try (Writer writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (Segment segment : segments) {
+                for (Map.Entry<String, Entry> held : segment.completed(now)) {
+                    Entry entry = held.getValue();
+                    writeLine(writer, held.getKey(), entry.request, entry.expiresAt, entry.result.getNow(null));
+                }
+            }
+        }
+        Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        appendedSinceCompaction = 0;
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long now = clock.getAsLong();
+        long loaded = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != 4) {
+                    // Last line of a process killed while writing it.
+                    logger.warn("Skipping malformed idempotency record in " + file);
+                    continue;
+                }
+                long expiresAt = Long.parseLong(fields[2]);
+                if (expiresAt <= now) {
+                    continue;
+                }
+                String id = unescape(fields[0]);
+                Entry entry = new Entry(unescape(fields[1]), expiresAt);
+                entry.result.complete(unescape(fields[3]));
+                segmentFor(id).put(id, entry, now);
+                loaded++;
+            }
+        }
+        logger.info("Loaded {} idempotency keys from {}", loaded, file);
+    }
+
+    private static void writeLine(Writer writer, String id, String request, long expiresAt, String body) throws IOException {
+        writer.write(escape(id));
+        writer.write('\t');
+        writer.write(escape(request));
+        writer.write('\t');
+        writer.write(Long.toString(expiresAt));
+        writer.write('\t');
+        writer.write(escape(body));
+        writer.write('\n');
+    }
+
+    static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                escaped.append("\\\\");
+            } else if (c == '\t') {
+                escaped.append("\\t");
+            } else if (c == '\n') {
+                escaped.append("\\n");
+            } else if (c == '\r') {
+                escaped.append("\\r");
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    static String unescape(String value) {
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getInFlightWaitCount() {
+        return inFlightWaitCount.sum();
+    }
+
+    public long getConflictCount() {
+        return conflictCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    public long getPersistFailureCount() {
+        return persistFailureCount.sum();
+    }
+
+    public int getSize() {
+        if (segments == null) {
+            return 0;
+        }
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    private Segment segmentFor(String id) {
+        long hash = id.hashCode() * 0x9E3779B97F4A7C15L;
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))];
+    }
+
+    private static final class Entry {
+        private final String request;
+        private final long expiresAt;
+        // Completed with the response body, or exceptionally when the key was released.
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Entry(String request, long expiresAt) {
+            this.request = request;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // Insertion ordered, every key gets the same time to live, so the eldest key is also the first to expire.
+    private final class Segment {
+        private final LinkedHashMap<String, Entry> entries;
+
+        Segment(int capacity) {
+            entries = new LinkedHashMap<String, Entry>(Math.min(capacity, 1024), 0.75f, false) {
+                // Oldest completed keys go first. A key still in flight is never evicted, a repeat must find it
+                // or it would run again, so the segment grows past capacity while every key it holds is in flight.
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    Iterator<Entry> held = values().iterator();
+                    while (size() > capacity && held.hasNext()) {
+                        if (held.next().result.isDone()) {
+                            held.remove();
+                            evictionCount.increment();
+                        }
+                    }
+                    return false;
+                }
+            };
+        }
+
+        // Entry already held for id, or null when entry was added.
+        synchronized Entry putIfAbsent(String id, Entry entry, long now) {
+            expire(now);
+            Entry existing = entries.get(id);
+            if (existing != null) {
+                return existing;
+            }
+            entries.put(id, entry);
+            return null;
+        }
+
+        synchronized void put(String id, Entry entry, long now) {
+            expire(now);
+            entries.put(id, entry);
+        }
+
+        synchronized void remove(String id, Entry entry) {
+            entries.remove(id, entry);
+        }
+
+        synchronized List<Map.Entry<String, Entry>> completed(long now) {
+            List<Map.Entry<String, Entry>> completed = new ArrayList<>(entries.size());
+            for (Map.Entry<String, Entry> held : entries.entrySet()) {
+                if (held.getValue().expiresAt > now && held.getValue().result.isDone()
+                        && !held.getValue().result.isCompletedExceptionally()) {
+                    completed.add(new AbstractMap.SimpleImmutableEntry<>(held));
+                }
+            }
+            return completed;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private void expire(long now) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (eldest.hasNext()) {
+                if (eldest.next().expiresAt > now) {
+                    return;
+                }
+                eldest.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.domain.Money;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+
+// Reads numeric query parameters straight from the raw query string.
+// Unlike ctx.queryParam, which splits the whole query string into a map on every call, nothing is allocated on the
+// way : the value is found in place and parsed between its bounds. Only percent encoded values are decoded first.
+public final class QueryParams {
+
+    private QueryParams() {
+    }
+
+    public static long getLong(String query, String name) {
+        int start = valueStart(query, name);
+        int end = valueEnd(query, start);
+        if (isEncoded(query, start, end)) {
+            return Long.parseLong(decode(query, start, end));
+        }
+        return parseLong(query, start, end);
+    }
+
+    public static Money getMoney(String query, String name) {
+        int start = valueStart(query, name);
+        int end = valueEnd(query, start);
+        if (isEncoded(query, start, end)) {
+            return Money.parse(decode(query, start, end));
+        }
+        return Money.parse(query, start, end);
+    }
+
+    // Index of the first character of the value of the first name=value pair, NumberFormatException when missing.
+    static int valueStart(String query, String name) {
+        if (query != null) {
+            int length = query.length();
+            int pair = 0;
+            while (pair < length) {
+                int nameEnd = pair + name.length();
+                if (nameEnd < length && query.charAt(nameEnd) == '=' && query.startsWith(name, pair)) {
+                    return nameEnd + 1;
+                }
+                int next = query.indexOf('&', pair);
+                if (next < 0) {
+                    break;
+                }
+                pair = next + 1;
+            }
+        }
+        throw new NumberFormatException("Missing query parameter : " + name);
+    }
+
+    static int valueEnd(String query, int start) {
+        int end = query.indexOf('&', start);
+        return end < 0 ? query.length() : end;
+    }
+
+    // Same contract as Long.parseLong on the characters between start and end.
+    static long parseLong(CharSequence text, int start, int end) {
+        int index = start;
+        boolean negative = false;
+        if (index < end && (text.charAt(index) == '-' || text.charAt(index) == '+')) {
+            negative = text.charAt(index) == '-';
+            index++;
+        }
+        if (index == end) {
+            throw invalidNumber(text, start, end);
+        }
+        long value = 0;
+        for (; index < end; index++) {
+            char c = text.charAt(index);
+            if (c < '0' || c > '9') {
+                throw invalidNumber(text, start, end);
+            }
+            // Accumulate negatively so that Long.MIN_VALUE can be parsed as well.
+            if (value < Long.MIN_VALUE / 10) {
+                throw invalidNumber(text, start, end);
+            }
+            value *= 10;
+            if (value < Long.MIN_VALUE + (c - '0')) {
+                throw invalidNumber(text, start, end);
+            }
+            value -= c - '0';
+        }
+        if (!negative) {
+            if (value == Long.MIN_VALUE) {
+                throw invalidNumber(text, start, end);
+            }
+            return -value;
+        }
+        return value;
+    }
+
+    private static boolean isEncoded(String query, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = query.charAt(i);
+            if (c == '%' || c == '+') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String decode(String query, int start, int end) {
+        try {
+            return URLDecoder.decode(query.substring(start, end), "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            throw new NumberFormatException("Invalid query parameter value : " + query.substring(start, end));
+        }
+    }
+
+    private static NumberFormatException invalidNumber(CharSequence text, int start, int end) {
+        return new NumberFormatException("For input string: \"" + text.subSequence(start, end) + "\"");
+    }
+}
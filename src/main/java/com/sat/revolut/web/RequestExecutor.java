@@ -0,0 +1,147 @@
+package com.sat.revolut.web;
+
+import io.javalin.http.Context;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs route work that may block, on JDBC or on account locks, away from the Jetty worker threads.
+// In async mode work is queued on a bounded pool and the response completes when it is done, so server threads stay
+// free for reads such as /account. A full queue answers 503 straight away instead of parking yet another thread.
+// Blocking mode runs the work on the calling thread, as the routes always did.
+public class RequestExecutor {
+
+    public static final String PROPERTY_MODE = "http.execution";
+    public static final String MODE_ASYNC = "async";
+    public static final String MODE_BLOCKING = "blocking";
+    public static final String PROPERTY_CONCURRENCY = "http.async.concurrency";
+    public static final int DEFAULT_CONCURRENCY = 32;
+    public static final String PROPERTY_QUEUE_CAPACITY = "http.async.queueCapacity";
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+    static final int STATUS_BUSY = 503;
+    static final String BUSY_MESSAGE = "Server busy, retry later";
+
+    // Work of one request, returns the response body in JSON when asked to. An exception message becomes the body.
+    @FunctionalInterface
+    public interface Work {
+        String run(boolean json) throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    private RequestExecutor(ThreadPoolExecutor executor) {
+        this.executor = executor;
+    }
+
+    public static RequestExecutor blocking() {
+        return new RequestExecutor(null);
+    }
+
+    public static RequestExecutor async(int concurrency, int queueCapacity) {
+        if (concurrency < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Concurrency and queue capacity should be at least one.");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "request-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return new RequestExecutor(executor);
+    }
+
+    public static RequestExecutor fromSystemProperties() {
+        String mode = System.getProperty(PROPERTY_MODE, MODE_ASYNC);
+        if (MODE_BLOCKING.equalsIgnoreCase(mode)) {
+            return blocking();
+        }
+        if (!MODE_ASYNC.equalsIgnoreCase(mode)) {
+            throw new IllegalArgumentException("Unknown execution mode : " + mode);
+        }
+        return async(Integer.getInteger(PROPERTY_CONCURRENCY, DEFAULT_CONCURRENCY),
+                Integer.getInteger(PROPERTY_QUEUE_CAPACITY, DEFAULT_QUEUE_CAPACITY));
+    }
+
+    public void execute(Context ctx, Work work) {
+        boolean json = ResponseEncoder.acceptsJson(ctx);
+        if (json) {
+            ctx.contentType(ResponseEncoder.CONTENT_TYPE_JSON);
+        }
+        if (executor == null) {
+            String result = run(work, json);
+            if (result != null) {
+                ctx.result(result);
+            }
+            return;
+        }
+        try {
+            ctx.result(submit(work, json));
+        } catch (RejectedExecutionException e) {
+            ctx.status(STATUS_BUSY);
+            ctx.result(ResponseEncoder.error(BUSY_MESSAGE, json));
+        }
+    }
+
+    CompletableFuture<String> submit(Work work, boolean json) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(run(work, json));
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            throw e;
+        }
+        return future;
+    }
+
+    private static String run(Work work, boolean json) {
+        try {
+            return work.run(json);
+        } catch (Exception e) {
+            return ResponseEncoder.error(e.getMessage(), json);
+        }
+    }
+
+    public boolean isAsync() {
+        return executor != null;
+    }
+
+    public int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+
+    public int getConcurrency() {
+        return executor == null ? 0 : executor.getMaximumPoolSize();
+    }
+
+    public long getCompletedCount() {
+        return executor == null ? 0 : executor.getCompletedTaskCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
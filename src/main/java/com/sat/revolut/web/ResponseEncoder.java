@@ -0,0 +1,96 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.domain.Account;
+import io.javalin.http.Context;
+
+// Builds response bodies in a pre-sized buffer reused per thread, so a response costs the final String only.
+// Plain text by default, the same text the endpoints always returned. Clients sending Accept: application/json
+// get compact JSON instead : {"accountId":3,"balance":"25000.00"}, {"accountId":1,"status":"DEPOSITED"},
+// {"message":"..."} for transfers and {"error":"..."} for failures.
+public final class ResponseEncoder {
+
+    public static final String CONTENT_TYPE_JSON = "application/json";
+    static final int BUFFER_SIZE = 256;
+    // Buffers grown past this by a long message are dropped rather than kept for the life of the thread.
+    static final int MAX_RETAINED_BUFFER_SIZE = 4096;
+    static final String DEPOSITED = "DEPOSITED";
+    static final String WITHDRAWN = "WITHDRAWN";
+    static final String CREATED = "CREATED";
+
+    private static final ThreadLocal<StringBuilder> BUFFERS = ThreadLocal.withInitial(() -> new StringBuilder(BUFFER_SIZE));
+
+    private ResponseEncoder() {
+    }
+
+    public static boolean acceptsJson(Context ctx) {
+        String accept = ctx.header("Accept");
+        return accept != null && accept.contains(CONTENT_TYPE_JSON);
+    }
+
+    public static String account(Account account, boolean json) {
+        StringBuilder buffer = buffer();
+        if (!json) {
+            return release(account.appendTo(buffer));
+        }
+        buffer.append("{\"accountId\":").append(account.getAccountId()).append(",\"balance\":\"");
+        account.getTotalBalance().appendTo(buffer);
+        return release(buffer.append("\"}"));
+    }
+
+    public static String deposited(long accountId, boolean json) {
+        if (json) {
+            return status(accountId, DEPOSITED);
+        }
+        return release(buffer().append("Amount deposited in account ").append(accountId).append(" successfully!"));
+    }
+
+    public static String withdrawn(long accountId, boolean json) {
+        if (json) {
+            return status(accountId, WITHDRAWN);
+        }
+        return release(buffer().append("Withdraw from account ").append(accountId).append("  completed successfully!"));
+    }
+
+    public static String created(long accountId, boolean json) {
+        if (json) {
+            return status(accountId, CREATED);
+        }
+        return release(buffer().append("Account ").append(accountId).append("  created successfully!"));
+    }
+
+    public static String message(String message, boolean json) {
+        return json ? field("message", message) : message;
+    }
+
+    public static String error(String message, boolean json) {
+        return json ? field("error", message) : message;
+    }
+
+    private static String status(long accountId, String status) {
+        return release(buffer().append("{\"accountId\":").append(accountId).append(",\"status\":\"").append(status).append("\"}"));
+    }
+
+    private static String field(String name, String value) {
+        StringBuilder buffer = buffer().append("{\"").append(name).append("\":");
+        if (value == null) {
+            buffer.append("null");
+        } else {
+            TransferBatchCodec.appendString(buffer, value);
+        }
+        return release(buffer.append('}'));
+    }
+
+    private static StringBuilder buffer() {
+        StringBuilder buffer = BUFFERS.get();
+        buffer.setLength(0);
+        return buffer;
+    }
+
+    private static String release(StringBuilder buffer) {
+        String body = buffer.toString();
+        if (buffer.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            BUFFERS.remove();
+        }
+        return body;
+    }
+}
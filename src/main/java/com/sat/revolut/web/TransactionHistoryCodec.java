@@ -0,0 +1,76 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.dao.TransactionHistory;
+import com.sat.revolut.domain.TransactionEntry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+// Query parameters and JSON body of a transaction history page :
+// {"accountId":1,"transactions":[{"id":42,"timestamp":1700000000000,"type":"TRANSFER","amount":"-10.00","counterpartyId":2}],
+//  "next":"1700000000000_42"}
+// next is the before parameter of the following page, null on the last one. Entries are written one at a time.
+public final class TransactionHistoryCodec {
+
+    public static final String PARAM_LIMIT = "limit";
+    public static final String PARAM_BEFORE = "before";
+    private static final char CURSOR_SEPARATOR = '_';
+    private static final int ENTRY_SIZE = 128;
+
+    private TransactionHistoryCodec() {
+    }
+
+    // {timestamp, id} bounds of the page after the cursor, those of the first page when cursor is null.
+    public static long[] parseCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return new long[]{Long.MAX_VALUE, Long.MAX_VALUE};
+        }
+        int separator = cursor.indexOf(CURSOR_SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid " + PARAM_BEFORE + " cursor : " + cursor);
+        }
+        return new long[]{QueryParams.parseLong(cursor, 0, separator), QueryParams.parseLong(cursor, separator + 1, cursor.length())};
+    }
+
+    public static int parseLimit(String limit, int maxLimit) {
+        if (limit == null || limit.isEmpty()) {
+            return Math.min(TransactionHistory.DEFAULT_PAGE_SIZE, maxLimit);
+        }
+        long value = QueryParams.parseLong(limit, 0, limit.length());
+        if (value < 1 || value > maxLimit) {
+            throw new IllegalArgumentException(PARAM_LIMIT + " should be between 1 and " + maxLimit);
+        }
+        return (int) value;
+    }
+
+    // A full page may be followed by more entries, a shorter one is the last.
+    public static void write(Long accountId, List<TransactionEntry> entries, int limit, Writer writer) throws IOException {
+        StringBuilder entry = new StringBuilder(ENTRY_SIZE);
+        writer.write("{\"accountId\":");
+        writer.write(Long.toString(accountId));
+        writer.write(",\"transactions\":[");
+        for (int i = 0; i < entries.size(); i++) {
+            TransactionEntry transaction = entries.get(i);
+            entry.setLength(0);
+            if (i > 0) {
+                entry.append(',');
+            }
+            entry.append("{\"id\":").append(transaction.getId())
+                    .append(",\"timestamp\":").append(transaction.getTimestamp())
+                    .append(",\"type\":\"").append(transaction.getType().name())
+                    .append("\",\"amount\":\"");
+            transaction.getAmount().appendTo(entry).append("\",\"counterpartyId\":").append(transaction.getCounterpartyId()).append('}');
+            writer.append(entry);
+        }
+        writer.write("],\"next\":");
+        if (entries.size() < limit || entries.isEmpty()) {
+            writer.write("null}");
+            return;
+        }
+        TransactionEntry last = entries.get(entries.size() - 1);
+        entry.setLength(0);
+        entry.append('"').append(last.getTimestamp()).append(CURSOR_SEPARATOR).append(last.getId()).append("\"}");
+        writer.append(entry);
+    }
+}
@@ -0,0 +1,223 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.domain.TransferResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads batch transfer requests and writes their per transfer results.
+// Request body is either CSV, one "fromAccountId,toAccountId,amount" line per transfer with an optional header line,
+// or a JSON array of {"fromAccountId":1,"toAccountId":2,"amount":"10.50"} objects.
+public final class TransferBatchCodec {
+
+    public static final String CONTENT_TYPE_CSV = "text/csv";
+    static final String FROM_ACCOUNT_ID = "fromAccountId";
+    static final String TO_ACCOUNT_ID = "toAccountId";
+    static final String AMOUNT = "amount";
+
+    private TransferBatchCodec() {
+    }
+
+    public static List<Transfer> parse(String body, String contentType, int maxTransfers) {
+        if (body == null || body.trim().isEmpty()) {
+            throw new IllegalArgumentException("Batch body is empty");
+        }
+        if (contentType != null && contentType.startsWith(CONTENT_TYPE_CSV)) {
+            return parseCsv(body, maxTransfers);
+        }
+        return parseJson(body, maxTransfers);
+    }
+
+    static List<Transfer> parseCsv(String body, int maxTransfers) {
+        List<Transfer> transfers = new ArrayList<>();
+        int lineNumber = 0;
+        int start = 0;
+        while (start < body.length()) {
+            int end = body.indexOf('\n', start);
+            if (end < 0) {
+                end = body.length();
+            }
+            lineNumber++;
+            String line = body.substring(start, end).trim();
+            start = end + 1;
+            if (line.isEmpty() || (lineNumber == 1 && line.startsWith(FROM_ACCOUNT_ID))) {
+                continue;
+            }
+
+            String[] fields = line.split(",");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Line " + lineNumber + " should have 3 fields : fromAccountId,toAccountId,amount");
+            }
+            checkSize(transfers, maxTransfers);
+            try {
+                transfers.add(new Transfer(Long.parseLong(fields[0].trim()), Long.parseLong(fields[1].trim()), Money.parse(fields[2].trim())));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + " is invalid : " + e.getMessage());
+            }
+        }
+        return transfers;
+    }
+
+    static List<Transfer> parseJson(String body, int maxTransfers) {
+        JsonCursor cursor = new JsonCursor(body);
+        List<Transfer> transfers = new ArrayList<>();
+        cursor.expect('[');
+        if (cursor.consumeIf(']')) {
+            cursor.expectEnd();
+            return transfers;
+        }
+        do {
+            checkSize(transfers, maxTransfers);
+            transfers.add(readTransfer(cursor));
+        } while (cursor.consumeIf(','));
+        cursor.expect(']');
+        cursor.expectEnd();
+        return transfers;
+    }
+
+    public static String encode(List<TransferResult> results) {
+        StringBuilder json = new StringBuilder(results.size() * 96 + 2).append('[');
+        for (int i = 0; i < results.size(); i++) {
+            TransferResult result = results.get(i);
+            Transfer transfer = result.getTransfer();
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"").append(FROM_ACCOUNT_ID).append("\":").append(transfer.getFromAccountId())
+                    .append(",\"").append(TO_ACCOUNT_ID).append("\":").append(transfer.getToAccountId())
+                    .append(",\"").append(AMOUNT).append("\":\"");
+            transfer.getAmount().appendTo(json)
+                    .append("\",\"status\":\"").append(result.getStatus().name()).append('"');
+            if (result.getMessage() != null) {
+                json.append(",\"message\":");
+                appendString(json, result.getMessage());
+            }
+            json.append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private static Transfer readTransfer(JsonCursor cursor) {
+        Long fromAccountId = null;
+        Long toAccountId = null;
+        Money amount = null;
+        cursor.expect('{');
+        if (!cursor.consumeIf('}')) {
+            do {
+                String field = cursor.readString();
+                cursor.expect(':');
+                String value = cursor.readScalar();
+                try {
+                    if (FROM_ACCOUNT_ID.equals(field)) {
+                        fromAccountId = Long.parseLong(value);
+                    } else if (TO_ACCOUNT_ID.equals(field)) {
+                        toAccountId = Long.parseLong(value);
+                    } else if (AMOUNT.equals(field)) {
+                        amount = Money.parse(value);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Invalid value for " + field + " before position " + cursor.position + " : " + e.getMessage());
+                }
+            } while (cursor.consumeIf(','));
+            cursor.expect('}');
+        }
+        if (fromAccountId == null || toAccountId == null || amount == null) {
+            throw new IllegalArgumentException("Transfer before position " + cursor.position + " should have fromAccountId, toAccountId and amount");
+        }
+        return new Transfer(fromAccountId, toAccountId, amount);
+    }
+
+    private static void checkSize(List<Transfer> transfers, int maxTransfers) {
+        if (transfers.size() >= maxTransfers) {
+            throw new IllegalArgumentException("Batch has more than " + maxTransfers + " transfers");
+        }
+    }
+
+    // Just enough JSON to read a flat array of objects with string or number values.
+    private static final class JsonCursor {
+        private final String text;
+        private int position = 0;
+
+        JsonCursor(String text) {
+            this.text = text;
+        }
+
+        void expect(char expected) {
+            skipWhitespace();
+            if (position >= text.length() || text.charAt(position) != expected) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at position " + position);
+            }
+            position++;
+        }
+
+        boolean consumeIf(char expected) {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expectEnd() {
+            skipWhitespace();
+            if (position != text.length()) {
+                throw new IllegalArgumentException("Unexpected content at position " + position);
+            }
+        }
+
+        String readString() {
+            expect('"');
+            int start = position;
+            while (position < text.length() && text.charAt(position) != '"') {
+                if (text.charAt(position) == '\\') {
+                    throw new IllegalArgumentException("Escaped characters are not supported, position " + position);
+                }
+                position++;
+            }
+            if (position >= text.length()) {
+                throw new IllegalArgumentException("Unterminated string starting at position " + start);
+            }
+            return text.substring(start, position++);
+        }
+
+        // Number or string value, returned as its raw text.
+        String readScalar() {
+            skipWhitespace();
+            if (position < text.length() && text.charAt(position) == '"') {
+                return readString();
+            }
+            int start = position;
+            while (position < text.length() && "-+.0123456789".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            if (start == position) {
+                throw new IllegalArgumentException("Expected a number or string at position " + position);
+            }
+            return text.substring(start, position);
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
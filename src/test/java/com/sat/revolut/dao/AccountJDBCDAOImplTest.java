@@ -0,0 +1,162 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionEntry;
+import com.sat.revolut.domain.TransactionType;
+import com.sat.revolut.domain.Transfer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class AccountJDBCDAOImplTest {
+
+    @Test
+    void migratesVarcharBalanceToMinorUnits() throws SQLException {
+        String url = "jdbc:h2:mem:migration_test;DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(url, "", "");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE Account(id long primary key, balance varchar(255))");
+            stmt.execute("INSERT INTO Account(id, balance) VALUES(1, '10000')");
+            stmt.execute("INSERT INTO Account(id, balance) VALUES(2, '15.5')");
+        }
+
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl(url);
+        AccountJDBCDAOImpl accountDAO = new AccountJDBCDAOImpl(config);
+
+        Assertions.assertEquals(Money.of(10000), accountDAO.get(1l).getTotalBalance());
+        Assertions.assertEquals(Money.parse("15.50"), accountDAO.get(2l).getTotalBalance());
+        Assertions.assertTrue(accountDAO.transfer(1l, 2l, Money.parse("0.50")));
+        Assertions.assertEquals(Money.of(16), accountDAO.get(2l).getTotalBalance());
+
+        // The version column is added to the existing table, every write bumps it.
+        long version = accountDAO.get(2l).getVersion();
+        Assertions.assertFalse(accountDAO.compareAndSetBalance(2l, version - 1, Money.of(20)));
+        Assertions.assertTrue(accountDAO.compareAndSetBalance(2l, version, Money.of(20)));
+        Assertions.assertEquals(version + 1, accountDAO.get(2l).getVersion());
+        Assertions.assertEquals(Money.of(20), accountDAO.get(2l).getTotalBalance());
+
+        // Sub cent balances would be rounded, the migration is refused and the column left as it was.
+        String roundingUrl = "jdbc:h2:mem:migration_rounding_test;DB_CLOSE_DELAY=-1";
+        try (Connection connection = DriverManager.getConnection(roundingUrl, "", "");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE Account(id long primary key, balance varchar(255))");
+            stmt.execute("INSERT INTO Account(id, balance) VALUES(1, '10.50')");
+            stmt.execute("INSERT INTO Account(id, balance) VALUES(2, '15.505')");
+            stmt.execute("INSERT INTO Account(id, balance) VALUES(3, '0.001')");
+        }
+        ConnectionPoolConfig roundingConfig = new ConnectionPoolConfig();
+        roundingConfig.setJdbcUrl(roundingUrl);
+        SQLException refused = Assertions.assertThrows(SQLException.class, () -> new AccountJDBCDAOImpl(roundingConfig));
+        Assertions.assertTrue(refused.getMessage().endsWith("[2, 3]"), refused.getMessage());
+        try (Connection connection = DriverManager.getConnection(roundingUrl, "", "");
+             Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT balance FROM Account WHERE id = 2")) {
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals("15.505", rs.getString(1));
+        }
+    }
+
+    @Test
+    void getAllReadsExistingAccountsAcrossChunks() throws SQLException {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:multi_get_test;DB_CLOSE_DELAY=-1");
+        AccountJDBCDAOImpl accountDAO = new AccountJDBCDAOImpl(config);
+        List<Long> accountIds = new ArrayList<>();
+        for (long accountId = 100; accountId < 100 + AccountJDBCDAOImpl.MULTI_GET_CHUNK_SIZE + 10; accountId++) {
+            accountDAO.create(accountId, Money.ofMinor(accountId));
+            accountIds.add(accountId);
+        }
+        accountIds.add(-5l);
+        accountIds.add(100l);
+
+        List<Account> accounts = accountDAO.getAll(accountIds);
+        Assertions.assertEquals(AccountJDBCDAOImpl.MULTI_GET_CHUNK_SIZE + 10, accounts.size());
+        for (Account account : accounts) {
+            Assertions.assertEquals(Money.ofMinor(account.getAccountId()), account.getTotalBalance());
+        }
+        Assertions.assertEquals(Money.of(15000), accountDAO.getAll(Arrays.asList(2l, 999999l)).get(0).getTotalBalance());
+        Assertions.assertTrue(accountDAO.getAll(new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    void historyIsWrittenWithEveryChangeAndPagedNewestFirst() throws SQLException {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:history_test;DB_CLOSE_DELAY=-1");
+        AccountJDBCDAOImpl accountDAO = new AccountJDBCDAOImpl(config);
+        accountDAO.setTransactionHistory(new TransactionHistory(accountDAO.getConnectionPool()));
+
+        accountDAO.create(10l, Money.of(100));
+        accountDAO.credit(10l, Money.of(5));
+        Assertions.assertTrue(accountDAO.debit(10l, Money.of(15)));
+        Assertions.assertFalse(accountDAO.debit(10l, Money.of(1000)));
+        accountDAO.update(10l, Money.of(80));
+        Assertions.assertTrue(accountDAO.transfer(10l, 1l, Money.of(30)));
+        Assertions.assertArrayEquals(new boolean[]{true, false},
+                accountDAO.transferBatch(Arrays.asList(new Transfer(1l, 10l, Money.of(20)), new Transfer(10l, 1l, Money.of(1000)))));
+
+        TransactionHistory history = accountDAO.getTransactionHistory();
+        List<TransactionEntry> entries = new ArrayList<>();
+        long[] before = {Long.MAX_VALUE, Long.MAX_VALUE};
+        while (true) {
+            List<TransactionEntry> page = history.page(10l, before[0], before[1], 2);
+            entries.addAll(page);
+            if (page.size() < 2) {
+                break;
+            }
+            TransactionEntry last = page.get(page.size() - 1);
+            before = new long[]{last.getTimestamp(), last.getId()};
+        }
+
+        Assertions.assertEquals(6, entries.size());
+        Assertions.assertEquals(TransactionType.TRANSFER, entries.get(0).getType());
+        Assertions.assertEquals(Money.of(20), entries.get(0).getAmount());
+        Assertions.assertEquals(Long.valueOf(1l), entries.get(0).getCounterpartyId());
+        Assertions.assertEquals(Money.of(-30), entries.get(1).getAmount());
+        Assertions.assertEquals(TransactionType.WITHDRAW, entries.get(2).getType());
+        Assertions.assertEquals(Money.of(-10), entries.get(2).getAmount());
+        Assertions.assertEquals(Money.of(-15), entries.get(3).getAmount());
+        Assertions.assertEquals(Money.of(5), entries.get(4).getAmount());
+        Assertions.assertEquals(TransactionType.CREATE, entries.get(5).getType());
+        Assertions.assertNull(entries.get(5).getCounterpartyId());
+    }
+
+    @Test
+    void fileDatabaseKeepsItsAccountsAcrossRestarts(@TempDir Path directory) throws SQLException {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl(ConnectionPoolConfig.jdbcUrl(ConnectionPoolConfig.Mode.FILE, directory.resolve("bank").toString(),
+                null, 4096, 0, null));
+        AccountJDBCDAOImpl accountDAO = new AccountJDBCDAOImpl(config);
+        accountDAO.create(77l, Money.of(7));
+        accountDAO.update(1l, Money.of(1));
+        accountDAO.getConnectionPool().close();
+
+        AccountJDBCDAOImpl reopened = new AccountJDBCDAOImpl(config);
+        Assertions.assertEquals(Money.of(7), reopened.get(77l).getTotalBalance());
+        Assertions.assertEquals(Money.of(1), reopened.get(1l).getTotalBalance());
+        reopened.getConnectionPool().close();
+    }
+
+    @Test
+    void urlFollowsModeAndStorageSettings() {
+        Assertions.assertEquals("jdbc:h2:mem:test;DB_CLOSE_DELAY=-1",
+                ConnectionPoolConfig.jdbcUrl(ConnectionPoolConfig.Mode.MEM, "ignored", "ignored", null, null, null));
+        Assertions.assertEquals("jdbc:h2:file:./data/bank;CACHE_SIZE=65536;WRITE_DELAY=0;LOCK_MODE=3",
+                ConnectionPoolConfig.jdbcUrl(ConnectionPoolConfig.Mode.FILE, "./data/bank", null, 65536, 0, 3));
+        Assertions.assertEquals("jdbc:h2:tcp://db:9092/bank",
+                ConnectionPoolConfig.jdbcUrl(ConnectionPoolConfig.Mode.SERVER, "bank", "db:9092", null, null, null));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> ConnectionPoolConfig.jdbcUrl(ConnectionPoolConfig.Mode.MEM, null, null, null, null, 4));
+    }
+}
@@ -0,0 +1,59 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Money;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+
+class CachingAccountServiceTest {
+
+    private static AccountJDBCDAOImpl accountDAO;
+    private CachingAccountService cachingService;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        if (accountDAO == null) {
+            ConnectionPoolConfig config = new ConnectionPoolConfig();
+            config.setJdbcUrl("jdbc:h2:mem:cache_test;DB_CLOSE_DELAY=-1");
+            accountDAO = new AccountJDBCDAOImpl(config);
+        }
+        AccountServiceImpl accountService = new AccountServiceImpl();
+        accountService.setAccountDAO(accountDAO);
+        cachingService = new CachingAccountService(accountService, 16);
+    }
+
+    @Test
+    void readsAreServedFromCacheAfterFirstMiss() throws SQLException {
+        Money balance = cachingService.get(1l).getTotalBalance();
+        Assertions.assertEquals(balance, cachingService.get(1l).getTotalBalance());
+        Assertions.assertEquals(1, cachingService.getMissCount());
+        Assertions.assertEquals(1, cachingService.getHitCount());
+        Assertions.assertNull(cachingService.get(-1l));
+    }
+
+    @Test
+    void writesGoThroughToDatabaseAndCache() throws SQLException {
+        cachingService.create(40l, Money.of(100));
+        cachingService.create(41l, Money.of(100));
+        Assertions.assertTrue(cachingService.transfer(40l, 41l, Money.of(30)));
+        cachingService.update(40l, Money.of(5));
+
+        Assertions.assertEquals(Money.of(5), cachingService.get(40l).getTotalBalance());
+        Assertions.assertEquals(Money.of(130), cachingService.get(41l).getTotalBalance());
+        Assertions.assertEquals(0, cachingService.getMissCount());
+        Assertions.assertEquals(Money.of(5), accountDAO.get(40l).getTotalBalance());
+        Assertions.assertEquals(Money.of(130), accountDAO.get(41l).getTotalBalance());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedAccounts() throws SQLException {
+        for (long accountId = 1000; accountId < 1100; accountId++) {
+            cachingService.create(accountId, Money.of(10));
+        }
+        Assertions.assertTrue(cachingService.getSize() <= 16);
+        Assertions.assertEquals(100 - cachingService.getSize(), cachingService.getEvictionCount());
+        Assertions.assertEquals(Money.of(10), cachingService.get(1000l).getTotalBalance());
+    }
+}
@@ -0,0 +1,66 @@
+package com.sat.revolut.dao;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+
+class ConnectionPoolTest {
+
+    @Test
+    void reusesConnectionsAndStatements() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(poolConfig(1));
+        PreparedStatement first;
+        try (PooledConnection connection = pool.acquire()) {
+            first = connection.prepareStatement("SELECT 1");
+            Assertions.assertEquals(1, pool.getActiveCount());
+        }
+        try (PooledConnection connection = pool.acquire()) {
+            Assertions.assertSame(first, connection.prepareStatement("SELECT 1"));
+        }
+        Assertions.assertEquals(1, pool.getTotalCount());
+        Assertions.assertEquals(1, pool.getIdleCount());
+        Assertions.assertEquals(0, pool.getActiveCount());
+        pool.close();
+    }
+
+    @Test
+    void closingTwiceReleasesOnce() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(poolConfig(1));
+        PooledConnection connection = pool.acquire();
+        connection.close();
+        connection.close();
+        Assertions.assertEquals(1, pool.getIdleCount());
+
+        // The only connection is handed out once, the next caller waits for it instead of sharing it.
+        try (PooledConnection reacquired = pool.acquire()) {
+            Assertions.assertSame(connection, reacquired);
+            Assertions.assertThrows(SQLTimeoutException.class, pool::acquire);
+        }
+        Assertions.assertEquals(1, pool.getIdleCount());
+        pool.close();
+    }
+
+    @Test
+    void timesOutWhenExhausted() throws SQLException {
+        ConnectionPool pool = new ConnectionPool(poolConfig(1));
+        try (PooledConnection connection = pool.acquire()) {
+            Assertions.assertThrows(SQLTimeoutException.class, pool::acquire);
+        }
+        Assertions.assertEquals(1, pool.getTimeoutCount());
+        Assertions.assertEquals(1, pool.getWaitCount());
+        Assertions.assertTrue(pool.getWaitTimeNanos() > 0);
+        pool.close();
+    }
+
+    private ConnectionPoolConfig poolConfig(int maxPoolSize) {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:pool_test;DB_CLOSE_DELAY=-1");
+        config.setMaxPoolSize(maxPoolSize);
+        config.setMinIdle(0);
+        config.setAcquireTimeoutMillis(50);
+        return config;
+    }
+}
@@ -0,0 +1,76 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Money;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class GroupCommitAccountDAOTest {
+
+    @Test
+    void concurrentWritesAreCommittedInGroups() throws Exception {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:group_commit_test;DB_CLOSE_DELAY=-1");
+        // A 50 ms window is far longer than it takes the writers below to queue, they have to share groups.
+        GroupCommitAccountDAO accountDAO = new GroupCommitAccountDAO(new AccountJDBCDAOImpl(config), 50000, 16);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (long accountId = 100; accountId < 164; accountId++) {
+            long id = accountId;
+            futures.add(executor.submit(() -> {
+                start.await();
+                accountDAO.create(id, Money.of(10));
+                return accountDAO.transfer(id, 1l, Money.of(4));
+            }));
+        }
+        start.countDown();
+        executor.shutdown();
+        for (Future<Boolean> future : futures) {
+            Assertions.assertTrue(future.get(30, TimeUnit.SECONDS));
+        }
+
+        Assertions.assertEquals(Money.of(6), accountDAO.get(100l).getTotalBalance());
+        Assertions.assertEquals(Money.of(10000 + 64 * 4), accountDAO.get(1l).getTotalBalance());
+        Assertions.assertEquals(128, accountDAO.getWriteCount());
+        Assertions.assertTrue(accountDAO.getMaxObservedGroupSize() > 1);
+        Assertions.assertTrue(accountDAO.getGroupCount() < accountDAO.getWriteCount());
+
+        // A failing write is rolled back alone, a low balance transfer is simply not applied.
+        Assertions.assertThrows(SQLException.class, () -> accountDAO.create(100l, Money.of(10)));
+        Assertions.assertFalse(accountDAO.transfer(100l, 1l, Money.of(100)));
+        Assertions.assertEquals(Money.of(6), accountDAO.get(100l).getTotalBalance());
+        accountDAO.shutdown();
+    }
+
+    @Test
+    void runtimeFailuresFailOneWriteAndShutdownRejectsLaterWrites() throws Exception {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:group_commit_failure_test;DB_CLOSE_DELAY=-1");
+        GroupCommitAccountDAO accountDAO = new GroupCommitAccountDAO(new AccountJDBCDAOImpl(config), 200, 16);
+
+        // A null amount blows up inside the committer, the writes after it still go through.
+        Assertions.assertThrows(NullPointerException.class, () -> accountDAO.credit(1l, null));
+        accountDAO.credit(2l, Money.of(5));
+        Assertions.assertEquals(Money.of(15005), accountDAO.get(2l).getTotalBalance());
+
+        accountDAO.shutdown();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> afterShutdown = executor.submit(() -> {
+            Assertions.assertThrows(SQLException.class, () -> accountDAO.credit(2l, Money.of(5)));
+            return null;
+        });
+        afterShutdown.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+        Assertions.assertEquals(Money.of(15005), accountDAO.get(2l).getTotalBalance());
+    }
+}
@@ -0,0 +1,106 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.exception.JournalFailedException;
+import com.sat.revolut.journal.Journal;
+import com.sat.revolut.journal.SnapshotStore;
+import com.sat.revolut.journal.Snapshotter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+class JournalingAccountServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private static AccountServiceImpl newService(String database) throws SQLException {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+        AccountServiceImpl accountService = new AccountServiceImpl();
+        accountService.setAccountDAO(new AccountJDBCDAOImpl(config));
+        return accountService;
+    }
+
+    @Test
+    void balancesAreRebuiltFromTheJournal() throws SQLException, IOException {
+        try (Journal journal = Journal.open(directory, 1 << 16, Journal.FsyncPolicy.GROUP, 10)) {
+            JournalingAccountService service = new JournalingAccountService(newService("journal_before"), journal);
+            service.create(50l, Money.of(100));
+            service.create(51l, Money.of(10));
+            Assertions.assertTrue(service.transfer(50l, 51l, Money.of(30)));
+            service.update(51l, Money.of(25));
+            service.transferBatch(Arrays.asList(new Transfer(50l, 51l, Money.of(5)), new Transfer(1l, 50l, Money.of(1))));
+            Assertions.assertEquals(6, journal.getLastSequence());
+        }
+
+        AccountServiceImpl restarted = newService("journal_after");
+        Money seededBalance = restarted.get(1l).getTotalBalance();
+        try (Journal journal = Journal.open(directory, 1 << 16, Journal.FsyncPolicy.GROUP, 10)) {
+            JournalingAccountService service = new JournalingAccountService(restarted, journal);
+            Assertions.assertEquals(6, service.recover());
+            Assertions.assertEquals(6, journal.getLastSequence());
+        }
+        Assertions.assertEquals(Money.of(66), restarted.get(50l).getTotalBalance());
+        Assertions.assertEquals(Money.of(30), restarted.get(51l).getTotalBalance());
+        Assertions.assertEquals(seededBalance.minus(Money.ONE), restarted.get(1l).getTotalBalance());
+    }
+
+    @Test
+    void snapshotPlusJournalTailRestoresBalances() throws SQLException, IOException {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:snapshot_before;DB_CLOSE_DELAY=-1");
+        AccountJDBCDAOImpl accountDAO = new AccountJDBCDAOImpl(config);
+        AccountServiceImpl accountService = new AccountServiceImpl();
+        accountService.setAccountDAO(accountDAO);
+        SnapshotStore snapshotStore = new SnapshotStore(directory.resolve("snapshots"), 2);
+        long snapshotSequence;
+        try (Journal journal = Journal.open(directory.resolve("journal"), 1 << 16, Journal.FsyncPolicy.GROUP, 10)) {
+            JournalingAccountService service = new JournalingAccountService(accountService, journal);
+            service.create(60l, Money.of(100));
+            service.create(61l, Money.of(100));
+            snapshotSequence = new Snapshotter(journal, snapshotStore, accountDAO::forEachBalance).snapshot();
+            Assertions.assertTrue(service.transfer(60l, 61l, Money.of(40)));
+        }
+
+        ConnectionPoolConfig restartedConfig = new ConnectionPoolConfig();
+        restartedConfig.setJdbcUrl("jdbc:h2:mem:snapshot_after;DB_CLOSE_DELAY=-1");
+        AccountJDBCDAOImpl restartedDAO = new AccountJDBCDAOImpl(restartedConfig);
+        AccountServiceImpl restarted = new AccountServiceImpl();
+        restarted.setAccountDAO(restartedDAO);
+        SnapshotStore.Snapshot snapshot = snapshotStore.loadLatest();
+        Assertions.assertEquals(snapshotSequence, snapshot.getJournalSequence());
+        Assertions.assertEquals(5, restartedDAO.loadBalances(snapshot.getEntries()));
+        Assertions.assertEquals(Money.of(100), restarted.get(61l).getTotalBalance());
+        try (Journal journal = Journal.open(directory.resolve("journal"), 1 << 16, Journal.FsyncPolicy.GROUP, 10)) {
+            Assertions.assertEquals(1, new JournalingAccountService(restarted, journal).recover(snapshot.getJournalSequence()));
+        }
+        Assertions.assertEquals(Money.of(60), restarted.get(60l).getTotalBalance());
+        Assertions.assertEquals(Money.of(140), restarted.get(61l).getTotalBalance());
+    }
+
+    @Test
+    void journalFailureRefusesLaterWrites() throws SQLException, IOException {
+        AccountServiceImpl accountService = newService("journal_failure");
+        Journal journal = Journal.open(directory, 1 << 16, Journal.FsyncPolicy.GROUP, 10);
+        JournalingAccountService service = new JournalingAccountService(accountService, journal);
+        service.create(70l, Money.of(100));
+        Assertions.assertTrue(service.isHealthy());
+        journal.close();
+
+        // Applied but not journaled : reported as such, never as a retryable SQLException.
+        Assertions.assertThrows(JournalFailedException.class, () -> service.credit(70l, Money.of(5)));
+        Assertions.assertEquals(Money.of(105), accountService.get(70l).getTotalBalance());
+        Assertions.assertFalse(service.isHealthy());
+
+        Assertions.assertThrows(SQLException.class, () -> service.credit(70l, Money.of(5)));
+        Assertions.assertThrows(SQLException.class, () -> service.transfer(70l, 1l, Money.of(5)));
+        Assertions.assertEquals(Money.of(105), accountService.get(70l).getTotalBalance());
+    }
+}
@@ -0,0 +1,110 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.LongBuffer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+class OffHeapAccountDAOTest {
+
+    @Test
+    void behavesLikeTheJdbcDAO() throws SQLException {
+        OffHeapAccountDAO accountDAO = new OffHeapAccountDAO(16);
+        accountDAO.create(1l, Money.of(100));
+        accountDAO.create(2l, Money.of(10));
+        Assertions.assertThrows(SQLException.class, () -> accountDAO.create(1l, Money.ONE));
+        Assertions.assertThrows(SQLException.class, () -> accountDAO.create(0l, Money.ONE));
+        Assertions.assertNull(accountDAO.get(3l));
+
+        accountDAO.update(2l, Money.of(20));
+        accountDAO.update(3l, Money.of(20));
+        Assertions.assertEquals(Money.of(20), accountDAO.get(2l).getTotalBalance());
+        Assertions.assertNull(accountDAO.get(3l));
+
+        Assertions.assertTrue(accountDAO.transfer(1l, 2l, Money.of(30)));
+        Assertions.assertFalse(accountDAO.transfer(1l, 2l, Money.of(71)));
+        Assertions.assertFalse(accountDAO.transfer(3l, 2l, Money.ONE));
+        Assertions.assertThrows(SQLException.class, () -> accountDAO.transfer(1l, 3l, Money.ONE));
+        Assertions.assertEquals(Money.of(70), accountDAO.get(1l).getTotalBalance());
+        Assertions.assertEquals(Money.of(50), accountDAO.get(2l).getTotalBalance());
+    }
+
+    @Test
+    void failedBatchLeavesBalancesUnchanged() throws SQLException {
+        OffHeapAccountDAO accountDAO = new OffHeapAccountDAO(16);
+        accountDAO.create(1l, Money.of(100));
+        accountDAO.create(2l, Money.of(100));
+
+        boolean[] transferred = accountDAO.transferBatch(Arrays.asList(new Transfer(1l, 2l, Money.of(60)),
+                new Transfer(1l, 2l, Money.of(60)), new Transfer(2l, 1l, Money.of(160))));
+        Assertions.assertArrayEquals(new boolean[]{true, false, true}, transferred);
+        Assertions.assertEquals(Money.of(200), accountDAO.get(1l).getTotalBalance());
+
+        Assertions.assertThrows(SQLException.class, () -> accountDAO.transferBatch(Arrays.asList(
+                new Transfer(1l, 2l, Money.of(50)), new Transfer(2l, 9l, Money.ONE))));
+        Assertions.assertEquals(Money.of(200), accountDAO.get(1l).getTotalBalance());
+        Assertions.assertEquals(Money.ZERO, accountDAO.get(2l).getTotalBalance());
+    }
+
+    @Test
+    void growsAndRoundTripsThroughBulkAccess() throws SQLException {
+        OffHeapAccountDAO accountDAO = new OffHeapAccountDAO(16);
+        long initialBytes = accountDAO.getAllocatedBytes();
+        for (long accountId = 1; accountId <= 100000; accountId++) {
+            accountDAO.create(accountId, Money.ofMinor(accountId));
+        }
+        Assertions.assertEquals(100000, accountDAO.getSize());
+        Assertions.assertTrue(accountDAO.getAllocatedBytes() > initialBytes);
+
+        LongBuffer entries = LongBuffer.allocate(200000);
+        Assertions.assertEquals(100000, accountDAO.forEachBalance((accountId, balance) -> entries.put(accountId).put(balance)));
+        entries.flip();
+        OffHeapAccountDAO copy = new OffHeapAccountDAO(1000);
+        Assertions.assertEquals(100000, copy.loadBalances(entries));
+        for (long accountId = 1; accountId <= 100000; accountId += 997) {
+            Assertions.assertEquals(Money.ofMinor(accountId), copy.get(accountId).getTotalBalance());
+        }
+    }
+
+    @Test
+    void concurrentTransfersKeepTheTotal() throws Exception {
+        OffHeapAccountDAO accountDAO = new OffHeapAccountDAO(16);
+        for (long accountId = 1; accountId <= 50; accountId++) {
+            accountDAO.create(accountId, Money.of(1000));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int task = 0; task < 8; task++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 5000; i++) {
+                        long from = random.nextLong(1, 51);
+                        long to = from % 50 + 1;
+                        accountDAO.transfer(from, to, Money.of(random.nextLong(1, 20)));
+                        accountDAO.get(to);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        long[] total = new long[1];
+        accountDAO.forEachBalance((accountId, balance) -> total[0] += balance);
+        Assertions.assertEquals(Money.of(50000).getMinorUnits(), total[0]);
+    }
+}
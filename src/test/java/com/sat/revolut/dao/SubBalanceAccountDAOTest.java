@@ -0,0 +1,87 @@
+package com.sat.revolut.dao;
+
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class SubBalanceAccountDAOTest {
+
+    private static final Long HOT = 500l;
+
+    private static AccountJDBCDAOImpl accountJDBCDAO;
+    private SubBalanceAccountDAO accountDAO;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        if (accountJDBCDAO == null) {
+            ConnectionPoolConfig config = new ConnectionPoolConfig();
+            config.setJdbcUrl("jdbc:h2:mem:sub_balance_test;DB_CLOSE_DELAY=-1");
+            accountJDBCDAO = new AccountJDBCDAOImpl(config);
+        }
+        accountDAO = new SubBalanceAccountDAO(accountJDBCDAO, Collections.singleton(HOT), 4);
+        if (accountDAO.get(HOT) == null) {
+            accountDAO.create(HOT, Money.of(0));
+        }
+        accountDAO.update(HOT, Money.of(0));
+    }
+
+    @Test
+    void concurrentCreditsAddUpAcrossSubBalances() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> credits = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            credits.add(executor.submit(() -> {
+                accountDAO.credit(HOT, Money.of(1));
+                return null;
+            }));
+        }
+        for (Future<?> credit : credits) {
+            credit.get();
+        }
+        executor.shutdown();
+
+        Assertions.assertEquals(Money.of(400), accountDAO.get(HOT).getTotalBalance());
+        // Account row alone holds nothing, the whole balance sits in the sub-balances.
+        Assertions.assertEquals(Money.of(0), accountJDBCDAO.get(HOT).getTotalBalance());
+        Assertions.assertEquals(Money.of(400), accountDAO.getAll(Arrays.asList(HOT, 1l)).stream()
+                .filter(account -> account.getAccountId().equals(HOT)).findFirst().get().getTotalBalance());
+    }
+
+    @Test
+    void debitsBorrowFromSubBalances() throws SQLException {
+        accountDAO.credit(HOT, Money.of(30));
+        accountDAO.credit(HOT, Money.of(30));
+        long sweeps = accountDAO.getSweepCount();
+
+        Assertions.assertTrue(accountDAO.debit(HOT, Money.of(50)));
+        Assertions.assertEquals(sweeps + 1, accountDAO.getSweepCount());
+        Assertions.assertEquals(Money.of(10), accountDAO.get(HOT).getTotalBalance());
+        Assertions.assertFalse(accountDAO.debit(HOT, Money.of(11)));
+        Assertions.assertEquals(Money.of(10), accountDAO.get(HOT).getTotalBalance());
+    }
+
+    @Test
+    void transfersCreditAndDebitHotAccounts() throws SQLException {
+        Money before = accountDAO.get(1l).getTotalBalance();
+        Assertions.assertTrue(accountDAO.transfer(1l, HOT, Money.of(25)));
+        Assertions.assertEquals(Money.of(25), accountDAO.get(HOT).getTotalBalance());
+
+        boolean[] transferred = accountDAO.transferBatch(Arrays.asList(
+                new Transfer(HOT, 1l, Money.of(20)), new Transfer(HOT, 1l, Money.of(20))));
+        Assertions.assertArrayEquals(new boolean[]{true, false}, transferred);
+        Assertions.assertEquals(Money.of(5), accountDAO.get(HOT).getTotalBalance());
+        Assertions.assertEquals(before.minus(Money.of(5)), accountDAO.get(1l).getTotalBalance());
+        Assertions.assertThrows(SQLException.class, () -> accountDAO.compareAndSetBalance(HOT, 0, Money.of(1)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.sat.revolut.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+class MoneyTest {
+
+    @Test
+    void parseKeepsExactMinorUnits() {
+        Assertions.assertEquals(1000000, Money.parse("10000").getMinorUnits());
+        Assertions.assertEquals(1250, Money.parse("12.5").getMinorUnits());
+        Assertions.assertEquals(1205, Money.parse("12.05").getMinorUnits());
+        Assertions.assertEquals(1205, Money.parse("12.0500").getMinorUnits());
+        Assertions.assertEquals(-350, Money.parse("-3.50").getMinorUnits());
+        Assertions.assertEquals(50, Money.parse(".5").getMinorUnits());
+        Assertions.assertEquals(Long.MIN_VALUE, Money.parse("-92233720368547758.08").getMinorUnits());
+    }
+
+    @Test
+    void parseRejectsInexactOrInvalidAmounts() {
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.parse("0.001"));
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.parse("92233720368547758.08"));
+        Assertions.assertThrows(NumberFormatException.class, () -> Money.parse("1.2.3"));
+        Assertions.assertThrows(NumberFormatException.class, () -> Money.parse("12a"));
+        Assertions.assertThrows(NumberFormatException.class, () -> Money.parse("-"));
+        Assertions.assertThrows(NumberFormatException.class, () -> Money.parse(""));
+        Assertions.assertThrows(NumberFormatException.class, () -> Money.parse(null));
+    }
+
+    @Test
+    void bigDecimalConversionIsExact() {
+        Assertions.assertEquals(Money.parse("0.10"), Money.of(new BigDecimal("0.1")));
+        Assertions.assertEquals(Money.ofMinor(1), Money.of(new BigDecimal("0.0100")));
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("0.015")));
+        Assertions.assertEquals(new BigDecimal("19.99"), Money.parse("19.99").toBigDecimal());
+    }
+
+    @Test
+    void arithmeticIsExact() {
+        Money total = Money.ZERO;
+        for (int i = 0; i < 10; i++) {
+            total = total.plus(Money.parse("0.10"));
+        }
+        Assertions.assertEquals(Money.ONE, total);
+        Assertions.assertEquals(Money.parse("0.01"), Money.parse("100.00").minus(Money.parse("99.99")));
+        Assertions.assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)));
+        Assertions.assertTrue(Money.of(2).isGreaterThan(Money.ONE));
+    }
+
+    @Test
+    void formatsWithTwoDecimalPlaces() {
+        Assertions.assertEquals("1000.00", Money.of(1000).toString());
+        Assertions.assertEquals("0.05", Money.ofMinor(5).toString());
+        Assertions.assertEquals("-0.05", Money.ofMinor(-5).toString());
+        Assertions.assertEquals("-12.30", Money.parse("-12.3").toString());
+    }
+
+    @Test
+    void parsesRangeInPlace() {
+        String query = "accountId=1&amount=12.5&x=1";
+        Assertions.assertEquals(Money.ofMinor(1250), Money.parse(query, 19, 23));
+        NumberFormatException e = Assertions.assertThrows(NumberFormatException.class, () -> Money.parse(query, 12, 23));
+        Assertions.assertEquals("Invalid amount : amount=12.5", e.getMessage());
+    }
+}
@@ -3,14 +3,28 @@ package com.sat.revolut.handlers;
 import com.sat.revolut.dao.AccountJDBCDAOImpl;
 import com.sat.revolut.dao.AccountServiceImpl;
 import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.domain.TransferResult;
+import com.sat.revolut.domain.TransferStatus;
 import com.sat.revolut.exception.*;
 import com.sat.revolut.handlers.AccountHandler;
+import com.sat.revolut.metrics.MetricsRegistry;
+import com.sat.revolut.txlog.TransactionLog;
 import org.junit.jupiter.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
+import java.io.StringWriter;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 class AccountHandlerTest {
@@ -41,14 +55,14 @@ class AccountHandlerTest {
 
     @Test
     void transferAmount() {
-        BigDecimal amount = new BigDecimal(1000);
+        Money amount = Money.of(1000);
         Long fromAccountId = 1l;
         Long toAccountId = 3l;
-        BigDecimal currentFromBalance = null;
-        BigDecimal currentToAccountBalance = null;
+        Money currentFromBalance = null;
+        Money currentToAccountBalance = null;
 
-        BigDecimal newFromBalance = null;
-        BigDecimal newToAccountBalance = null;
+        Money newFromBalance = null;
+        Money newToAccountBalance = null;
         try {
             currentFromBalance = accountHandler.getAccount(fromAccountId).getTotalBalance();
             currentToAccountBalance = accountHandler.getAccount(toAccountId).getTotalBalance();
@@ -60,44 +74,157 @@ class AccountHandlerTest {
             Assertions.fail(e);
         }
 
-        Assertions.assertTrue(currentFromBalance.equals(newFromBalance.add(amount)), "Account balance of account " + fromAccountId + " does not match after transaction");
-        Assertions.assertTrue(currentToAccountBalance.equals(newToAccountBalance.subtract(amount)),"Account balance of account " + toAccountId + " does not match after transaction");
+        Assertions.assertTrue(currentFromBalance.equals(newFromBalance.plus(amount)), "Account balance of account " + fromAccountId + " does not match after transaction");
+        Assertions.assertTrue(currentToAccountBalance.equals(newToAccountBalance.minus(amount)),"Account balance of account " + toAccountId + " does not match after transaction");
 
     }
 
     @Test
     public void transferAmountCheckInvalidValues() throws Exception {
         Assertions.assertThrows(InvalidAmountException.class, () -> {
-                accountHandler.transferAmount(new BigDecimal("-1"), 1l, 2l);
+                accountHandler.transferAmount(Money.of(-1), 1l, 2l);
         },"Validation of negative amount");
 
         Assertions.assertThrows(NoAccountFoundException.class, () -> {
-                accountHandler.transferAmount(new BigDecimal("1000"), -1l, 2l);
+                accountHandler.transferAmount(Money.of(1000), -1l, 2l);
 
         },"Validation of from account ID");
 
         Assertions.assertThrows(NoAccountFoundException.class, () -> {
-                accountHandler.transferAmount(new BigDecimal("1000"), 1l, -2l);
+                accountHandler.transferAmount(Money.of(1000), 1l, -2l);
 
         },"Validation of to account ID");
 
         Assertions.assertThrows(LowBalanceException.class, () -> {
-                accountHandler.transferAmount(new BigDecimal("100000"), 1l, 2l);
+                accountHandler.transferAmount(Money.of(100000), 1l, 2l);
 
         },"Validation of amount exceeding available balance");
 
         Assertions.assertThrows(InvalidAccountNumberException.class, () -> {
-            accountHandler.transferAmount(new BigDecimal("100"), 1l, 1l);
+            accountHandler.transferAmount(Money.of(100), 1l, 1l);
 
         },"Both Account number are same.");
     }
 
+    @Test
+    void operationsAndLockWaitsAreRecorded() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        accountHandler.setMetricsRegistry(registry);
+        long lockWaits = accountHandler.getMetrics().getLockWait().getCount();
+
+        accountHandler.transferAmount(Money.of(2), 1l, 2l);
+        Assertions.assertThrows(LowBalanceException.class, () -> accountHandler.transferAmount(Money.of(100000000), 1l, 2l));
+
+        Assertions.assertEquals(2, accountHandler.getMetrics().getTransferAmount().getLatency().getCount());
+        Assertions.assertEquals(1, accountHandler.getMetrics().getTransferAmount().getErrors().get());
+        Assertions.assertEquals(lockWaits + 2, accountHandler.getMetrics().getLockWait().getCount());
+        Assertions.assertTrue(registry.scrape().contains("bank_handler_errors_total{method=\"transferAmount\"} 1\n"));
+    }
+
+    @Test
+    void operationsAreWrittenToTheTransactionLog() throws Exception {
+        StringWriter out = new StringWriter();
+        TransactionLog transactionLog = new TransactionLog(out, 64, 1.0, TransactionLog.OverflowPolicy.BLOCK);
+        accountHandler.setTransactionLog(transactionLog);
+        try {
+            String result = accountHandler.transferAmount(Money.of(2), 1l, 2l);
+            Assertions.assertThrows(InvalidAmountException.class, () -> accountHandler.deposit(Money.ZERO, 1l));
+            transactionLog.close();
+
+            String[] lines = out.toString().split("\n");
+            Assertions.assertEquals(2, lines.length);
+            // Same id as in the response.
+            Assertions.assertTrue(result.contains(" " + lines[0].replaceAll(".*\"txId\":(\\d+).*", "$1") + " "));
+            Assertions.assertTrue(lines[0].contains("\"op\":\"TRANSFER\",\"from\":1,\"to\":2,\"amount\":\"2.00\",\"outcome\":\"COMPLETED\""));
+            Assertions.assertTrue(lines[1].contains("\"op\":\"DEPOSIT\",\"to\":1,\"amount\":\"0.00\",\"outcome\":\"INVALID_AMOUNT\""));
+        } finally {
+            accountHandler.setTransactionLog(TransactionLog.DISABLED);
+        }
+    }
+
+    @Test
+    void transferAmountLowBalanceKeepsBothBalances() throws Exception {
+        Long fromAccountId = 2l;
+        Long toAccountId = 3l;
+        Money fromBalance = accountHandler.getAccount(fromAccountId).getTotalBalance();
+        Money toBalance = accountHandler.getAccount(toAccountId).getTotalBalance();
+
+        Assertions.assertThrows(LowBalanceException.class, () -> {
+            accountHandler.transferAmount(fromBalance.plus(Money.ONE), fromAccountId, toAccountId);
+        });
+
+        Assertions.assertEquals(0, fromBalance.compareTo(accountHandler.getAccount(fromAccountId).getTotalBalance()));
+        Assertions.assertEquals(0, toBalance.compareTo(accountHandler.getAccount(toAccountId).getTotalBalance()));
+    }
+
+    @Test
+    void concurrentTransfersBetweenHotAccounts() throws Exception {
+        long[] hotAccounts = {500l, 501l, 502l, 503l};
+        for(long accountId : hotAccounts){
+            accountHandler.createAccount(accountId, Money.of(100000));
+        }
+
+        int threads = 8;
+        int transfersPerThread = 250;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for(int t = 0; t < threads; t++){
+            futures.add(executor.submit(() -> {
+                Random random = new Random();
+                for(int i = 0; i < transfersPerThread; i++){
+                    int from = random.nextInt(hotAccounts.length);
+                    int to = (from + 1 + random.nextInt(hotAccounts.length - 1)) % hotAccounts.length;
+                    accountHandler.transferAmount(Money.of(2 + random.nextInt(10)), hotAccounts[from], hotAccounts[to]);
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        for(Future<?> future : futures){
+            // Any RetriesExceededException or deadlock fails the test here.
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        Money total = Money.ZERO;
+        for(long accountId : hotAccounts){
+            total = total.plus(accountHandler.getAccount(accountId).getTotalBalance());
+        }
+        Assertions.assertEquals(Money.of(400000), total, "Money should neither be created nor lost by concurrent transfers");
+    }
+
+    @Test
+    void transferBatch() throws Exception {
+        accountHandler.createAccount(600l, Money.of(100));
+        accountHandler.createAccount(601l, Money.of(100));
+        accountHandler.createAccount(602l, Money.of(100));
+
+        List<TransferResult> results = accountHandler.transferBatch(Arrays.asList(
+                new Transfer(600l, 601l, Money.of(80)),
+                // Only possible because the credit of the first transfer is applied before it.
+                new Transfer(601l, 602l, Money.of(150)),
+                new Transfer(600l, 602l, Money.of(50)),
+                new Transfer(600l, 600l, Money.of(5)),
+                new Transfer(600l, -1l, Money.of(5)),
+                new Transfer(602l, 600l, Money.parse("0.50"))));
+
+        Assertions.assertEquals(TransferStatus.COMPLETED, results.get(0).getStatus());
+        Assertions.assertEquals(TransferStatus.COMPLETED, results.get(1).getStatus());
+        Assertions.assertEquals(TransferStatus.LOW_BALANCE, results.get(2).getStatus());
+        Assertions.assertEquals(TransferStatus.INVALID_ACCOUNT_NUMBER, results.get(3).getStatus());
+        Assertions.assertEquals(TransferStatus.NO_ACCOUNT_FOUND, results.get(4).getStatus());
+        Assertions.assertEquals(TransferStatus.INVALID_AMOUNT, results.get(5).getStatus());
+
+        Assertions.assertEquals(Money.of(20), accountHandler.getAccount(600l).getTotalBalance());
+        Assertions.assertEquals(Money.of(30), accountHandler.getAccount(601l).getTotalBalance());
+        Assertions.assertEquals(Money.of(250), accountHandler.getAccount(602l).getTotalBalance());
+    }
+
     @Test
     void deposit() {
-        BigDecimal amount = new BigDecimal("1000");
+        Money amount = Money.of(1000);
         Long accountId = 1l;
-        BigDecimal oldBalance = null;
-        BigDecimal newBalance = null;
+        Money oldBalance = null;
+        Money newBalance = null;
 
         try {
             oldBalance = accountHandler.getAccount(accountId).getTotalBalance();
@@ -107,24 +234,24 @@ class AccountHandlerTest {
             Assertions.fail(ex);
         }
 
-        Assertions.assertTrue(newBalance.equals(oldBalance.add(amount)));
+        Assertions.assertTrue(newBalance.equals(oldBalance.plus(amount)));
 
         Assertions.assertThrows(NoAccountFoundException.class, () -> {
-                accountHandler.deposit(new BigDecimal("100"), -1l);
+                accountHandler.deposit(Money.of(100), -1l);
         },"Deposit account is invalid");
 
         Assertions.assertThrows(InvalidAmountException.class, () -> {
-                accountHandler.deposit(new BigDecimal("-100"), accountId);
+                accountHandler.deposit(Money.of(-100), accountId);
 
         },"Deposit amount is invalid");
     }
 
     @Test
     void withDraw() {
-        BigDecimal amount = new BigDecimal("1000");
+        Money amount = Money.of(1000);
         Long accountId = 1l;
-        BigDecimal oldBalance = null;
-        BigDecimal newBalance = null;
+        Money oldBalance = null;
+        Money newBalance = null;
 
         try {
             oldBalance = accountHandler.getAccount(accountId).getTotalBalance();
@@ -134,26 +261,26 @@ class AccountHandlerTest {
             Assertions.fail(ex);
         }
 
-        Assertions.assertTrue(newBalance.equals(oldBalance.subtract(amount)));
+        Assertions.assertTrue(newBalance.equals(oldBalance.minus(amount)));
 
         Assertions.assertThrows(NoAccountFoundException.class, () -> {
-                accountHandler.withDraw(new BigDecimal("100"), -1l);
+                accountHandler.withDraw(Money.of(100), -1l);
 
         },"Deposit account is invalid");
 
         Assertions.assertThrows(InvalidAmountException.class, () -> {
-                accountHandler.withDraw(new BigDecimal("-100"), accountId);
+                accountHandler.withDraw(Money.of(-100), accountId);
 
         },"Deposit amount is invalid");
 
         Assertions.assertThrows(LowBalanceException.class, () -> {
-            accountHandler.withDraw(new BigDecimal("10000000"), accountId);
+            accountHandler.withDraw(Money.of(10000000), accountId);
         });
     }
 
     @Test
     public void createAccountTest(){
-        BigDecimal initialAmount = new BigDecimal("1000");
+        Money initialAmount = Money.of(1000);
         Long accountId = 123l;
 
         try{
@@ -161,7 +288,7 @@ class AccountHandlerTest {
 
             Assertions.assertNotNull(accountHandler.getAccount(accountId));
             Assertions.assertTrue(accountHandler.getAccount(accountId).toString().contains(accountId+""));
-            Assertions.assertTrue(accountHandler.getAccount(accountId).toString().contains(initialAmount.toPlainString()+""));
+            Assertions.assertTrue(accountHandler.getAccount(accountId).toString().contains(initialAmount.toString()+""));
         }catch(Exception e){
             Assertions.fail("Account creation failed : ",e);
         }
@@ -180,7 +307,7 @@ class AccountHandlerTest {
         Thread thread1 = new Thread( () -> {
             logger.info("Running thread name : " + Thread.currentThread().getName());
             try{
-                BigDecimal initialAmount = new BigDecimal("1000");
+                Money initialAmount = Money.of(1000);
                 for(long accountIdAuto = 1000l ; accountIdAuto < 3500l; accountIdAuto++){
                     accountHandler.createAccount(accountIdAuto,initialAmount);
                     Assertions.assertNotNull(accountHandler.getAccount(accountIdAuto));
@@ -194,7 +321,7 @@ class AccountHandlerTest {
         Thread thread2 = new Thread( () -> {
             logger.info("Running thread name : " + Thread.currentThread().getName());
             try{
-                BigDecimal initialAmount = new BigDecimal("1000");
+                Money initialAmount = Money.of(1000);
                 for(long accountIdAuto = 11000l ; accountIdAuto < 14000l; accountIdAuto++){
                     accountHandler.createAccount(accountIdAuto,initialAmount);
                     Assertions.assertNotNull(accountHandler.getAccount(accountIdAuto));
@@ -222,7 +349,7 @@ class AccountHandlerTest {
         try{
             Account account = accountHandler.getAccount(accountId);
             Assertions.assertNotNull(account);
-        }catch(SQLException | NoAccountFoundException e){
+        }catch(SQLException | NoAccountFoundException | InterruptedException e){
             Assertions.fail(e);
         }
 
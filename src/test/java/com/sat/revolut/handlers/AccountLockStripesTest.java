@@ -0,0 +1,136 @@
+package com.sat.revolut.handlers;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+class AccountLockStripesTest {
+
+    @Test
+    void stripeCountIsRoundedUpToAPowerOfTwo() {
+        Assertions.assertEquals(1, new AccountLockStripes(1).getStripeCount());
+        Assertions.assertEquals(4, new AccountLockStripes(3).getStripeCount());
+        Assertions.assertEquals(1024, new AccountLockStripes(1000).getStripeCount());
+        Assertions.assertEquals(1024, new AccountLockStripes(1024).getStripeCount());
+        Assertions.assertEquals(AccountLockStripes.DEFAULT_STRIPES, new AccountLockStripes().getStripeCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AccountLockStripes(0));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new AccountLockStripes((1 << 20) + 1));
+
+        AccountLockStripes stripes = new AccountLockStripes(3);
+        for (long accountId = -100; accountId < 100; accountId++) {
+            int stripe = stripes.stripeIndex(accountId);
+            Assertions.assertTrue(stripe >= 0 && stripe < 4);
+        }
+    }
+
+    @Test
+    void locksAreOrderedByStripeAndTakenOnce() {
+        AccountLockStripes stripes = new AccountLockStripes(8);
+        long first = 1;
+        long sameStripe = first + 1;
+        while (stripes.stripeIndex(sameStripe) != stripes.stripeIndex(first)) {
+            sameStripe++;
+        }
+        long otherStripe = first + 1;
+        while (stripes.stripeIndex(otherStripe) == stripes.stripeIndex(first)) {
+            otherStripe++;
+        }
+
+        Assertions.assertArrayEquals(new ReentrantReadWriteLock[]{stripes.lockFor(first)}, stripes.orderedLocksFor(first, sameStripe));
+        ReentrantReadWriteLock[] pair = stripes.orderedLocksFor(first, otherStripe);
+        Assertions.assertArrayEquals(pair, stripes.orderedLocksFor(otherStripe, first));
+        Assertions.assertEquals(2, pair.length);
+        Assertions.assertTrue(stripeOf(stripes, pair[0], first, otherStripe) < stripeOf(stripes, pair[1], first, otherStripe));
+
+        List<Long> accountIds = new ArrayList<>();
+        TreeSet<Integer> expectedStripes = new TreeSet<>();
+        for (long accountId = 40; accountId > 0; accountId -= 3) {
+            accountIds.add(accountId);
+            expectedStripes.add(stripes.stripeIndex(accountId));
+        }
+        accountIds.add(sameStripe);
+        accountIds.add(first);
+        expectedStripes.add(stripes.stripeIndex(first));
+
+        ReentrantReadWriteLock[] ordered = stripes.orderedLocksFor(accountIds);
+        Assertions.assertEquals(expectedStripes.size(), ordered.length);
+        int i = 0;
+        for (int stripe : expectedStripes) {
+            Assertions.assertSame(lockOfStripe(stripes, stripe, accountIds), ordered[i++]);
+        }
+    }
+
+    @Test
+    void timedOutAcquisitionReleasesTheLocksAlreadyTaken() throws Exception {
+        AccountLockStripes stripes = new AccountLockStripes(8);
+        List<Long> accountIds = new ArrayList<>();
+        TreeSet<Integer> seen = new TreeSet<>();
+        for (long accountId = 1; seen.size() < 3; accountId++) {
+            if (seen.add(stripes.stripeIndex(accountId))) {
+                accountIds.add(accountId);
+            }
+        }
+        ReentrantReadWriteLock[] locks = stripes.orderedLocksFor(accountIds);
+        Assertions.assertEquals(3, locks.length);
+
+        // Another thread holds the last lock, the first two are taken then released on the timeout.
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            locks[2].writeLock().lock();
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                locks[2].writeLock().unlock();
+            }
+        });
+        holder.start();
+        Assertions.assertTrue(held.await(5, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        Assertions.assertFalse(AccountLockStripes.tryWriteLockAll(locks, 50));
+        Assertions.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        Assertions.assertFalse(locks[0].isWriteLocked());
+        Assertions.assertFalse(locks[1].isWriteLocked());
+        Assertions.assertTrue(locks[2].isWriteLocked());
+
+        release.countDown();
+        holder.join(5000);
+        Assertions.assertTrue(AccountLockStripes.tryWriteLockAll(locks, 50));
+        for (ReentrantReadWriteLock lock : locks) {
+            Assertions.assertTrue(lock.isWriteLockedByCurrentThread());
+        }
+        AccountLockStripes.unlockWrite(locks, locks.length);
+        for (ReentrantReadWriteLock lock : locks) {
+            Assertions.assertFalse(lock.isWriteLocked());
+        }
+    }
+
+    private static int stripeOf(AccountLockStripes stripes, ReentrantReadWriteLock lock, long... accountIds) {
+        for (long accountId : accountIds) {
+            if (stripes.lockFor(accountId) == lock) {
+                return stripes.stripeIndex(accountId);
+            }
+        }
+        throw new AssertionError("Lock of none of " + Arrays.toString(accountIds));
+    }
+
+    private static ReentrantReadWriteLock lockOfStripe(AccountLockStripes stripes, int stripe, List<Long> accountIds) {
+        for (Long accountId : accountIds) {
+            if (stripes.stripeIndex(accountId) == stripe) {
+                return stripes.lockFor(accountId);
+            }
+        }
+        throw new AssertionError("No account on stripe " + stripe);
+    }
+}
@@ -5,11 +5,14 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.ProtocolException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.util.Scanner;
 
 public class ApplicationTest {
 
@@ -17,7 +20,7 @@ public class ApplicationTest {
     public void applicationTest(){
         try{
             Application.main(null);
-        }catch(SQLException e){
+        }catch(SQLException | IOException e){
             Assertions.fail(e);
         }
 
@@ -28,6 +31,70 @@ public class ApplicationTest {
         validateURL("http://localhost:7142/deposit?accountId=1&amount=5000","PUT");
         validateURL("http://localhost:7142/transfer?amount=5000&fromAccountId=1&toAccountId=2","GET");
 
+        Assertions.assertTrue(post("http://localhost:7142/transfers/batch", "application/json",
+                "[{\"fromAccountId\":2,\"toAccountId\":3,\"amount\":\"10.50\"}]").contains("COMPLETED"));
+        Assertions.assertTrue(post("http://localhost:7142/transfers/batch", "text/csv",
+                "fromAccountId,toAccountId,amount\n3,2,10.50\n").contains("COMPLETED"));
+        Assertions.assertEquals("{\"accountId\":10,\"balance\":\"5000.00\"}", getJson("http://localhost:7142/account?accountId=10"));
+        Assertions.assertEquals("[{\"accountId\":10,\"balance\":\"5000.00\"}]", getJson("http://localhost:7142/accounts?accountIds=10,404"));
+        Assertions.assertTrue(post("http://localhost:7142/accounts", "application/json", "[1, 2, 3]").startsWith("[{\"accountId\":"));
+
+        String metrics = get("http://localhost:7142/metrics");
+        Assertions.assertTrue(metrics.contains("bank_http_request_duration_seconds_count{endpoint=\"PUT /transfer\"} 1\n"));
+        Assertions.assertTrue(metrics.contains("bank_handler_duration_seconds_count{method=\"transferAmount\"} 2\n"));
+        Assertions.assertTrue(metrics.contains("# TYPE bank_dao_duration_seconds histogram"));
+        Assertions.assertTrue(metrics.contains("bank_db_pool_connections{state=\"active\"}"));
+
+    }
+
+    public String post(String URL, String contentType, String body){
+        HttpURLConnection con = null;
+        try {
+            con = (HttpURLConnection) new URL(URL).openConnection();
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Content-Type", contentType);
+            con.setDoOutput(true);
+            try (OutputStream out = con.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+            Assertions.assertEquals(HttpURLConnection.HTTP_OK, con.getResponseCode());
+            try (Scanner scanner = new Scanner(con.getInputStream(), "UTF-8")) {
+                return scanner.useDelimiter("\\A").next();
+            }
+        } catch (IOException e) {
+            return Assertions.fail(e);
+        } finally{
+            if(con != null){
+                con.disconnect();
+            }
+        }
+    }
+
+    public String getJson(String URL){
+        return get(URL, "application/json");
+    }
+
+    public String get(String URL){
+        return get(URL, "text/plain");
+    }
+
+    public String get(String URL, String accept){
+        HttpURLConnection con = null;
+        try {
+            con = (HttpURLConnection) new URL(URL).openConnection();
+            con.setRequestProperty("Accept", accept);
+            Assertions.assertEquals(HttpURLConnection.HTTP_OK, con.getResponseCode());
+            Assertions.assertTrue(con.getContentType().startsWith(accept));
+            try (Scanner scanner = new Scanner(con.getInputStream(), "UTF-8")) {
+                return scanner.useDelimiter("\\A").next();
+            }
+        } catch (IOException e) {
+            return Assertions.fail(e);
+        } finally{
+            if(con != null){
+                con.disconnect();
+            }
+        }
     }
 
     public void validateURL(String URL, String requestMethod){
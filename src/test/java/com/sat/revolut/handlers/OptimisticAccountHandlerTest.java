@@ -0,0 +1,92 @@
+package com.sat.revolut.handlers;
+
+import com.sat.revolut.dao.AccountJDBCDAOImpl;
+import com.sat.revolut.dao.AccountServiceImpl;
+import com.sat.revolut.dao.ConnectionPoolConfig;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.Transfer;
+import com.sat.revolut.domain.TransferResult;
+import com.sat.revolut.domain.TransferStatus;
+import com.sat.revolut.exception.AccountAlreadyExistException;
+import com.sat.revolut.exception.LowBalanceException;
+import org.junit.jupiter.api.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class OptimisticAccountHandlerTest {
+
+    // Two handlers over two DAOs on one database stand for two application instances.
+    OptimisticAccountHandler first;
+    OptimisticAccountHandler second;
+
+    @BeforeAll
+    public void setUp() throws SQLException {
+        first = newInstance();
+        second = newInstance();
+    }
+
+    private static OptimisticAccountHandler newInstance() throws SQLException {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:optimistic_test;DB_CLOSE_DELAY=-1");
+        AccountServiceImpl accountService = new AccountServiceImpl();
+        accountService.setAccountDAO(new AccountJDBCDAOImpl(config));
+        OptimisticAccountHandler accountHandler = new OptimisticAccountHandler(1000, 20);
+        accountHandler.setAccountService(accountService);
+        return accountHandler;
+    }
+
+    @Test
+    void singleAccountOperations() throws Exception {
+        first.createAccount(100l, Money.of(50));
+        Assertions.assertThrows(AccountAlreadyExistException.class, () -> second.createAccount(100l, Money.of(50)));
+        second.deposit(Money.of(25), 100l);
+        first.withDraw(Money.of(70), 100l);
+        Assertions.assertEquals(Money.of(5), second.getAccount(100l).getTotalBalance());
+        Assertions.assertEquals(2, second.getAccount(100l).getVersion());
+        Assertions.assertThrows(LowBalanceException.class, () -> second.withDraw(Money.of(10), 100l));
+
+        first.createAccount(101l, Money.of(50));
+        List<TransferResult> results = second.transferBatch(Arrays.asList(new Transfer(101l, 100l, Money.of(20)),
+                new Transfer(101l, 100l, Money.of(40)), new Transfer(100l, 100l, Money.of(2))));
+        Assertions.assertEquals(TransferStatus.COMPLETED, results.get(0).getStatus());
+        Assertions.assertEquals(TransferStatus.LOW_BALANCE, results.get(1).getStatus());
+        Assertions.assertEquals(TransferStatus.INVALID_ACCOUNT_NUMBER, results.get(2).getStatus());
+        Assertions.assertEquals(Money.of(25), first.getAccount(100l).getTotalBalance());
+    }
+
+    @Test
+    void concurrentWritesFromBothInstancesAreNotLost() throws Exception {
+        first.createAccount(200l, Money.of(10000));
+        first.createAccount(201l, Money.of(10000));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            AccountHandler instance = t % 2 == 0 ? first : second;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 100; i++) {
+                    instance.deposit(Money.of(3), 200l);
+                    instance.withDraw(Money.of(2), 200l);
+                    instance.transferAmount(Money.of(2), 200l, 201l);
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        // 800 deposits of 3, withdrawals of 2 and transfers of 2.
+        Assertions.assertEquals(Money.of(10000 + 800 * 3 - 800 * 2 - 800 * 2), first.getAccount(200l).getTotalBalance());
+        Assertions.assertEquals(Money.of(10000 + 800 * 2), second.getAccount(201l).getTotalBalance());
+    }
+}
@@ -0,0 +1,188 @@
+package com.sat.revolut.handlers;
+
+import com.sat.revolut.dao.AccountJDBCDAOImpl;
+import com.sat.revolut.dao.AccountServiceImpl;
+import com.sat.revolut.dao.ConnectionPoolConfig;
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.exception.AccountAlreadyExistException;
+import com.sat.revolut.exception.LowBalanceException;
+import org.junit.jupiter.api.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ShardedAccountHandlerTest {
+
+    ShardedAccountHandler accountHandler;
+
+    @BeforeAll
+    public void setUp() throws Exception {
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setJdbcUrl("jdbc:h2:mem:sharded_test;DB_CLOSE_DELAY=-1");
+        AccountServiceImpl accountService = new AccountServiceImpl();
+        accountService.setAccountDAO(new AccountJDBCDAOImpl(config));
+
+        accountHandler = new ShardedAccountHandler(4, 128);
+        accountHandler.setAccountService(accountService);
+    }
+
+    @AfterAll
+    public void tearDown() {
+        accountHandler.shutdown();
+    }
+
+    @Test
+    void singleAccountOperations() throws Exception {
+        accountHandler.createAccount(100l, Money.of(50));
+        accountHandler.deposit(Money.of(25), 100l);
+        accountHandler.withDraw(Money.of(70), 100l);
+        Assertions.assertEquals(Money.of(5), accountHandler.getAccount(100l).getTotalBalance());
+
+        Assertions.assertThrows(LowBalanceException.class, () -> accountHandler.withDraw(Money.of(10), 100l));
+        Assertions.assertThrows(AccountAlreadyExistException.class, () -> accountHandler.createAccount(100l, Money.of(50)));
+    }
+
+    @Test
+    void concurrentIntraAndCrossShardTransfers() throws Exception {
+        long[] accounts = {200l, 201l, 202l, 204l, 208l};
+        for (long accountId : accounts) {
+            accountHandler.createAccount(accountId, Money.of(10000));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                Random random = new Random();
+                for (int i = 0; i < 200; i++) {
+                    int from = random.nextInt(accounts.length);
+                    int to = (from + 1 + random.nextInt(accounts.length - 1)) % accounts.length;
+                    accountHandler.transferAmount(Money.of(2 + random.nextInt(10)), accounts[from], accounts[to]);
+                }
+                return null;
+            }));
+        }
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+
+        Money total = Money.ZERO;
+        for (long accountId : accounts) {
+            total = total.plus(accountHandler.getAccount(accountId).getTotalBalance());
+        }
+        Assertions.assertEquals(Money.of(50000), total);
+        Assertions.assertThrows(LowBalanceException.class, () -> accountHandler.transferAmount(Money.of(1000000), 200l, 201l));
+    }
+
+    @Test
+    void failedCrossShardCreditIsReverted() throws Exception {
+        FailingAccountService accountService = new FailingAccountService("sharded_failure_test");
+        ShardedAccountHandler handler = new ShardedAccountHandler(2, 16);
+        handler.setAccountService(accountService);
+        try {
+            handler.createAccount(300l, Money.of(100));
+            handler.createAccount(301l, Money.of(100));
+
+            // Credit of 301 fails, the debit of 300 is handed back.
+            accountService.allowedUpdates.put(301l, 0);
+            SQLException creditFailure = Assertions.assertThrows(SQLException.class, () -> handler.transferAmount(Money.of(10), 300l, 301l));
+            Assertions.assertEquals(0, creditFailure.getSuppressed().length);
+            Assertions.assertEquals(Money.of(100), handler.getAccount(300l).getTotalBalance());
+
+            // Reverting fails too : the amount is gone, the caller still sees the credit failure first.
+            accountService.allowedUpdates.put(300l, 1);
+            SQLException lost = Assertions.assertThrows(SQLException.class, () -> handler.transferAmount(Money.of(10), 300l, 301l));
+            Assertions.assertEquals("Forced failure of account 301", lost.getMessage());
+            Assertions.assertEquals(1, lost.getSuppressed().length);
+            Assertions.assertEquals("Forced failure of account 300", lost.getSuppressed()[0].getMessage());
+            Assertions.assertEquals(Money.of(90), handler.getAccount(300l).getTotalBalance());
+            Assertions.assertEquals(Money.of(100), handler.getAccount(301l).getTotalBalance());
+        } finally {
+            handler.shutdown();
+        }
+    }
+
+    @Test
+    void interruptedCallersFinishTheirTransferAndShutdownRejectsLaterOnes() throws Exception {
+        FailingAccountService accountService = new FailingAccountService("sharded_interrupt_test");
+        ShardedAccountHandler handler = new ShardedAccountHandler(2, 16);
+        handler.setAccountService(accountService);
+        handler.createAccount(400l, Money.of(100));
+        handler.createAccount(401l, Money.of(100));
+
+        // The caller is interrupted while its debit runs, the credit still follows before it returns.
+        accountService.updateStarted = new CountDownLatch(1);
+        accountService.releaseUpdates = new CountDownLatch(1);
+        Throwable[] failure = new Throwable[1];
+        boolean[] interrupted = new boolean[1];
+        Thread caller = new Thread(() -> {
+            try {
+                handler.transferAmount(Money.of(10), 400l, 401l);
+            } catch (Throwable t) {
+                failure[0] = t;
+            }
+            interrupted[0] = Thread.currentThread().isInterrupted();
+        });
+        caller.start();
+        Assertions.assertTrue(accountService.updateStarted.await(5, TimeUnit.SECONDS));
+        caller.interrupt();
+        accountService.releaseUpdates.countDown();
+        caller.join(5000);
+        Assertions.assertNull(failure[0]);
+        Assertions.assertTrue(interrupted[0]);
+        Assertions.assertEquals(Money.of(90), handler.getAccount(400l).getTotalBalance());
+        Assertions.assertEquals(Money.of(110), handler.getAccount(401l).getTotalBalance());
+
+        handler.shutdown();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> afterShutdown = executor.submit(() -> {
+            Assertions.assertThrows(SQLException.class, () -> handler.deposit(Money.of(5), 400l));
+            return null;
+        });
+        afterShutdown.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+        Assertions.assertEquals(Money.of(90), handler.getAccount(400l).getTotalBalance());
+    }
+
+    // Fails updates of an account once its allowed updates are used up, and can hold updates until released.
+    private static class FailingAccountService extends AccountServiceImpl {
+        final Map<Long, Integer> allowedUpdates = new ConcurrentHashMap<>();
+        volatile CountDownLatch updateStarted;
+        volatile CountDownLatch releaseUpdates;
+
+        FailingAccountService(String database) throws SQLException {
+            ConnectionPoolConfig config = new ConnectionPoolConfig();
+            config.setJdbcUrl("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+            setAccountDAO(new AccountJDBCDAOImpl(config));
+        }
+
+        @Override
+        public void update(Long accountId, Money newBalance) throws SQLException {
+            CountDownLatch release = releaseUpdates;
+            if (release != null) {
+                updateStarted.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+            }
+            Integer allowed = allowedUpdates.computeIfPresent(accountId, (id, count) -> count - 1);
+            if (allowed != null && allowed < 0) {
+                throw new SQLException("Forced failure of account " + accountId);
+            }
+            super.update(accountId, newBalance);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.sat.revolut.journal;
+
+import com.sat.revolut.domain.TransactionType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordsAreReplayedInOrderAfterReopening() throws IOException {
+        try (Journal journal = Journal.open(directory, 1 << 16, Journal.FsyncPolicy.PER_OP, 10)) {
+            Assertions.assertEquals(1, journal.append(TransactionType.CREATE, 10, 500, 0, 0, 500));
+            Assertions.assertEquals(2, journal.append(TransactionType.TRANSFER, 10, 400, 11, 100, 100));
+            Assertions.assertEquals(2, journal.getDurableSequence());
+        }
+
+        try (Journal journal = Journal.open(directory, 1 << 16, Journal.FsyncPolicy.GROUP, 10)) {
+            Assertions.assertEquals(2, journal.getLastSequence());
+            Assertions.assertEquals(3, journal.append(TransactionType.DEPOSIT, 11, 150, 0, 0, 50));
+
+            List<JournalRecord> records = new ArrayList<>();
+            journal.replay(0, records::add);
+            Assertions.assertEquals(3, records.size());
+            JournalRecord transfer = records.get(1);
+            Assertions.assertEquals(TransactionType.TRANSFER, transfer.getType());
+            Assertions.assertEquals(10, transfer.getAccountId());
+            Assertions.assertEquals(400, transfer.getBalance());
+            Assertions.assertEquals(11, transfer.getCounterpartyId());
+            Assertions.assertEquals(100, transfer.getCounterpartyBalance());
+            Assertions.assertEquals(100, transfer.getAmount());
+
+            records.clear();
+            journal.replay(2, records::add);
+            Assertions.assertEquals(1, records.size());
+            Assertions.assertEquals(3, records.get(0).getSequence());
+        }
+    }
+
+    @Test
+    void fullSegmentsRollOver() throws IOException {
+        try (Journal journal = Journal.open(directory, Journal.RECORD_SIZE * 4, Journal.FsyncPolicy.INTERVAL, 1)) {
+            for (int i = 1; i <= 10; i++) {
+                journal.append(TransactionType.DEPOSIT, i, i, 0, 0, i);
+            }
+            Assertions.assertEquals(3, journal.getSegmentCount());
+        }
+        Assertions.assertEquals(3, Journal.listSegments(directory).size());
+
+        try (Journal journal = Journal.open(directory, Journal.RECORD_SIZE * 4, Journal.FsyncPolicy.INTERVAL, 1)) {
+            Assertions.assertEquals(10, journal.getLastSequence());
+            List<JournalRecord> records = new ArrayList<>();
+            journal.replay(5, records::add);
+            Assertions.assertEquals(5, records.size());
+            Assertions.assertEquals(6, records.get(0).getAccountId());
+            Assertions.assertEquals(10, records.get(4).getSequence());
+        }
+    }
+
+    @Test
+    void tornRecordEndsTheJournal() throws IOException {
+        try (Journal journal = Journal.open(directory, 1 << 16, Journal.FsyncPolicy.PER_OP, 10)) {
+            for (int i = 1; i <= 3; i++) {
+                journal.append(TransactionType.DEPOSIT, i, i, 0, 0, i);
+            }
+        }
+        // Corrupt the amount of the third record, as a write cut short by a crash would.
+        try (FileChannel channel = FileChannel.open(Journal.segmentPath(directory, 1), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2, 3}), Journal.RECORD_SIZE * 3 - 3);
+        }
+
+        try (Journal journal = Journal.open(directory, 1 << 16, Journal.FsyncPolicy.PER_OP, 10)) {
+            Assertions.assertEquals(2, journal.getLastSequence());
+            Assertions.assertEquals(3, journal.append(TransactionType.WITHDRAW, 3, 0, 0, 0, 3));
+            List<JournalRecord> records = new ArrayList<>();
+            journal.replay(0, records::add);
+            Assertions.assertEquals(3, records.size());
+            Assertions.assertEquals(TransactionType.WITHDRAW, records.get(2).getType());
+        }
+    }
+
+    @Test
+    void groupSyncCoversConcurrentAppends() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (Journal journal = Journal.open(directory, Journal.RECORD_SIZE * 64, Journal.FsyncPolicy.GROUP, 10)) {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                long accountId = i;
+                futures.add(executor.submit(() -> journal.append(TransactionType.CREATE, accountId, 1, 0, 0, 1)));
+            }
+            for (Future<Long> future : futures) {
+                Assertions.assertTrue(future.get() <= journal.getDurableSequence());
+            }
+            Assertions.assertEquals(400, journal.getLastSequence());
+            Assertions.assertTrue(journal.getSyncCount() <= 400);
+
+            long[] count = new long[1];
+            journal.replay(0, record -> count[0]++);
+            Assertions.assertEquals(400, count[0]);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
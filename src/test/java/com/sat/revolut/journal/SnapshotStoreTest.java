@@ -0,0 +1,85 @@
+package com.sat.revolut.journal;
+
+import com.sat.revolut.domain.TransactionType;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+
+class SnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static long writeRange(BalanceConsumer consumer, int accounts) {
+        for (int i = 1; i <= accounts; i++) {
+            consumer.accept(i, i * 100L);
+        }
+        return accounts;
+    }
+
+    @Test
+    void latestSnapshotIsLoadedAndOlderOnesPruned() throws IOException, SQLException {
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        Assertions.assertNull(store.loadLatest());
+
+        // Larger than the write buffer, so entries are flushed several times.
+        Assertions.assertEquals(100000, store.write(5, consumer -> writeRange(consumer, 100000)));
+        store.write(9, consumer -> writeRange(consumer, 3));
+        store.write(12, consumer -> writeRange(consumer, 70000));
+        Assertions.assertEquals(2, store.listSnapshots().size());
+        Assertions.assertEquals(9, store.getOldestJournalSequence());
+
+        SnapshotStore.Snapshot snapshot = store.loadLatest();
+        Assertions.assertEquals(12, snapshot.getJournalSequence());
+        Assertions.assertEquals(70000, snapshot.getCount());
+        LongBuffer entries = snapshot.getEntries();
+        Assertions.assertEquals(140000, entries.remaining());
+        Assertions.assertEquals(1, entries.get(0));
+        Assertions.assertEquals(100, entries.get(1));
+        Assertions.assertEquals(70000, entries.get(139998));
+        Assertions.assertEquals(7000000, entries.get(139999));
+    }
+
+    @Test
+    void corruptSnapshotFallsBackToThePreviousOne() throws IOException, SQLException {
+        SnapshotStore store = new SnapshotStore(directory, 2);
+        store.write(3, consumer -> writeRange(consumer, 10));
+        store.write(8, consumer -> writeRange(consumer, 10));
+        try (FileChannel channel = FileChannel.open(store.snapshotPath(8), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{9}), SnapshotStore.HEADER_SIZE + 20);
+        }
+
+        SnapshotStore.Snapshot snapshot = store.loadLatest();
+        Assertions.assertEquals(3, snapshot.getJournalSequence());
+        Assertions.assertEquals(10, snapshot.getCount());
+    }
+
+    @Test
+    void snapshotsLetCoveredJournalSegmentsGo() throws IOException, SQLException {
+        try (Journal journal = Journal.open(directory.resolve("journal"), Journal.RECORD_SIZE * 4, Journal.FsyncPolicy.PER_OP, 10)) {
+            for (int i = 1; i <= 10; i++) {
+                journal.append(TransactionType.CREATE, i, 1, 0, 0, 1);
+            }
+            Snapshotter snapshotter = new Snapshotter(journal, new SnapshotStore(directory.resolve("snapshots"), 1),
+                    consumer -> writeRange(consumer, 10));
+            Assertions.assertEquals(10, snapshotter.snapshot());
+            Assertions.assertEquals(1, snapshotter.getSnapshotCount());
+            Assertions.assertEquals(10, snapshotter.getLastSnapshotAccounts());
+
+            // Records 1 to 8 fill the first two segments, the third one is still written to.
+            Assertions.assertEquals(1, Journal.listSegments(directory.resolve("journal")).size());
+            Assertions.assertEquals(1, journal.getSegmentCount());
+            long[] replayed = new long[1];
+            journal.replay(10, record -> replayed[0]++);
+            Assertions.assertEquals(0, replayed[0]);
+        }
+    }
+}
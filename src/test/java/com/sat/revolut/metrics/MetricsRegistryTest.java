@@ -0,0 +1,49 @@
+package com.sat.revolut.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MetricsRegistryTest {
+
+    @Test
+    void histogramBucketsArePowersOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(1024);
+        histogram.record(1025);
+        histogram.record(1_000_000);
+        histogram.record(Long.MAX_VALUE);
+
+        long[] counts = histogram.getBucketCounts();
+        Assertions.assertEquals(2, counts[0]);
+        Assertions.assertEquals(1, counts[1]);
+        Assertions.assertEquals(1, counts[LatencyHistogram.bucketIndex(1_000_000)]);
+        Assertions.assertEquals(1, counts[LatencyHistogram.BUCKET_COUNT - 1]);
+        Assertions.assertEquals(5, histogram.getCount());
+        Assertions.assertEquals(2048, histogram.getValueAtPercentile(60));
+        Assertions.assertEquals(1L << 20, histogram.getValueAtPercentile(80));
+    }
+
+    @Test
+    void scrapeWritesPrometheusText() {
+        MetricsRegistry registry = new MetricsRegistry();
+        OperationMetrics transfer = registry.operation("bank_test", "test calls", "method", "transfer");
+        transfer.recordDuration(1500, false);
+        transfer.recordDuration(3000, true);
+        registry.counter("bank_test_events_total", "Events", () -> 7, "kind", "a\"b");
+        registry.gauge("bank_test_size", "Size", () -> 2.5);
+
+        String text = registry.scrape();
+        Assertions.assertTrue(text.contains("# TYPE bank_test_duration_seconds histogram\n"));
+        Assertions.assertTrue(text.contains("bank_test_duration_seconds_bucket{method=\"transfer\",le=\"1.024E-6\"} 0\n"));
+        Assertions.assertTrue(text.contains("bank_test_duration_seconds_bucket{method=\"transfer\",le=\"2.048E-6\"} 1\n"));
+        Assertions.assertTrue(text.contains("bank_test_duration_seconds_bucket{method=\"transfer\",le=\"+Inf\"} 2\n"));
+        Assertions.assertTrue(text.contains("bank_test_duration_seconds_sum{method=\"transfer\"} 4.5E-6\n"));
+        Assertions.assertTrue(text.contains("bank_test_duration_seconds_count{method=\"transfer\"} 2\n"));
+        Assertions.assertTrue(text.contains("bank_test_errors_total{method=\"transfer\"} 1\n"));
+        Assertions.assertTrue(text.contains("bank_test_events_total{kind=\"a\\\"b\"} 7\n"));
+        Assertions.assertTrue(text.contains("bank_test_size 2.5\n"));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.gauge("bank_test_events_total", "Events", () -> 1));
+    }
+}
@@ -0,0 +1,133 @@
+package com.sat.revolut.stream;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+class BalanceBroadcasterTest {
+
+    private final Map<Long, Money> balances = new ConcurrentHashMap<>();
+    private BalanceBroadcaster broadcaster;
+
+    private BalanceBroadcaster broadcaster(int maxSubscribers, long maxLagMillis) {
+        broadcaster = new BalanceBroadcaster(accountIds -> {
+            List<Account> accounts = new ArrayList<>();
+            for (Long accountId : accountIds) {
+                Money balance = balances.get(accountId);
+                if (balance != null) {
+                    Account account = new Account();
+                    account.setAccountId(accountId);
+                    account.setTotalBalance(balance);
+                    accounts.add(account);
+                }
+            }
+            return accounts;
+        }, account -> account.getAccountId() + "=" + account.getTotalBalance(), maxSubscribers, 10, 2, maxLagMillis);
+        return broadcaster;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        broadcaster.close();
+    }
+
+    @Test
+    void subscribersGetCurrentBalancesThenChanges() throws Exception {
+        balances.put(1l, Money.of(10));
+        balances.put(2l, Money.of(20));
+        broadcaster(10, 5000);
+        QueueSink sink = new QueueSink();
+
+        BalanceBroadcaster.Subscription subscription = broadcaster.subscribe(new HashSet<>(Arrays.asList(1l, 3l)), sink);
+        Assertions.assertEquals("1=10.00", sink.next());
+
+        balances.put(2l, Money.of(25));
+        broadcaster.changed(2l);
+        balances.put(1l, Money.of(15));
+        broadcaster.changed(1l);
+        Assertions.assertEquals("1=15.00", sink.next());
+        Assertions.assertEquals(1, broadcaster.getSubscriberCount());
+
+        subscription.close();
+        Assertions.assertTrue(sink.closed);
+        Assertions.assertEquals(0, broadcaster.getSubscriberCount());
+        broadcaster.changed(1l);
+        Assertions.assertEquals(0, broadcaster.getChangedAccounts());
+    }
+
+    @Test
+    void slowSubscribersOnlyGetTheLatestBalance() throws Exception {
+        balances.put(1l, Money.of(10));
+        broadcaster(10, 60000);
+        CountDownLatch release = new CountDownLatch(1);
+        QueueSink sink = new QueueSink() {
+            @Override
+            public void send(String event, String data) throws IOException {
+                super.send(event, data);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+
+        broadcaster.subscribe(new HashSet<>(Arrays.asList(1l)), sink);
+        Assertions.assertEquals("1=10.00", sink.next());
+        for (int i = 1; i <= 5; i++) {
+            balances.put(1l, Money.of(10 + i));
+            broadcaster.changed(1l);
+            while (broadcaster.getChangedAccounts() > 0) {
+                Thread.sleep(1);
+            }
+        }
+        release.countDown();
+        Assertions.assertEquals("1=15.00", sink.next());
+        Assertions.assertTrue(broadcaster.getCoalescedCount() > 0);
+    }
+
+    @Test
+    void subscribersAreBounded() throws Exception {
+        broadcaster(1, 5000);
+        Assertions.assertNotNull(broadcaster.subscribe(new HashSet<>(Arrays.asList(1l)), new QueueSink()));
+        Assertions.assertNull(broadcaster.subscribe(new HashSet<>(Arrays.asList(1l)), new QueueSink()));
+        Assertions.assertEquals(1, broadcaster.getRejectedCount());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> broadcaster.subscribe(
+                new HashSet<>(Arrays.asList(1l, 2l, 3l, 4l, 5l, 6l, 7l, 8l, 9l, 10l, 11l)), new QueueSink()));
+    }
+
+    private static class QueueSink implements BalanceBroadcaster.Sink {
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        volatile boolean closed;
+
+        @Override
+        public void send(String event, String data) throws IOException {
+            events.add(data);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        String next() throws InterruptedException {
+            String data = events.poll(5, TimeUnit.SECONDS);
+            Assertions.assertNotNull(data);
+            return data;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.sat.revolut.txlog;
+
+import com.sat.revolut.domain.Money;
+import com.sat.revolut.domain.TransactionType;
+import com.sat.revolut.domain.TransferStatus;
+import com.sat.revolut.exception.LowBalanceException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+class TransactionLogTest {
+
+    @Test
+    void writesOneJsonLinePerEvent() throws Exception {
+        StringWriter out = new StringWriter();
+        TransactionLog transactionLog = new TransactionLog(out, 16, 1.0, TransactionLog.OverflowPolicy.BLOCK);
+        transactionLog.record(7, TransactionType.TRANSFER, 1l, 2l, Money.parse("10.5"), (Throwable) null, 85_000);
+        transactionLog.record(8, TransactionType.WITHDRAW, 3l, null, Money.of(4), new LowBalanceException("low"), 1_000);
+        transactionLog.close();
+
+        String[] lines = out.toString().split("\n");
+        Assertions.assertEquals(2, lines.length);
+        Assertions.assertTrue(lines[0].matches("\\{\"ts\":\\d+,\"txId\":7,\"op\":\"TRANSFER\",\"from\":1,\"to\":2,\"amount\":\"10.50\",\"outcome\":\"COMPLETED\",\"latencyMicros\":85}"), lines[0]);
+        Assertions.assertTrue(lines[1].endsWith("\"txId\":8,\"op\":\"WITHDRAW\",\"from\":3,\"amount\":\"4.00\",\"outcome\":\"LOW_BALANCE\",\"latencyMicros\":1}"), lines[1]);
+        Assertions.assertEquals(2, transactionLog.getWrittenCount());
+    }
+
+    @Test
+    void samplingKeepsFailures() throws Exception {
+        StringWriter out = new StringWriter();
+        TransactionLog transactionLog = new TransactionLog(out, 16, 0.0, TransactionLog.OverflowPolicy.DROP);
+        for (int i = 0; i < 10; i++) {
+            transactionLog.record(i, TransactionType.DEPOSIT, null, 1l, Money.ONE, TransferStatus.COMPLETED, 0);
+        }
+        transactionLog.record(10, TransactionType.DEPOSIT, null, 1l, Money.ONE, TransferStatus.FAILED, 0);
+        transactionLog.close();
+
+        Assertions.assertEquals(10, transactionLog.getSampledOutCount());
+        Assertions.assertTrue(out.toString().contains("\"txId\":10,"));
+        Assertions.assertEquals(1, out.toString().split("\n").length);
+    }
+
+    @Test
+    void fullBufferDropsOrBlocks() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Writer stalled = new StringWriter() {
+            @Override
+            public void write(char[] chars, int offset, int length) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(chars, offset, length);
+            }
+        };
+        TransactionLog dropping = new TransactionLog(stalled, 4, 1.0, TransactionLog.OverflowPolicy.DROP);
+        for (int i = 0; i < 20; i++) {
+            dropping.record(i, TransactionType.CREATE, null, 1l, Money.ONE, TransferStatus.COMPLETED, 0);
+        }
+        // At most one event held by the stalled writer plus a full buffer.
+        Assertions.assertTrue(dropping.getDroppedCount() >= 15);
+        release.countDown();
+        dropping.close();
+        Assertions.assertEquals(20, dropping.getWrittenCount() + dropping.getDroppedCount());
+
+        StringWriter out = new StringWriter();
+        TransactionLog blocking = new TransactionLog(out, 4, 1.0, TransactionLog.OverflowPolicy.BLOCK);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 250; i++) {
+                    blocking.record(i, TransactionType.TRANSFER, 1l, 2l, Money.ONE, TransferStatus.COMPLETED, 0);
+                }
+            }));
+        }
+        executor.shutdown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        blocking.close();
+        Assertions.assertEquals(0, blocking.getDroppedCount());
+        Assertions.assertEquals(1000, out.toString().split("\n").length);
+    }
+
+    @Test
+    void disabledLogAcceptsEverything() throws IOException {
+        TransactionLog.DISABLED.record(1, TransactionType.TRANSFER, 1l, 2l, Money.ONE, TransferStatus.COMPLETED, 0);
+        Assertions.assertFalse(TransactionLog.DISABLED.isEnabled());
+        TransactionLog.DISABLED.close();
+    }
+}
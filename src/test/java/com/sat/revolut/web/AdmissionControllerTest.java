@@ -0,0 +1,64 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class AdmissionControllerTest {
+
+    @Test
+    void requestsOverTheEndpointLimitAreRejected() {
+        AdmissionController admission = new AdmissionController(new MetricsRegistry(), true, 2, 1, 10, 60000, 0.5, 100, 0.25);
+        AdmissionController.EndpointLimit limit = admission.endpoint("GET /account", AdmissionController.Priority.READ);
+
+        AdmissionController.Permit first = limit.tryAcquire();
+        AdmissionController.Permit second = limit.tryAcquire();
+        Assertions.assertNotNull(first);
+        Assertions.assertNotNull(second);
+        Assertions.assertNull(limit.tryAcquire());
+        Assertions.assertEquals(2, admission.getInFlight());
+
+        // Fast responses at full use grow the limit, a permit released twice only counts once.
+        first.release(false);
+        first.release(false);
+        Assertions.assertEquals(2.5, limit.getLimit(), 0.001);
+        Assertions.assertEquals(1, limit.getInFlight());
+        second.release(false);
+        Assertions.assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    void slowOrFailedResponsesCutTheLimit() {
+        AdmissionController admission = new AdmissionController(new MetricsRegistry(), true, 8, 2, 10, 0, 0.5, 100, 0.25);
+        AdmissionController.EndpointLimit limit = admission.endpoint("PUT /transfer", AdmissionController.Priority.WRITE);
+
+        limit.tryAcquire().release(true);
+        Assertions.assertEquals(4, limit.getLimit(), 0.001);
+        limit.tryAcquire().release(true);
+        limit.tryAcquire().release(true);
+        Assertions.assertEquals(2, limit.getLimit(), 0.001);
+    }
+
+    @Test
+    void writesLeaveTheReadReserveFree() {
+        AdmissionController admission = new AdmissionController(new MetricsRegistry(), true, 10, 1, 10, 60000, 0.5, 4, 0.5);
+        AdmissionController.EndpointLimit writes = admission.endpoint("PUT /deposit", AdmissionController.Priority.WRITE);
+        AdmissionController.EndpointLimit reads = admission.endpoint("GET /account", AdmissionController.Priority.READ);
+
+        List<AdmissionController.Permit> permits = new ArrayList<>();
+        permits.add(writes.tryAcquire());
+        permits.add(writes.tryAcquire());
+        Assertions.assertNull(writes.tryAcquire());
+        permits.add(reads.tryAcquire());
+        permits.add(reads.tryAcquire());
+        Assertions.assertNull(reads.tryAcquire());
+        permits.forEach(Assertions::assertNotNull);
+        for (AdmissionController.Permit permit : permits) {
+            permit.release(false);
+        }
+        Assertions.assertEquals(0, admission.getInFlight());
+    }
+}
@@ -0,0 +1,128 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.exception.LowBalanceException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class IdempotencyStoreTest {
+
+    @Test
+    void repeatedKeyReturnsFirstResultWithoutRunningAgain() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(16, 60000, null);
+        AtomicInteger runs = new AtomicInteger();
+        RequestExecutor.Work deposit = json -> "deposited " + runs.incrementAndGet();
+
+        Assertions.assertEquals("deposited 1", store.wrap("/deposit", "k1", "accountId=1&amount=5", deposit).run(false));
+        Assertions.assertEquals("deposited 1", store.wrap("/deposit", "k1", "accountId=1&amount=5", deposit).run(false));
+        // Keys are scoped by endpoint, requests without a key always run.
+        Assertions.assertEquals("deposited 2", store.wrap("/withdraw", "k1", "accountId=1&amount=5", deposit).run(false));
+        Assertions.assertEquals("deposited 3", store.wrap("/deposit", null, "accountId=1&amount=5", deposit).run(false));
+        Assertions.assertThrows(IllegalArgumentException.class,
+                () -> store.wrap("/deposit", "k1", "accountId=2&amount=5", deposit).run(false));
+
+        Assertions.assertEquals(2, store.getHitCount());
+        Assertions.assertEquals(2, store.getMissCount());
+        Assertions.assertEquals(1, store.getConflictCount());
+    }
+
+    @Test
+    void rejectionsAreKeptAndDatabaseErrorsReleaseTheKey() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(16, 60000, null);
+        AtomicInteger runs = new AtomicInteger();
+
+        RequestExecutor.Work lowBalance = json -> {
+            runs.incrementAndGet();
+            throw new LowBalanceException("Low balance in account 1");
+        };
+        Assertions.assertEquals("Low balance in account 1", store.wrap("/withdraw", "k1", "q", lowBalance).run(false));
+        Assertions.assertEquals("Low balance in account 1", store.wrap("/withdraw", "k1", "q", lowBalance).run(false));
+        Assertions.assertEquals(1, runs.get());
+
+        RequestExecutor.Work failing = json -> {
+            if (runs.incrementAndGet() == 2) {
+                throw new SQLException("Connection lost");
+            }
+            return "done";
+        };
+        Assertions.assertThrows(SQLException.class, () -> store.wrap("/transfer", "k2", "q", failing).run(false));
+        Assertions.assertEquals("done", store.wrap("/transfer", "k2", "q", failing).run(false));
+        Assertions.assertEquals("done", store.wrap("/transfer", "k2", "q", failing).run(false));
+        Assertions.assertEquals(3, runs.get());
+    }
+
+    @Test
+    void keysExpireAndSurviveARestart(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("idempotency.log");
+        AtomicLong now = new AtomicLong(1000);
+        AtomicInteger runs = new AtomicInteger();
+        RequestExecutor.Work transfer = json -> "Transaction : " + runs.incrementAndGet() + "\tis completed";
+
+        IdempotencyStore store = new IdempotencyStore(16, 100, file, now::get);
+        store.wrap("/transfer", "old", "q", transfer).run(false);
+        now.addAndGet(50);
+        store.wrap("/transfer", "recent", "q", transfer).run(false);
+        store.close();
+
+        now.addAndGet(60);
+        IdempotencyStore restarted = new IdempotencyStore(16, 100, file, now::get);
+        Assertions.assertEquals(1, restarted.getSize());
+        Assertions.assertEquals("Transaction : 2\tis completed", restarted.wrap("/transfer", "recent", "q", transfer).run(false));
+        Assertions.assertEquals("Transaction : 3\tis completed", restarted.wrap("/transfer", "old", "q", transfer).run(false));
+        restarted.close();
+    }
+
+    @Test
+    void inFlightKeysAreNotEvicted() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(16, 60000, null);
+        int keys = 40;
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        RequestExecutor.Work transfer = json -> {
+            int run = runs.incrementAndGet();
+            release.await();
+            return "Transaction : " + run;
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(keys * 2);
+        List<Future<String>> first = new ArrayList<>();
+        for (int i = 0; i < keys; i++) {
+            String key = "k" + i;
+            first.add(executor.submit(() -> store.wrap("/transfer", key, "q", transfer).run(false)));
+        }
+        while (store.getMissCount() < keys) {
+            Thread.sleep(1);
+        }
+        Assertions.assertEquals(keys, store.getSize());
+        Assertions.assertEquals(0, store.getEvictionCount());
+
+        // Repeats wait for the first request of their key instead of running again.
+        List<Future<String>> repeats = new ArrayList<>();
+        for (int i = 0; i < keys; i++) {
+            String key = "k" + i;
+            repeats.add(executor.submit(() -> store.wrap("/transfer", key, "q", transfer).run(false)));
+        }
+        release.countDown();
+        for (int i = 0; i < keys; i++) {
+            Assertions.assertEquals(first.get(i).get(5, TimeUnit.SECONDS), repeats.get(i).get(5, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+        Assertions.assertEquals(keys, runs.get());
+
+        // Completed, the keys can go again.
+        store.wrap("/transfer", "late", "q", json -> "done").run(false);
+        Assertions.assertTrue(store.getEvictionCount() > 0);
+    }
+}
@@ -0,0 +1,39 @@
+package com.sat.revolut.web;
+
+import com.sat.revolut.domain.Account;
+import com.sat.revolut.domain.Money;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class QueryParamsTest {
+
+    @Test
+    void readsValuesInPlace() {
+        String query = "amount=5000&fromAccountId=1&toAccountId=-2&xaccountId=7";
+        Assertions.assertEquals(Money.of(5000), QueryParams.getMoney(query, "amount"));
+        Assertions.assertEquals(1, QueryParams.getLong(query, "fromAccountId"));
+        Assertions.assertEquals(-2, QueryParams.getLong(query, "toAccountId"));
+        Assertions.assertEquals(Long.MIN_VALUE, QueryParams.getLong("id=" + Long.MIN_VALUE, "id"));
+        Assertions.assertEquals(Long.MAX_VALUE, QueryParams.getLong("id=" + Long.MAX_VALUE, "id"));
+        // Percent encoded values are decoded first.
+        Assertions.assertEquals(Money.parse("10.50"), QueryParams.getMoney("amount=%2B10.50", "amount"));
+
+        Assertions.assertThrows(NumberFormatException.class, () -> QueryParams.getLong(query, "accountId"));
+        Assertions.assertThrows(NumberFormatException.class, () -> QueryParams.getLong(null, "accountId"));
+        Assertions.assertThrows(NumberFormatException.class, () -> QueryParams.getLong("id=9223372036854775808", "id"));
+        Assertions.assertThrows(NumberFormatException.class, () -> QueryParams.getLong("id=", "id"));
+        Assertions.assertThrows(NumberFormatException.class, () -> QueryParams.getLong("id=1a", "id"));
+    }
+
+    @Test
+    void encodesTextAndJson() {
+        Account account = new Account();
+        account.setAccountId(3l);
+        account.setTotalBalance(Money.of(25000));
+        Assertions.assertEquals("Account Id : 3\nTotal balance : 25000.00", ResponseEncoder.account(account, false));
+        Assertions.assertEquals("{\"accountId\":3,\"balance\":\"25000.00\"}", ResponseEncoder.account(account, true));
+        Assertions.assertEquals("Amount deposited in account 1 successfully!", ResponseEncoder.deposited(1, false));
+        Assertions.assertEquals("{\"accountId\":1,\"status\":\"WITHDRAWN\"}", ResponseEncoder.withdrawn(1, true));
+        Assertions.assertEquals("{\"error\":\"Low \\\"balance\\\"\"}", ResponseEncoder.error("Low \"balance\"", true));
+    }
+}
@@ -0,0 +1,49 @@
+package com.sat.revolut.web;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+class RequestExecutorTest {
+
+    @Test
+    void workCompletesAsynchronouslyAndFullQueueIsRejected() throws Exception {
+        RequestExecutor requestExecutor = RequestExecutor.async(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = requestExecutor.submit(json -> {
+            started.countDown();
+            release.await();
+            return "done";
+        }, false);
+        Assertions.assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = requestExecutor.submit(json -> {
+            throw new IllegalStateException("failed");
+        }, false);
+        Assertions.assertEquals(1, requestExecutor.getQueueDepth());
+        Assertions.assertEquals(1, requestExecutor.getActiveCount());
+
+        Assertions.assertThrows(RejectedExecutionException.class, () -> requestExecutor.submit(json -> "rejected", false));
+        Assertions.assertEquals(1, requestExecutor.getRejectedCount());
+
+        release.countDown();
+        Assertions.assertEquals("done", running.get(10, TimeUnit.SECONDS));
+        // Failures complete normally with the exception message as body.
+        Assertions.assertEquals("failed", queued.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(0, requestExecutor.getQueueDepth());
+        requestExecutor.shutdown();
+    }
+
+    @Test
+    void blockingModeHasNoPool() {
+        RequestExecutor requestExecutor = RequestExecutor.blocking();
+        Assertions.assertFalse(requestExecutor.isAsync());
+        Assertions.assertEquals(0, requestExecutor.getQueueDepth());
+        Assertions.assertEquals(0, requestExecutor.getConcurrency());
+    }
+}